@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.disc;
+
+/**
+ * HTTP validators (<b>ETag</b> and <b>Last-Modified</b> response headers) of cached image. They are sent in conditional
+ * request (<b>If-None-Match</b>, <b>If-Modified-Since</b>) when cached image expires, so server can confirm image
+ * wasn't modified without sending it again.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see RevalidatingDiskCache
+ * @since 1.9.3
+ */
+public final class CacheValidators {
+
+	private static final char SEPARATOR = '\n';
+
+	private final String eTag;
+	private final String lastModified;
+
+	/**
+	 * @param eTag         Value of <b>ETag</b> header of response, can be null
+	 * @param lastModified Value of <b>Last-Modified</b> header of response, can be null
+	 */
+	public CacheValidators(String eTag, String lastModified) {
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+	}
+
+	/** @return Value of <b>ETag</b> header, can be <b>null</b> */
+	public String getETag() {
+		return eTag;
+	}
+
+	/** @return Value of <b>Last-Modified</b> header, can be <b>null</b> */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/** @return <b>true</b> - if there are no validators, so conditional request isn't possible */
+	public boolean isEmpty() {
+		return eTag == null && lastModified == null;
+	}
+
+	/** Serializes validators to string which can be stored as cache entry metadata */
+	public String encode() {
+		return (eTag == null ? "" : eTag) + SEPARATOR + (lastModified == null ? "" : lastModified);
+	}
+
+	/**
+	 * Restores validators {@linkplain #encode() serialized} before
+	 *
+	 * @return Validators or <b>null</b> if string is null or doesn't contain any validator
+	 */
+	public static CacheValidators decode(String encoded) {
+		if (encoded == null) return null;
+
+		int separatorIndex = encoded.indexOf(SEPARATOR);
+		if (separatorIndex < 0) return null;
+
+		String eTag = encoded.substring(0, separatorIndex);
+		String lastModified = encoded.substring(separatorIndex + 1).trim();
+		CacheValidators validators = new CacheValidators(eTag.length() == 0 ? null : eTag,
+				lastModified.length() == 0 ? null : lastModified);
+		return validators.isEmpty() ? null : validators;
+	}
+}
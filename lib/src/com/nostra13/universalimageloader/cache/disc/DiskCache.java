@@ -59,7 +59,7 @@ public interface DiskCache {
 	boolean save(String imageUri, InputStream imageStream, IoUtils.CopyListener listener) throws IOException;
 
 	/**
-	 * Saves image bitmap in disk cache.
+	 * Saves image bitmap in disk cache. Bitmap isn't recycled, caller still owns it.
 	 *
 	 * @param imageUri Original image URI
 	 * @param bitmap   Image bitmap
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.disc;
+
+import com.nostra13.universalimageloader.utils.IoUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Disk cache which keeps {@linkplain CacheValidators HTTP validators} of cached images. Expired image isn't deleted
+ * while it has validators: {@link #get(String)} doesn't return it, but image loader asks server whether image was
+ * modified and {@linkplain #refresh(String, CacheValidators) refreshes} cached image if it wasn't.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public interface RevalidatingDiskCache extends DiskCache {
+	/**
+	 * Returns validators of cached image. Validators are returned for expired image too.
+	 *
+	 * @param imageUri Original image URI
+	 * @return Validators or <b>null</b> if image isn't cached or was cached without validators
+	 */
+	CacheValidators getValidators(String imageUri);
+
+	/**
+	 * Saves image stream in disk cache together with its validators.
+	 * Incoming image stream shouldn't be closed in this method.
+	 *
+	 * @param imageUri    Original image URI
+	 * @param imageStream Input stream of image (shouldn't be closed in this method)
+	 * @param validators  Validators of image response, can be null
+	 * @param listener    Listener for saving progress, can be ignored
+	 * @return <b>true</b> - if image was saved successfully; <b>false</b> - if image wasn't saved in disk cache.
+	 * @throws IOException
+	 */
+	boolean save(String imageUri, InputStream imageStream, CacheValidators validators,
+			IoUtils.CopyListener listener) throws IOException;
+
+	/**
+	 * Makes expired image fresh again. Is called when server confirmed image wasn't modified.
+	 *
+	 * @param imageUri   Original image URI
+	 * @param validators Validators of "Not Modified" response; can be null, then cached validators are kept
+	 * @return <b>true</b> - if image was refreshed; <b>false</b> - if image isn't cached anymore
+	 */
+	boolean refresh(String imageUri, CacheValidators validators);
+}
@@ -16,24 +16,36 @@
 package com.nostra13.universalimageloader.cache.disc.impl;
 
 import android.graphics.Bitmap;
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
+import com.nostra13.universalimageloader.cache.disc.RevalidatingDiskCache;
 import com.nostra13.universalimageloader.cache.disc.naming.FileNameGenerator;
 import com.nostra13.universalimageloader.core.DefaultConfigurationFactory;
 import com.nostra13.universalimageloader.utils.IoUtils;
+import com.nostra13.universalimageloader.utils.L;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Cache which deletes files which were loaded more than defined time. Cache size is unlimited.
+ * Cache which deletes files which were loaded more than defined time. Cache size is unlimited.<br />
+ * Expired file which was saved with {@linkplain CacheValidators HTTP validators} isn't deleted, it's
+ * {@linkplain RevalidatingDiskCache revalidated} instead. Validators are kept in separate file next to image file.
  *
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @since 1.3.1
  */
-public class LimitedAgeDiskCache extends BaseDiskCache {
+public class LimitedAgeDiskCache extends BaseDiskCache implements RevalidatingDiskCache {
+
+	private static final String VALIDATORS_FILE_POSTFIX = ".validators";
+	private static final String VALIDATORS_CHARSET = "UTF-8";
 
 	private final long maxFileAge;
 
@@ -83,6 +95,10 @@ public class LimitedAgeDiskCache extends BaseDiskCache {
 			}
 
 			if (System.currentTimeMillis() - loadingDate > maxFileAge) {
+				if (getValidatorsFile(file).exists()) {
+					// Keep expired file for revalidation
+					return null;
+				}
 				file.delete();
 				loadingDates.remove(file);
 			} else if (!cached) {
@@ -94,7 +110,21 @@ public class LimitedAgeDiskCache extends BaseDiskCache {
 
 	@Override
 	public boolean save(String imageUri, InputStream imageStream, IoUtils.CopyListener listener) throws IOException {
+		return save(imageUri, imageStream, null, listener);
+	}
+
+	@Override
+	public boolean save(String imageUri, InputStream imageStream, CacheValidators validators,
+			IoUtils.CopyListener listener) throws IOException {
 		boolean saved = super.save(imageUri, imageStream, listener);
+		if (saved) {
+			File validatorsFile = getValidatorsFile(getFile(imageUri));
+			if (validators == null || validators.isEmpty()) {
+				validatorsFile.delete();
+			} else {
+				saveValidators(validatorsFile, validators);
+			}
+		}
 		rememberUsage(imageUri);
 		return saved;
 	}
@@ -106,9 +136,45 @@ public class LimitedAgeDiskCache extends BaseDiskCache {
 		return saved;
 	}
 
+	@Override
+	public CacheValidators getValidators(String imageUri) {
+		File file = getFile(imageUri);
+		if (!file.exists()) return null;
+
+		File validatorsFile = getValidatorsFile(file);
+		if (!validatorsFile.exists()) return null;
+
+		InputStream is = null;
+		try {
+			is = new FileInputStream(validatorsFile);
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			IoUtils.copyStream(is, os, null);
+			return CacheValidators.decode(new String(os.toByteArray(), VALIDATORS_CHARSET));
+		} catch (IOException e) {
+			L.e(e);
+			return null;
+		} finally {
+			IoUtils.closeSilently(is);
+		}
+	}
+
+	@Override
+	public boolean refresh(String imageUri, CacheValidators validators) {
+		File file = getFile(imageUri);
+		if (!file.exists()) return false;
+
+		if (validators != null && !validators.isEmpty()) {
+			saveValidators(getValidatorsFile(file), validators);
+		}
+		rememberUsage(imageUri);
+		return true;
+	}
+
 	@Override
 	public boolean remove(String imageUri) {
-		loadingDates.remove(getFile(imageUri));
+		File file = getFile(imageUri);
+		loadingDates.remove(file);
+		getValidatorsFile(file).delete();
 		return super.remove(imageUri);
 	}
 
@@ -118,6 +184,23 @@ public class LimitedAgeDiskCache extends BaseDiskCache {
 		loadingDates.clear();
 	}
 
+	private File getValidatorsFile(File imageFile) {
+		return new File(imageFile.getAbsolutePath() + VALIDATORS_FILE_POSTFIX);
+	}
+
+	private void saveValidators(File validatorsFile, CacheValidators validators) {
+		OutputStream os = null;
+		try {
+			os = new FileOutputStream(validatorsFile);
+			os.write(validators.encode().getBytes(VALIDATORS_CHARSET));
+		} catch (IOException e) {
+			L.e(e);
+			validatorsFile.delete();
+		} finally {
+			IoUtils.closeSilently(os);
+		}
+	}
+
 	private void rememberUsage(String imageUri) {
 		File file = getFile(imageUri);
 		long currentTime = System.currentTimeMillis();
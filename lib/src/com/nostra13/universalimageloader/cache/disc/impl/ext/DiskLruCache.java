@@ -533,7 +533,9 @@ final class DiskLruCache implements Closeable {
                     long newLength = clean.length();
                     entry.lengths[i] = newLength;
                     size = size - oldLength + newLength;
-                    fileCount++;
+                    if (!entry.readable) {
+                        fileCount++; // file of existing entry is replaced, not added
+                    }
                 }
             } else {
                 deleteIfExists(dirty);
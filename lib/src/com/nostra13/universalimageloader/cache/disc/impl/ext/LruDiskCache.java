@@ -16,7 +16,9 @@
 package com.nostra13.universalimageloader.cache.disc.impl.ext;
 
 import android.graphics.Bitmap;
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
 import com.nostra13.universalimageloader.cache.disc.DiskCache;
+import com.nostra13.universalimageloader.cache.disc.RevalidatingDiskCache;
 import com.nostra13.universalimageloader.cache.disc.naming.FileNameGenerator;
 import com.nostra13.universalimageloader.utils.IoUtils;
 import com.nostra13.universalimageloader.utils.L;
@@ -30,13 +32,16 @@ import java.io.OutputStream;
 /**
  * Disk cache based on "Least-Recently Used" principle. Adapter pattern, adapts
  * {@link com.nostra13.universalimageloader.cache.disc.impl.ext.DiskLruCache DiskLruCache} to
- * {@link com.nostra13.universalimageloader.cache.disc.DiskCache DiskCache}
+ * {@link com.nostra13.universalimageloader.cache.disc.DiskCache DiskCache}<br />
+ * Every entry keeps metadata (save time and {@linkplain CacheValidators HTTP validators} of image) as second value. If
+ * {@linkplain #setMaxFileAge(long) max file age} is set then expired images are
+ * {@linkplain RevalidatingDiskCache revalidated}.
  *
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @see FileNameGenerator
  * @since 1.9.2
  */
-public class LruDiskCache implements DiskCache {
+public class LruDiskCache implements RevalidatingDiskCache {
 	/** {@value */
 	public static final int DEFAULT_BUFFER_SIZE = 32 * 1024; // 32 Kb
 	/** {@value */
@@ -47,6 +52,11 @@ public class LruDiskCache implements DiskCache {
 	private static final String ERROR_ARG_NULL = " argument must be not null";
 	private static final String ERROR_ARG_NEGATIVE = " argument must be positive number";
 
+	private static final int VALUE_COUNT = 2;
+	private static final int IMAGE_INDEX = 0;
+	private static final int METADATA_INDEX = 1;
+	private static final char METADATA_SEPARATOR = '\n';
+
 	protected DiskLruCache cache;
 	private File reserveCacheDir;
 
@@ -57,6 +67,9 @@ public class LruDiskCache implements DiskCache {
 	protected Bitmap.CompressFormat compressFormat = DEFAULT_COMPRESS_FORMAT;
 	protected int compressQuality = DEFAULT_COMPRESS_QUALITY;
 
+	/** Max age of image (in milliseconds); 0 - age is unlimited */
+	protected long maxFileAge = 0;
+
 	/**
 	 * @param cacheDir          Directory for file caching
 	 * @param fileNameGenerator {@linkplain com.nostra13.universalimageloader.cache.disc.naming.FileNameGenerator
@@ -109,7 +122,10 @@ public class LruDiskCache implements DiskCache {
 	private void initCache(File cacheDir, File reserveCacheDir, long cacheMaxSize, int cacheMaxFileCount)
 			throws IOException {
 		try {
-			cache = DiskLruCache.open(cacheDir, 1, 1, cacheMaxSize, cacheMaxFileCount);
+			// Every entry consists of image and metadata files
+			int maxFileCount = cacheMaxFileCount > Integer.MAX_VALUE / VALUE_COUNT ? Integer.MAX_VALUE
+					: cacheMaxFileCount * VALUE_COUNT;
+			cache = DiskLruCache.open(cacheDir, 1, VALUE_COUNT, cacheMaxSize, maxFileCount);
 		} catch (IOException e) {
 			L.e(e);
 			if (reserveCacheDir != null) {
@@ -131,7 +147,13 @@ public class LruDiskCache implements DiskCache {
 		DiskLruCache.Snapshot snapshot = null;
 		try {
 			snapshot = cache.get(getKey(imageUri));
-			return snapshot == null ? null : snapshot.getFile(0);
+			if (snapshot == null) return null;
+
+			File imageFile = snapshot.getFile(IMAGE_INDEX);
+			if (maxFileAge > 0 && System.currentTimeMillis() - getSaveTime(snapshot, imageFile) > maxFileAge) {
+				return null; // expired image is kept for revalidation
+			}
+			return imageFile;
 		} catch (IOException e) {
 			L.e(e);
 			return null;
@@ -144,19 +166,25 @@ public class LruDiskCache implements DiskCache {
 
 	@Override
 	public boolean save(String imageUri, InputStream imageStream, IoUtils.CopyListener listener) throws IOException {
+		return save(imageUri, imageStream, null, listener);
+	}
+
+	@Override
+	public boolean save(String imageUri, InputStream imageStream, CacheValidators validators,
+			IoUtils.CopyListener listener) throws IOException {
 		DiskLruCache.Editor editor = cache.edit(getKey(imageUri));
 		if (editor == null) {
 			return false;
 		}
 
-		OutputStream os = new BufferedOutputStream(editor.newOutputStream(0), bufferSize);
+		OutputStream os = new BufferedOutputStream(editor.newOutputStream(IMAGE_INDEX), bufferSize);
 		boolean copied = false;
 		try {
 			copied = IoUtils.copyStream(imageStream, os, listener, bufferSize);
 		} finally {
 			IoUtils.closeSilently(os);
 			if (copied) {
-				editor.commit();
+				commit(editor, encodeMetadata(System.currentTimeMillis(), validators));
 			} else {
 				editor.abort();
 			}
@@ -171,7 +199,7 @@ public class LruDiskCache implements DiskCache {
 			return false;
 		}
 
-		OutputStream os = new BufferedOutputStream(editor.newOutputStream(0), bufferSize);
+		OutputStream os = new BufferedOutputStream(editor.newOutputStream(IMAGE_INDEX), bufferSize);
 		boolean savedSuccessfully = false;
 		try {
 			savedSuccessfully = bitmap.compress(compressFormat, compressQuality, os);
@@ -179,13 +207,78 @@ public class LruDiskCache implements DiskCache {
 			IoUtils.closeSilently(os);
 		}
 		if (savedSuccessfully) {
-			editor.commit();
+			String metadata;
+			try {
+				metadata = editor.getString(METADATA_INDEX);
+			} catch (IOException e) {
+				editor.abortUnlessCommitted();
+				throw e;
+			}
+			// Metadata of existing entry (e.g. re-saved resized image) is kept
+			commit(editor, metadata != null ? metadata : encodeMetadata(System.currentTimeMillis(), null));
 		} else {
 			editor.abort();
 		}
 		return savedSuccessfully;
 	}
 
+	/** Writes metadata and commits edit. Edit is aborted if metadata can't be written so entry isn't left locked. */
+	private static void commit(DiskLruCache.Editor editor, String metadata) throws IOException {
+		try {
+			editor.set(METADATA_INDEX, metadata);
+		} catch (IOException e) {
+			editor.abortUnlessCommitted();
+			throw e;
+		}
+		editor.commit();
+	}
+
+	@Override
+	public CacheValidators getValidators(String imageUri) {
+		DiskLruCache.Snapshot snapshot = null;
+		try {
+			snapshot = cache.get(getKey(imageUri));
+			return snapshot == null ? null : decodeValidators(snapshot.getString(METADATA_INDEX));
+		} catch (IOException e) {
+			L.e(e);
+			return null;
+		} finally {
+			if (snapshot != null) {
+				snapshot.close();
+			}
+		}
+	}
+
+	@Override
+	public boolean refresh(String imageUri, CacheValidators validators) {
+		try {
+			DiskLruCache.Editor editor = cache.edit(getKey(imageUri));
+			if (editor == null) {
+				return false;
+			}
+
+			String metadata;
+			try {
+				metadata = editor.getString(METADATA_INDEX);
+			} catch (IOException e) {
+				editor.abortUnlessCommitted();
+				throw e;
+			}
+			if (metadata == null) {
+				editor.abort(); // image isn't cached
+				return false;
+			}
+			if (validators == null || validators.isEmpty()) {
+				validators = decodeValidators(metadata);
+			}
+			commit(editor, encodeMetadata(System.currentTimeMillis(), validators));
+			return true;
+		} catch (IOException e) {
+			L.e(e);
+			return false;
+		}
+	}
+
 	@Override
 	public boolean remove(String imageUri) {
 		try {
@@ -214,7 +307,7 @@ public class LruDiskCache implements DiskCache {
 			L.e(e);
 		}
 		try {
-			initCache(cache.getDirectory(), reserveCacheDir, cache.getMaxSize(), cache.getMaxFileCount());
+			initCache(cache.getDirectory(), reserveCacheDir, cache.getMaxSize(), cache.getMaxFileCount() / VALUE_COUNT);
 		} catch (IOException e) {
 			L.e(e);
 		}
@@ -224,6 +317,30 @@ public class LruDiskCache implements DiskCache {
 		return fileNameGenerator.generate(imageUri);
 	}
 
+	/** Returns time when image was saved or refreshed */
+	private long getSaveTime(DiskLruCache.Snapshot snapshot, File imageFile) throws IOException {
+		String metadata = snapshot.getString(METADATA_INDEX);
+		int separatorIndex = metadata.indexOf(METADATA_SEPARATOR);
+		try {
+			return Long.parseLong(separatorIndex < 0 ? metadata : metadata.substring(0, separatorIndex));
+		} catch (NumberFormatException e) {
+			return imageFile.lastModified();
+		}
+	}
+
+	private static String encodeMetadata(long saveTime, CacheValidators validators) {
+		String metadata = String.valueOf(saveTime);
+		if (validators != null && !validators.isEmpty()) {
+			metadata += METADATA_SEPARATOR + validators.encode();
+		}
+		return metadata;
+	}
+
+	private static CacheValidators decodeValidators(String metadata) {
+		int separatorIndex = metadata.indexOf(METADATA_SEPARATOR);
+		return separatorIndex < 0 ? null : CacheValidators.decode(metadata.substring(separatorIndex + 1));
+	}
+
 	public void setBufferSize(int bufferSize) {
 		this.bufferSize = bufferSize;
 	}
@@ -235,4 +352,17 @@ public class LruDiskCache implements DiskCache {
 	public void setCompressQuality(int compressQuality) {
 		this.compressQuality = compressQuality;
 	}
+
+	/**
+	 * Sets max age of cached images. Expired image isn't returned by {@link #get(String)}; it's downloaded again or, if
+	 * it was saved with validators, revalidated.
+	 *
+	 * @param maxAge Max image age (in seconds); 0 - age is unlimited
+	 */
+	public void setMaxFileAge(long maxAge) {
+		if (maxAge < 0) {
+			throw new IllegalArgumentException("maxAge" + ERROR_ARG_NEGATIVE);
+		}
+		this.maxFileAge = maxAge * 1000; // to milliseconds
+	}
 }
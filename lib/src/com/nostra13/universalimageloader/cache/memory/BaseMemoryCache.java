@@ -18,54 +18,174 @@ package com.nostra13.universalimageloader.cache.memory;
 import android.graphics.Bitmap;
 
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Base memory cache. Implements common functionality for memory cache. Provides object references (
- * {@linkplain Reference not strong}) storing.
+ * {@linkplain Reference not strong}) storing.<br />
+ * <br />
+ * Entries which references were cleared by GC are expunged from cache on next cache access (using
+ * {@linkplain ReferenceQueue reference queue}) and reported to {@linkplain RemovalListener removal listeners} with
+ * {@link RemovalCause#COLLECTED} cause. So cache footprint tracks live bitmaps.
  *
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @since 1.0.0
  */
-public abstract class BaseMemoryCache implements MemoryCache {
+public abstract class BaseMemoryCache implements ObservableMemoryCache {
 
 	/** Stores not strong references to objects */
-	private final Map<String, Reference<Bitmap>> softMap = Collections.synchronizedMap(new HashMap<String, Reference<Bitmap>>());
+	private final ConcurrentMap<String, Reference<Bitmap>> softMap = new ConcurrentHashMap<String, Reference<Bitmap>>();
+	/** Stores keys of references to find entry of cleared reference */
+	private final Map<Reference<Bitmap>, String> referenceKeys = new ConcurrentHashMap<Reference<Bitmap>, String>();
+	/** Receives references cleared by GC */
+	private final ReferenceQueue<Bitmap> referenceQueue = new ReferenceQueue<Bitmap>();
+
+	private final RemovalNotifier removalNotifier = new RemovalNotifier();
 
 	@Override
 	public Bitmap get(String key) {
+		expungeCollectedEntries();
+
 		Bitmap result = null;
 		Reference<Bitmap> reference = softMap.get(key);
 		if (reference != null) {
 			result = reference.get();
+			if (result == null) {
+				removeCollected(key, reference);
+			}
 		}
 		return result;
 	}
 
 	@Override
 	public boolean put(String key, Bitmap value) {
-		softMap.put(key, createReference(value));
+		expungeCollectedEntries();
+
+		Reference<Bitmap> reference = createReference(value, referenceQueue);
+		referenceKeys.put(reference, key);
+		Reference<Bitmap> previous = softMap.put(key, reference);
+		if (previous != null) {
+			referenceKeys.remove(previous);
+			Bitmap previousValue = previous.get();
+			if (previousValue != null && previousValue != value) {
+				notifyRemoved(key, previousValue, RemovalCause.REPLACED);
+			}
+		}
 		return true;
 	}
 
 	@Override
 	public Bitmap remove(String key) {
+		expungeCollectedEntries();
+
 		Reference<Bitmap> bmpRef = softMap.remove(key);
-		return bmpRef == null ? null : bmpRef.get();
+		if (bmpRef == null) {
+			return null;
+		}
+		referenceKeys.remove(bmpRef);
+		Bitmap value = bmpRef.get();
+		if (value != null) {
+			notifyRemoved(key, value, RemovalCause.EXPLICIT);
+		}
+		return value;
 	}
 
 	@Override
 	public Collection<String> keys() {
-		synchronized (softMap) {
-			return new HashSet<String>(softMap.keySet());
-		}
+		expungeCollectedEntries();
+		return new HashSet<String>(softMap.keySet());
 	}
 
 	@Override
 	public void clear() {
-		softMap.clear();
+		if (!removalNotifier.hasListeners()) {
+			softMap.clear();
+			referenceKeys.clear();
+			return;
+		}
+
+		for (String key : softMap.keySet()) {
+			Reference<Bitmap> reference = softMap.remove(key);
+			if (reference != null) {
+				referenceKeys.remove(reference);
+				Bitmap value = reference.get();
+				if (value != null) {
+					notifyRemoved(key, value, RemovalCause.EXPLICIT);
+				}
+			}
+		}
+	}
+	@Override
+	public void addRemovalListener(RemovalListener listener) {
+		removalNotifier.addListener(listener);
+	}
+
+	@Override
+	public void removeRemovalListener(RemovalListener listener) {
+		removalNotifier.removeListener(listener);
 	}
 
-	/** Creates {@linkplain Reference not strong} reference of value */
-	protected abstract Reference<Bitmap> createReference(Bitmap value);
+	/** Notifies {@linkplain RemovalListener removal listeners}. Must be called outside of cache lock. */
+	protected void notifyRemoved(String key, Bitmap value, RemovalCause cause) {
+		removalNotifier.notifyRemoved(key, value, cause);
+	}
+
+	/** Returns <b>true</b> - if at least one {@linkplain RemovalListener removal listener} is registered */
+	protected boolean hasRemovalListeners() {
+		return removalNotifier.hasListeners();
+	}
+
+	/** Returns key of cached value or <b>null</b> if value isn't cached. Is slow, iterates all cache entries. */
+	protected String findKey(Bitmap value) {
+		for (Map.Entry<String, Reference<Bitmap>> entry : softMap.entrySet()) {
+			if (entry.getValue().get() == value) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/** Removes entries which references were enqueued by GC. Is cheap if there are no such entries. */
+	private void expungeCollectedEntries() {
+		Reference<? extends Bitmap> reference;
+		while ((reference = referenceQueue.poll()) != null) {
+			String key = referenceKeys.get(reference);
+			if (key != null) {
+				@SuppressWarnings("unchecked")
+				Reference<Bitmap> bmpRef = (Reference<Bitmap>) reference;
+				removeCollected(key, bmpRef);
+			}
+		}
+	}
+
+	/** Removes entry if it's still mapped to the collected reference */
+	private void removeCollected(String key, Reference<Bitmap> reference) {
+		referenceKeys.remove(reference);
+		if (softMap.remove(key, reference)) {
+			notifyRemoved(key, null, RemovalCause.COLLECTED);
+		}
+	}
+
+	/**
+	 * Creates {@linkplain Reference not strong} reference of value registered with defined queue. Cache uses queue to
+	 * expunge entries of collected values.
+	 */
+	protected Reference<Bitmap> createReference(Bitmap value, ReferenceQueue<Bitmap> queue) {
+		return createReference(value);
+	}
+
+	/**
+	 * Creates {@linkplain Reference not strong} reference of value
+	 *
+	 * @deprecated Override {@link #createReference(Bitmap, ReferenceQueue)} instead. References created by this method
+	 * aren't registered with queue so their entries are expunged only on access.
+	 */
+	@Deprecated
+	protected Reference<Bitmap> createReference(Bitmap value) {
+		return new WeakReference<Bitmap>(value);
+	}
 }
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+import android.graphics.Bitmap;
+
+/**
+ * Disposes {@link Bitmap bitmaps} which were evicted from memory cache and aren't referenced anymore (neither displayed
+ * nor used by loading tasks). Implementation can {@linkplain Bitmap#recycle() recycle} bitmap or put it into pool for
+ * reuse.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public interface BitmapRecycler {
+	/** Disposes unreferenced bitmap. Bitmap must not be used by anyone after this call. */
+	void recycle(Bitmap bitmap);
+}
@@ -16,9 +16,12 @@ import android.graphics.Bitmap;
 
 import com.nostra13.universalimageloader.utils.L;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -26,18 +29,19 @@ import java.util.concurrent.atomic.AtomicInteger;
  * {@link #getSizeLimit()}).<br />
  * <br />
  * <b>NOTE:</b> This cache uses strong and weak references for stored Bitmaps. Strong references - for limited count of
- * Bitmaps (depends on cache size), weak references - for all other cached Bitmaps.
+ * Bitmaps (depends on cache size), weak references - for all other cached Bitmaps. Eviction from strong references is
+ * reported to {@linkplain RemovalListener removal listeners} with {@link RemovalCause#SIZE} cause.
  * 
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @see BaseMemoryCache
  * @since 1.0.0
  */
-public abstract class LimitedMemoryCache extends BaseMemoryCache {
+public abstract class LimitedMemoryCache extends BaseMemoryCache implements ResizableMemoryCache {
 
     private static final int MAX_NORMAL_CACHE_SIZE_IN_MB = 16;
     private static final int MAX_NORMAL_CACHE_SIZE = MAX_NORMAL_CACHE_SIZE_IN_MB * 1024 * 1024;
 
-    private final int sizeLimit;
+    private volatile int sizeLimit;
 
     private final AtomicInteger cacheSize;
 
@@ -47,6 +51,9 @@ public abstract class LimitedMemoryCache extends BaseMemoryCache {
      * time)
      */
     private final List<Bitmap> hardCache = Collections.synchronizedList(new LinkedList<Bitmap>());
+    /** Keys of values in {@link #hardCache}, so evicted value is reported without scan of all cache entries */
+    private final Map<Bitmap, String> hardCacheKeys = Collections
+            .synchronizedMap(new IdentityHashMap<Bitmap, String>());
 
     /**
      * @param sizeLimit
@@ -66,21 +73,20 @@ public abstract class LimitedMemoryCache extends BaseMemoryCache {
         // Try to add value to hard cache
         int valueSize = getSize(value);
         int sizeLimit = getSizeLimit();
-        int curCacheSize = cacheSize.get();
+        List<Evicted> evictedValues = null;
         if (valueSize < sizeLimit) {
-            while (curCacheSize + valueSize > sizeLimit) {// 如果已使用+当前图片缓存 > 最大缓存
-                Bitmap removedValue = removeNext();// 移除下一个图片
-                if (hardCache.remove(removedValue)) {// 当前缓存减少
-                    curCacheSize = cacheSize.addAndGet(-getSize(removedValue));
-                }
-            }
+            evictedValues = trimHardCache(sizeLimit - valueSize);// 如果已使用+当前图片缓存 > 最大缓存，移除图片
             hardCache.add(value);
+            hardCacheKeys.put(value, key);
             cacheSize.addAndGet(valueSize);
 
             putSuccessfully = true;
         }
         // Add value to soft cache
         super.put(key, value);
+        if (evictedValues != null) {
+            notifyEvicted(evictedValues);
+        }
         return putSuccessfully;
     }
 
@@ -89,6 +95,7 @@ public abstract class LimitedMemoryCache extends BaseMemoryCache {
         Bitmap value = super.get(key);
         if (value != null) {
             if (hardCache.remove(value)) {
+                hardCacheKeys.remove(value);
                 cacheSize.addAndGet(-getSize(value));
             }
         }
@@ -98,10 +105,71 @@ public abstract class LimitedMemoryCache extends BaseMemoryCache {
     @Override
     public void clear() {
         hardCache.clear();
+        hardCacheKeys.clear();
         cacheSize.set(0);
         super.clear();
     }
 
+    @Override
+    public int getMaxSize() {
+        return sizeLimit;
+    }
+
+    /** Changes size limit of hard cache. Exceeding values are evicted from hard cache immediately. */
+    @Override
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be a positive number");
+        }
+        sizeLimit = maxSize;
+        List<Evicted> evictedValues = trimHardCache(maxSize);
+        if (evictedValues != null) {
+            notifyEvicted(evictedValues);
+        }
+    }
+
+    @Override
+    public int size() {
+        return cacheSize.get();
+    }
+
+    /**
+     * Removes values from hard cache (using {@link #removeNext()}) until hard cache size is at or below the requested
+     * size.
+     *
+     * @return Evicted values if there are removal listeners, <b>null</b> - otherwise
+     */
+    private List<Evicted> trimHardCache(int targetSize) {
+        List<Evicted> evictedValues = null;
+        int curCacheSize = cacheSize.get();
+        while (curCacheSize > targetSize && !hardCache.isEmpty()) {
+            Bitmap removedValue = removeNext();// 移除下一个图片
+            if (hardCache.remove(removedValue)) {// 当前缓存减少
+                String removedKey = hardCacheKeys.remove(removedValue);
+                curCacheSize = cacheSize.addAndGet(-getSize(removedValue));
+                if (removedKey != null && hasRemovalListeners()) {
+                    if (evictedValues == null) {
+                        evictedValues = new ArrayList<Evicted>();
+                    }
+                    evictedValues.add(new Evicted(removedKey, removedValue));
+                }
+            }
+        }
+        return evictedValues;
+    }
+
+    /**
+     * Notifies removal listeners about values which were evicted from hard cache. Evicted values are still available
+     * by weak references until they are {@linkplain RemovalCause#COLLECTED collected by GC}.
+     */
+    private void notifyEvicted(List<Evicted> evictedValues) {
+        for (Evicted evicted : evictedValues) {
+            if (super.get(evicted.key) == evicted.value) { // value wasn't replaced or removed meanwhile
+                notifyRemoved(evicted.key, evicted.value, RemovalCause.SIZE);
+            }
+        }
+    }
+
     protected int getSizeLimit() {
         return sizeLimit;
     }
@@ -111,4 +179,15 @@ public abstract class LimitedMemoryCache extends BaseMemoryCache {
 
     // 模板方法，由相应的子类来实现具体的删除策略
     protected abstract Bitmap removeNext();
+
+    /** Value evicted from hard cache and its key */
+    private static final class Evicted {
+        final String key;
+        final Bitmap value;
+
+        Evicted(String key, Bitmap value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+/**
+ * Miss ratio curve of memory cache: predicted hit ratios of cache for several sizes relative to current cache budget.
+ * Helps to choose memory cache size.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public final class MissRatioCurve {
+
+	/** Cache sizes (relative to current budget) which hit ratios are predicted for */
+	public static final float[] BUDGET_MULTIPLIERS = {0.5f, 1f, 2f, 4f};
+
+	private final int budget;
+	private final long requestCount;
+	private final float[] hitRatios;
+
+	/**
+	 * @param budget       Current cache budget (in bytes)
+	 * @param requestCount Number of cache requests which hit ratios were estimated on
+	 * @param hitRatios    Predicted hit ratios for each of {@link #BUDGET_MULTIPLIERS}
+	 */
+	public MissRatioCurve(int budget, long requestCount, float[] hitRatios) {
+		if (hitRatios.length != BUDGET_MULTIPLIERS.length) {
+			throw new IllegalArgumentException("hitRatios must contain value for each of BUDGET_MULTIPLIERS");
+		}
+		this.budget = budget;
+		this.requestCount = requestCount;
+		this.hitRatios = hitRatios.clone();
+	}
+
+	/** Returns cache budget (in bytes) which multipliers are applied to */
+	public int getBudget() {
+		return budget;
+	}
+
+	/** Returns number of cache requests which curve was estimated on */
+	public long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Returns predicted hit ratio (0..1) of cache with size = <b>multiplier * budget</b>
+	 *
+	 * @param multiplier One of {@link #BUDGET_MULTIPLIERS}
+	 */
+	public float getHitRatio(float multiplier) {
+		for (int i = 0; i < BUDGET_MULTIPLIERS.length; i++) {
+			if (BUDGET_MULTIPLIERS[i] == multiplier) {
+				return hitRatios[i];
+			}
+		}
+		throw new IllegalArgumentException("Unsupported multiplier: " + multiplier);
+	}
+
+	/** Returns predicted miss ratio (0..1) of cache with size = <b>multiplier * budget</b> */
+	public float getMissRatio(float multiplier) {
+		return 1f - getHitRatio(multiplier);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("MissRatioCurve[budget=").append(budget).append(", requests=")
+				.append(requestCount);
+		for (int i = 0; i < BUDGET_MULTIPLIERS.length; i++) {
+			sb.append(", ").append(BUDGET_MULTIPLIERS[i]).append("x=").append(hitRatios[i]);
+		}
+		return sb.append(']').toString();
+	}
+}
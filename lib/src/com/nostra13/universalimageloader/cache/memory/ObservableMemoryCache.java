@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+/**
+ * Memory cache which notifies {@linkplain RemovalListener listeners} about removed entries.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see RemovalListener
+ * @since 1.9.3
+ */
+public interface ObservableMemoryCache extends MemoryCache {
+	/** Adds listener of cache entry removals */
+	void addRemovalListener(RemovalListener listener);
+
+	/** Removes previously added listener of cache entry removals */
+	void removeRemovalListener(RemovalListener listener);
+}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+/**
+ * Reason why an entry was removed from {@link MemoryCache memory cache}.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see RemovalListener
+ * @since 1.9.3
+ */
+public enum RemovalCause {
+	/** Entry was evicted because cache size exceeded its limit */
+	SIZE,
+	/** Entry was removed by {@link MemoryCache#remove(String)} or {@link MemoryCache#clear()} call */
+	EXPLICIT,
+	/** Entry value was replaced by new value put by the same key */
+	REPLACED,
+	/** Entry was removed because its age exceeded the limit */
+	EXPIRED,
+	/** Entry value was collected by GC (only for caches which keep not strong references to values) */
+	COLLECTED
+}
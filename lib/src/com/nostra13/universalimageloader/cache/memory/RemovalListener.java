@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+import android.graphics.Bitmap;
+
+/**
+ * Listener for removals of entries from {@linkplain ObservableMemoryCache memory cache}.<br />
+ * Callbacks are fired on the thread which caused removal but <b>outside</b> of cache lock so listener can safely
+ * access cache. Listener should be fast and thread-safe.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ObservableMemoryCache
+ * @since 1.9.3
+ */
+public interface RemovalListener {
+	/**
+	 * Is called when entry was removed from memory cache.
+	 *
+	 * @param key   Key of removed entry
+	 * @param value Removed value. Can be <b>null</b> if value was {@linkplain RemovalCause#COLLECTED collected by GC}.
+	 * @param cause {@linkplain RemovalCause Cause} of removal
+	 */
+	void onRemoved(String key, Bitmap value, RemovalCause cause);
+}
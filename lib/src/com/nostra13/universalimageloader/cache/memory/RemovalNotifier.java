@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+import android.graphics.Bitmap;
+import com.nostra13.universalimageloader.utils.L;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds {@linkplain RemovalListener removal listeners} of {@linkplain ObservableMemoryCache memory cache} and
+ * dispatches removal events to them. Exceptions thrown by listeners are logged and don't break cache work.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public final class RemovalNotifier {
+
+	private final List<RemovalListener> listeners = new CopyOnWriteArrayList<RemovalListener>();
+
+	public void addListener(RemovalListener listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener must not be null");
+		}
+		listeners.add(listener);
+	}
+
+	public void removeListener(RemovalListener listener) {
+		listeners.remove(listener);
+	}
+
+	/** Returns <b>true</b> - if at least one listener is registered; <b>false</b> - otherwise */
+	public boolean hasListeners() {
+		return !listeners.isEmpty();
+	}
+
+	/** Notifies all registered listeners. Must be called outside of cache lock. */
+	public void notifyRemoved(String key, Bitmap value, RemovalCause cause) {
+		for (RemovalListener listener : listeners) {
+			try {
+				listener.onRemoved(key, value, cause);
+			} catch (RuntimeException e) {
+				L.e(e);
+			}
+		}
+	}
+}
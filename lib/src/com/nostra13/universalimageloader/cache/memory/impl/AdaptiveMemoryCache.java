@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory.impl;
+
+import android.graphics.Bitmap;
+
+import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.ResizableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.WrappingMemoryCache;
+import com.nostra13.universalimageloader.utils.L;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator for {@link ResizableMemoryCache}. Adjusts maximum size of wrapped cache at runtime using observed hit ratio,
+ * eviction rate and heap headroom:
+ * <ul>
+ * <li>if heap headroom is low then cache is shrunk twice (aggressively)</li>
+ * <li>if hit ratio is low while entries are evicted by size and heap has enough headroom then cache is grown by a
+ * quarter</li>
+ * </ul>
+ * Size is always kept within defined bounds. Decisions are evaluated on cache access (at most once per
+ * {@link #EVALUATION_INTERVAL} ms), logged and reported to {@linkplain SizingListener sizing listener}.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class AdaptiveMemoryCache implements ObservableMemoryCache, ResizableMemoryCache, WrappingMemoryCache {
+
+	/** {@value} */
+	public static final long EVALUATION_INTERVAL = 1000; // ms
+	/** Minimum number of cache requests in window to evaluate hit ratio */
+	private static final int MIN_REQUESTS_TO_EVALUATE = 32;
+
+	/** Free heap part below which cache is shrunk */
+	private static final float LOW_HEAP_HEADROOM = 0.15f;
+	/** Free heap part above which cache may grow */
+	private static final float HIGH_HEAP_HEADROOM = 0.35f;
+	/** Hit ratio below which cache grows (if entries are evicted by size) */
+	private static final float LOW_HIT_RATIO = 0.8f;
+
+	private static final String LOG_SIZE_CHANGED = "Memory cache max size changed: %1$d -> %2$d bytes (%3$s)";
+
+	/** Reasons of cache size change */
+	public enum Reason {
+		/** Heap headroom is low, cache is shrunk */
+		HEAP_PRESSURE,
+		/** Hit ratio is low while cache evicts entries, cache is grown */
+		LOW_HIT_RATIO,
+		/** Size was set explicitly by {@link #setMaxSize(int)} */
+		MANUAL
+	}
+
+	/**
+	 * Listener of {@link AdaptiveMemoryCache} sizing decisions
+	 *
+	 * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+	 * @since 1.9.3
+	 */
+	public interface SizingListener {
+		/**
+		 * Is called when maximum size of cache was changed
+		 *
+		 * @param oldMaxSize Previous maximum size (in bytes)
+		 * @param newMaxSize New maximum size (in bytes)
+		 * @param reason     Reason of change
+		 */
+		void onMaxSizeChanged(int oldMaxSize, int newMaxSize, Reason reason);
+	}
+
+	private final ResizableMemoryCache cache;
+	private final int minSize;
+	private final int maxSize;
+	private final RemovalForwarder removalForwarder;
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final AtomicInteger evictions = new AtomicInteger();
+	private final AtomicLong lastEvaluationTime = new AtomicLong(System.currentTimeMillis());
+
+	private volatile SizingListener sizingListener;
+
+	/**
+	 * @param cache   Wrapped resizable memory cache
+	 * @param minSize Minimum size of cache (in bytes)
+	 * @param maxSize Maximum size of cache (in bytes)
+	 */
+	public AdaptiveMemoryCache(ResizableMemoryCache cache, int minSize, int maxSize) {
+		if (minSize <= 0 || minSize > maxSize) {
+			throw new IllegalArgumentException("minSize must be a positive number not greater than maxSize");
+		}
+		this.cache = cache;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		removalForwarder = new RemovalForwarder(cache);
+		removalForwarder.addListener(new RemovalListener() {
+			@Override
+			public void onRemoved(String key, Bitmap value, RemovalCause cause) {
+				if (cause == RemovalCause.SIZE) {
+					evictions.incrementAndGet();
+				}
+			}
+		});
+
+		int initialSize = cache.getMaxSize();
+		if (initialSize < minSize || initialSize > maxSize) {
+			cache.setMaxSize(clamp(initialSize));
+		}
+	}
+
+	/** Sets listener of sizing decisions */
+	public void setSizingListener(SizingListener sizingListener) {
+		this.sizingListener = sizingListener;
+	}
+
+	@Override
+	public boolean put(String key, Bitmap value) {
+		return cache.put(key, value);
+	}
+
+	@Override
+	public Bitmap get(String key) {
+		Bitmap value = cache.get(key);
+		if (value == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		evaluateIfNeeded();
+		return value;
+	}
+
+	@Override
+	public Bitmap remove(String key) {
+		return removalForwarder.remove(cache, key, RemovalCause.EXPLICIT);
+	}
+
+	@Override
+	public Collection<String> keys() {
+		return cache.keys();
+	}
+
+	@Override
+	public void clear() {
+		removalForwarder.clear(cache);
+	}
+
+	@Override
+	public int getMaxSize() {
+		return cache.getMaxSize();
+	}
+
+	/** Sets maximum size of wrapped cache. Size is clamped to bounds of this cache. */
+	@Override
+	public void setMaxSize(int maxSize) {
+		changeMaxSize(clamp(maxSize), Reason.MANUAL);
+	}
+
+	@Override
+	public int size() {
+		return cache.size();
+	}
+
+	/** Returns minimum size bound (in bytes) */
+	public int getMinSizeBound() {
+		return minSize;
+	}
+
+	/** Returns maximum size bound (in bytes) */
+	public int getMaxSizeBound() {
+		return maxSize;
+	}
+
+	@Override
+	public MemoryCache getWrappedCache() {
+		return cache;
+	}
+
+	@Override
+	public void addRemovalListener(RemovalListener listener) {
+		removalForwarder.addListener(listener);
+	}
+
+	@Override
+	public void removeRemovalListener(RemovalListener listener) {
+		removalForwarder.removeListener(listener);
+	}
+
+	private void evaluateIfNeeded() {
+		long now = System.currentTimeMillis();
+		long lastTime = lastEvaluationTime.get();
+		// Only one thread evaluates decision, listeners are called without any lock held
+		if (now - lastTime < EVALUATION_INTERVAL || !lastEvaluationTime.compareAndSet(lastTime, now)) return;
+
+		int windowHits = hits.getAndSet(0);
+		int windowMisses = misses.getAndSet(0);
+		int windowEvictions = evictions.getAndSet(0);
+		int currentMaxSize = cache.getMaxSize();
+
+		float heapHeadroom = getHeapHeadroom();
+		if (heapHeadroom < LOW_HEAP_HEADROOM) {
+			changeMaxSize(Math.max(minSize, currentMaxSize / 2), Reason.HEAP_PRESSURE);
+			return;
+		}
+
+		int requests = windowHits + windowMisses;
+		if (requests < MIN_REQUESTS_TO_EVALUATE || windowEvictions == 0) return;
+
+		float hitRatio = (float) windowHits / requests;
+		if (hitRatio < LOW_HIT_RATIO && heapHeadroom > HIGH_HEAP_HEADROOM) {
+			changeMaxSize(Math.min(maxSize, currentMaxSize + currentMaxSize / 4), Reason.LOW_HIT_RATIO);
+		}
+	}
+
+	private void changeMaxSize(int newMaxSize, Reason reason) {
+		int oldMaxSize = cache.getMaxSize();
+		if (oldMaxSize == newMaxSize) return;
+
+		cache.setMaxSize(newMaxSize);
+		L.d(LOG_SIZE_CHANGED, oldMaxSize, newMaxSize, reason);
+		SizingListener listener = sizingListener;
+		if (listener != null) {
+			listener.onMaxSizeChanged(oldMaxSize, newMaxSize, reason);
+		}
+	}
+
+	private int clamp(int size) {
+		return Math.max(minSize, Math.min(maxSize, size));
+	}
+
+	/** Returns part of heap which is still available for allocations */
+	private static float getHeapHeadroom() {
+		Runtime runtime = Runtime.getRuntime();
+		long maxMemory = runtime.maxMemory();
+		long usedMemory = runtime.totalMemory() - runtime.freeMemory();
+		return (float) (maxMemory - usedMemory) / maxMemory;
+	}
+}
@@ -15,6 +15,10 @@ package com.nostra13.universalimageloader.cache.memory.impl;
 import android.graphics.Bitmap;
 
 import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.WrappingMemoryCache;
 
 import java.util.Collection;
 import java.util.Comparator;
@@ -22,26 +26,30 @@ import java.util.Comparator;
 /**
  * Decorator for {@link MemoryCache}. Provides special feature for cache: some different keys are considered as equals
  * (using {@link Comparator comparator}). And when you try to put some value into cache by key so entries with "equals"
- * keys will be removed from cache before.<br />
+ * keys will be removed from cache before. Such removals are reported to {@linkplain RemovalListener removal listeners}
+ * with {@link RemovalCause#REPLACED} cause.<br />
  * <b>NOTE:</b> Used for internal needs. Normally you don't need to use this class.
  * 
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @since 1.0.0 <br>
  *        如果内存缓存不允许缓存一张图片的多个尺寸，则用FuzzyKeyMemoryCache做封装，同一个图片新的尺寸会覆盖缓存中该图片老的尺寸。
  */
-public class FuzzyKeyMemoryCache implements MemoryCache {
+public class FuzzyKeyMemoryCache implements ObservableMemoryCache, WrappingMemoryCache {
 
     private final MemoryCache cache;
     private final Comparator<String> keyComparator;
+    private final RemovalForwarder removalForwarder;
 
     public FuzzyKeyMemoryCache(MemoryCache cache, Comparator<String> keyComparator) {
         this.cache = cache;
         this.keyComparator = keyComparator;
+        this.removalForwarder = new RemovalForwarder(cache);
     }
 
     @Override
     public boolean put(String key, Bitmap value) {
         // Search equal key and remove this entry
+        RemovalForwarder.Removal removal = null;
         synchronized (cache) {
             String keyToRemove = null;
             for (String cacheKey : cache.keys()) {
@@ -51,9 +59,11 @@ public class FuzzyKeyMemoryCache implements MemoryCache {
                 }
             }
             if (keyToRemove != null) {
-                cache.remove(keyToRemove);
+                removal = removalForwarder.removeDeferred(cache, keyToRemove, RemovalCause.REPLACED);
             }
         }
+        // Removal listeners are notified outside of cache lock
+        removalForwarder.notifyRemoved(removal);
         return cache.put(key, value);
     }
 
@@ -64,16 +74,31 @@ public class FuzzyKeyMemoryCache implements MemoryCache {
 
     @Override
     public Bitmap remove(String key) {
-        return cache.remove(key);
+        return removalForwarder.remove(cache, key, RemovalCause.EXPLICIT);
     }
 
     @Override
     public void clear() {
-        cache.clear();
+        removalForwarder.clear(cache);
     }
 
     @Override
     public Collection<String> keys() {
         return cache.keys();
     }
+
+    @Override
+    public MemoryCache getWrappedCache() {
+        return cache;
+    }
+
+    @Override
+    public void addRemovalListener(RemovalListener listener) {
+        removalForwarder.addListener(listener);
+    }
+
+    @Override
+    public void removeRemovalListener(RemovalListener listener) {
+        removalForwarder.removeListener(listener);
+    }
 }
@@ -18,6 +18,10 @@ package com.nostra13.universalimageloader.cache.memory.impl;
 import android.graphics.Bitmap;
 
 import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.WrappingMemoryCache;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -26,15 +30,17 @@ import java.util.Map;
 
 /**
  * Decorator for {@link MemoryCache}. Provides special feature for cache: if some cached object age exceeds defined
- * value then this object will be removed from cache.
+ * value then this object will be removed from cache. Such removals are reported to {@linkplain RemovalListener removal
+ * listeners} with {@link RemovalCause#EXPIRED} cause.
  *
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @see MemoryCache
  * @since 1.3.1
  */
-public class LimitedAgeMemoryCache implements MemoryCache {
+public class LimitedAgeMemoryCache implements ObservableMemoryCache, WrappingMemoryCache {
 
 	private final MemoryCache cache;
+	private final RemovalForwarder removalForwarder;
 
 	private final long maxAge;
 	private final Map<String, Long> loadingDates = Collections.synchronizedMap(new HashMap<String, Long>());
@@ -47,6 +53,7 @@ public class LimitedAgeMemoryCache implements MemoryCache {
 	public LimitedAgeMemoryCache(MemoryCache cache, long maxAge) {
 		this.cache = cache;
 		this.maxAge = maxAge * 1000; // to milliseconds
+		this.removalForwarder = new RemovalForwarder(cache);
 	}
 
 	@Override
@@ -62,7 +69,7 @@ public class LimitedAgeMemoryCache implements MemoryCache {
 	public Bitmap get(String key) {
 		Long loadingDate = loadingDates.get(key);
 		if (loadingDate != null && System.currentTimeMillis() - loadingDate > maxAge) {
-			cache.remove(key);
+			removalForwarder.remove(cache, key, RemovalCause.EXPIRED);
 			loadingDates.remove(key);
 		}
 
@@ -72,7 +79,7 @@ public class LimitedAgeMemoryCache implements MemoryCache {
 	@Override
 	public Bitmap remove(String key) {
 		loadingDates.remove(key);
-		return cache.remove(key);
+		return removalForwarder.remove(cache, key, RemovalCause.EXPLICIT);
 	}
 
 	@Override
@@ -82,7 +89,22 @@ public class LimitedAgeMemoryCache implements MemoryCache {
 
 	@Override
 	public void clear() {
-		cache.clear();
+		removalForwarder.clear(cache);
 		loadingDates.clear();
 	}
+
+	@Override
+	public MemoryCache getWrappedCache() {
+		return cache;
+	}
+
+	@Override
+	public void addRemovalListener(RemovalListener listener) {
+		removalForwarder.addListener(listener);
+	}
+
+	@Override
+	public void removeRemovalListener(RemovalListener listener) {
+		removalForwarder.removeListener(listener);
+	}
 }
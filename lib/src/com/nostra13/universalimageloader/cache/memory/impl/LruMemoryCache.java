@@ -2,7 +2,11 @@ package com.nostra13.universalimageloader.cache.memory.impl;
 
 import android.graphics.Bitmap;
 
-import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.RemovalNotifier;
+import com.nostra13.universalimageloader.cache.memory.ResizableMemoryCache;
 
 import java.util.Collection;
 import java.util.HashSet;
@@ -12,18 +16,20 @@ import java.util.Map;
 /**
  * A cache that holds strong references to a limited number of Bitmaps. Each time a Bitmap is accessed, it is moved to
  * the head of a queue. When a Bitmap is added to a full cache, the Bitmap at the end of that queue is evicted and may
- * become eligible for garbage collection.<br />
+ * become eligible for garbage collection. Evicted Bitmaps are reported to {@linkplain RemovalListener removal
+ * listeners}.<br />
  * <br />
  * <b>NOTE:</b> This cache uses only strong references for stored Bitmaps.
  *
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @since 1.8.1
  */
-public class LruMemoryCache implements MemoryCache {
+public class LruMemoryCache implements ObservableMemoryCache, ResizableMemoryCache {
 
 	private final LinkedHashMap<String, Bitmap> map;
+	private final RemovalNotifier removalNotifier = new RemovalNotifier();
 
-	private final int maxSize;
+	private volatile int maxSize;
 	/** Size of this cache in bytes */
 	private int size;
 
@@ -58,15 +64,19 @@ public class LruMemoryCache implements MemoryCache {
 			throw new NullPointerException("key == null || value == null");
 		}
 
+		Bitmap previous;
 		synchronized (this) {
 			size += sizeOf(key, value);
-			Bitmap previous = map.put(key, value);
+			previous = map.put(key, value);
 			if (previous != null) {
 				size -= sizeOf(key, previous);
 			}
 		}
+		if (previous != null && previous != value) {
+			removalNotifier.notifyRemoved(key, previous, RemovalCause.REPLACED);
+		}
 
-		trimToSize(maxSize);
+		trimToSize(maxSize, RemovalCause.SIZE);
 		return true;
 	}
 
@@ -74,8 +84,9 @@ public class LruMemoryCache implements MemoryCache {
 	 * Remove the eldest entries until the total of remaining entries is at or below the requested size.
 	 *
 	 * @param maxSize the maximum size of the cache before returning. May be -1 to evict even 0-sized elements.
+	 * @param cause   cause of removal which is reported to {@linkplain RemovalListener removal listeners}
 	 */
-	private void trimToSize(int maxSize) {
+	private void trimToSize(int maxSize, RemovalCause cause) {
 		while (true) {
 			String key;
 			Bitmap value;
@@ -97,6 +108,7 @@ public class LruMemoryCache implements MemoryCache {
 				map.remove(key);
 				size -= sizeOf(key, value);
 			}
+			removalNotifier.notifyRemoved(key, value, cause);
 		}
 	}
 
@@ -107,13 +119,17 @@ public class LruMemoryCache implements MemoryCache {
 			throw new NullPointerException("key == null");
 		}
 
+		Bitmap previous;
 		synchronized (this) {
-			Bitmap previous = map.remove(key);
+			previous = map.remove(key);
 			if (previous != null) {
 				size -= sizeOf(key, previous);
 			}
-			return previous;
 		}
+		if (previous != null) {
+			removalNotifier.notifyRemoved(key, previous, RemovalCause.EXPLICIT);
+		}
+		return previous;
 	}
 
 	@Override
@@ -125,7 +141,37 @@ public class LruMemoryCache implements MemoryCache {
 
 	@Override
 	public void clear() {
-		trimToSize(-1); // -1 will evict 0-sized elements
+		trimToSize(-1, RemovalCause.EXPLICIT); // -1 will evict 0-sized elements
+	}
+
+	@Override
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** Sets maximum sum of the sizes of the Bitmaps in this cache. Eldest Bitmaps are evicted if new size is smaller. */
+	@Override
+	public void setMaxSize(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize <= 0");
+		}
+		this.maxSize = maxSize;
+		trimToSize(maxSize, RemovalCause.SIZE);
+	}
+
+	@Override
+	public synchronized int size() {
+		return size;
+	}
+
+	@Override
+	public void addRemovalListener(RemovalListener listener) {
+		removalNotifier.addListener(listener);
+	}
+
+	@Override
+	public void removeRemovalListener(RemovalListener listener) {
+		removalNotifier.removeListener(listener);
 	}
 
 	/**
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory.impl;
+
+import android.graphics.Bitmap;
+
+import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.MissRatioCurve;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.ResizableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.WrappingMemoryCache;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decorator for {@link ResizableMemoryCache}. Keeps shadow LRU stack of keys and sizes of requested Bitmaps (including
+ * ones already evicted from wrapped cache, so called "ghost" entries) up to the largest estimated cache size. Reuse
+ * distance of each request gives {@linkplain MissRatioCurve miss ratio curve}: predicted hit ratio of cache for
+ * several sizes relative to current budget.<br />
+ * <br />
+ * To keep overhead low only requests of sampled keys (1 of {@code samplingRate}) are tracked, distances are scaled
+ * back by sampling rate.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class MissRatioCurveMemoryCache implements ObservableMemoryCache, ResizableMemoryCache, WrappingMemoryCache {
+
+	/** {@value} */
+	public static final int DEFAULT_SAMPLING_RATE = 4;
+
+	private final ResizableMemoryCache cache;
+	private final int samplingRate;
+	private final RemovalForwarder removalForwarder;
+
+	/** Shadow LRU stack: key -> Bitmap size (in bytes). Eldest entries go first. */
+	private final LinkedHashMap<String, Integer> stack = new LinkedHashMap<String, Integer>(0, 0.75f, true);
+	/** Sum of sizes of stack entries */
+	private long stackSize;
+
+	private long requestCount;
+	private final long[] hitCounts = new long[MissRatioCurve.BUDGET_MULTIPLIERS.length];
+
+	public MissRatioCurveMemoryCache(ResizableMemoryCache cache) {
+		this(cache, DEFAULT_SAMPLING_RATE);
+	}
+
+	/**
+	 * @param cache        Wrapped memory cache
+	 * @param samplingRate Only 1 of <b>samplingRate</b> keys is tracked. Use 1 to track all keys.
+	 */
+	public MissRatioCurveMemoryCache(ResizableMemoryCache cache, int samplingRate) {
+		if (samplingRate < 1) {
+			throw new IllegalArgumentException("samplingRate must be a positive number");
+		}
+		this.cache = cache;
+		this.samplingRate = samplingRate;
+		removalForwarder = new RemovalForwarder(cache);
+	}
+
+	@Override
+	public boolean put(String key, Bitmap value) {
+		if (isSampled(key)) {
+			synchronized (stack) {
+				Integer previousSize = stack.put(key, getSize(value));
+				stackSize += getSize(value) - (previousSize == null ? 0 : previousSize);
+				trimStack();
+			}
+		}
+		return cache.put(key, value);
+	}
+
+	@Override
+	public Bitmap get(String key) {
+		if (isSampled(key)) {
+			trackRequest(key);
+		}
+		return cache.get(key);
+	}
+
+	@Override
+	public Bitmap remove(String key) {
+		// Removed key stays in shadow stack: bigger cache could still contain it
+		return removalForwarder.remove(cache, key, RemovalCause.EXPLICIT);
+	}
+
+	@Override
+	public Collection<String> keys() {
+		return cache.keys();
+	}
+
+	@Override
+	public void clear() {
+		removalForwarder.clear(cache);
+	}
+
+	@Override
+	public int getMaxSize() {
+		return cache.getMaxSize();
+	}
+
+	@Override
+	public void setMaxSize(int maxSize) {
+		cache.setMaxSize(maxSize);
+	}
+
+	@Override
+	public int size() {
+		return cache.size();
+	}
+
+	@Override
+	public MemoryCache getWrappedCache() {
+		return cache;
+	}
+
+	@Override
+	public void addRemovalListener(RemovalListener listener) {
+		removalForwarder.addListener(listener);
+	}
+
+	@Override
+	public void removeRemovalListener(RemovalListener listener) {
+		removalForwarder.removeListener(listener);
+	}
+
+	/** Returns miss ratio curve estimated on cache requests since creation or last {@link #resetStatistics()} call */
+	public MissRatioCurve getMissRatioCurve() {
+		synchronized (stack) {
+			float[] hitRatios = new float[hitCounts.length];
+			for (int i = 0; i < hitCounts.length; i++) {
+				hitRatios[i] = requestCount == 0 ? 0 : (float) hitCounts[i] / requestCount;
+			}
+			return new MissRatioCurve(cache.getMaxSize(), requestCount * samplingRate, hitRatios);
+		}
+	}
+
+	/** Resets collected request statistics. Shadow stack is kept. */
+	public void resetStatistics() {
+		synchronized (stack) {
+			requestCount = 0;
+			for (int i = 0; i < hitCounts.length; i++) {
+				hitCounts[i] = 0;
+			}
+		}
+	}
+
+	private void trackRequest(String key) {
+		synchronized (stack) {
+			requestCount++;
+			if (!stack.containsKey(key)) return; // cold miss for any cache size
+
+			// Reuse distance = size of entries which were requested after this one (including itself)
+			long distance = stackSize;
+			for (Map.Entry<String, Integer> entry : stack.entrySet()) {
+				if (entry.getKey().equals(key)) break;
+				distance -= entry.getValue();
+			}
+			stack.get(key); // moves entry to the top of stack
+
+			long scaledDistance = distance * samplingRate;
+			int budget = cache.getMaxSize();
+			for (int i = 0; i < hitCounts.length; i++) {
+				if (scaledDistance <= (long) (budget * MissRatioCurve.BUDGET_MULTIPLIERS[i])) {
+					hitCounts[i]++;
+				}
+			}
+		}
+	}
+
+	/** Removes eldest entries which are out of the largest estimated cache size */
+	private void trimStack() {
+		float maxMultiplier = MissRatioCurve.BUDGET_MULTIPLIERS[MissRatioCurve.BUDGET_MULTIPLIERS.length - 1];
+		long maxStackSize = (long) (cache.getMaxSize() * maxMultiplier) / samplingRate;
+		Iterator<Integer> it = stack.values().iterator();
+		while (stackSize > maxStackSize && it.hasNext()) {
+			stackSize -= it.next();
+			it.remove();
+		}
+	}
+
+	private boolean isSampled(String key) {
+		if (samplingRate == 1) return true;
+		int h = key.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return (h & 0x7fffffff) % samplingRate == 0;
+	}
+
+	private static int getSize(Bitmap value) {
+		return value.getRowBytes() * value.getHeight();
+	}
+}
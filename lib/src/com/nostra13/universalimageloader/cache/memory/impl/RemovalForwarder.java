@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory.impl;
+
+import android.graphics.Bitmap;
+
+import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.RemovalNotifier;
+
+/**
+ * Forwards removal events of wrapped {@link MemoryCache} to listeners of decorator. Removals initiated by decorator
+ * itself (e.g. removal of expired entry) are reported with decorator-specific {@linkplain RemovalCause cause} instead
+ * of {@link RemovalCause#EXPLICIT}. If wrapped cache isn't {@linkplain ObservableMemoryCache observable} then only
+ * removals made through decorator are reported.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class RemovalForwarder implements RemovalListener {
+
+	private final RemovalNotifier notifier = new RemovalNotifier();
+	private final boolean wrappedObservable;
+
+	private final ThreadLocal<String> translatedKey = new ThreadLocal<String>();
+	private final ThreadLocal<RemovalCause> translatedCause = new ThreadLocal<RemovalCause>();
+	private final ThreadLocal<Removal> deferredRemoval = new ThreadLocal<Removal>();
+
+	/** Removal whose notification is delivered by {@link #notifyRemoved(Removal)} */
+	static final class Removal {
+		final String key;
+		final Bitmap value;
+		final RemovalCause cause;
+
+		Removal(String key, Bitmap value, RemovalCause cause) {
+			this.key = key;
+			this.value = value;
+			this.cause = cause;
+		}
+	}
+
+	RemovalForwarder(MemoryCache wrappedCache) {
+		wrappedObservable = wrappedCache instanceof ObservableMemoryCache;
+		if (wrappedObservable) {
+			((ObservableMemoryCache) wrappedCache).addRemovalListener(this);
+		}
+	}
+
+	void addListener(RemovalListener listener) {
+		notifier.addListener(listener);
+	}
+
+	void removeListener(RemovalListener listener) {
+		notifier.removeListener(listener);
+	}
+
+	/** Removes entry from wrapped cache and reports removal with defined cause */
+	Bitmap remove(MemoryCache cache, String key, RemovalCause cause) {
+		Removal removal = removeDeferred(cache, key, cause);
+		notifyRemoved(removal);
+		return removal == null ? null : removal.value;
+	}
+
+	/**
+	 * Removes entry from wrapped cache but doesn't notify listeners, so it can be called under lock of caller. Caller
+	 * should pass returned removal to {@link #notifyRemoved(Removal)} after lock is released.
+	 *
+	 * @return Removal or <b>null</b> if there was no entry for key
+	 */
+	Removal removeDeferred(MemoryCache cache, String key, RemovalCause cause) {
+		Bitmap removed;
+		Removal removal;
+		translatedKey.set(key);
+		translatedCause.set(cause);
+		try {
+			removed = cache.remove(key);
+			removal = deferredRemoval.get();
+		} finally {
+			translatedKey.remove();
+			translatedCause.remove();
+			deferredRemoval.remove();
+		}
+		if (!wrappedObservable && removed != null) {
+			removal = new Removal(key, removed, cause);
+		}
+		return removal;
+	}
+
+	/** Notifies listeners about removal {@linkplain #removeDeferred(MemoryCache, String, RemovalCause) made before} */
+	void notifyRemoved(Removal removal) {
+		if (removal != null) {
+			notifier.notifyRemoved(removal.key, removal.value, removal.cause);
+		}
+	}
+
+	/** Clears wrapped cache. Entries are reported as {@linkplain RemovalCause#EXPLICIT explicitly removed}. */
+	void clear(MemoryCache cache) {
+		if (wrappedObservable || !notifier.hasListeners()) {
+			cache.clear();
+			return;
+		}
+		for (String key : cache.keys()) {
+			remove(cache, key, RemovalCause.EXPLICIT);
+		}
+		cache.clear();
+	}
+
+	@Override
+	public void onRemoved(String key, Bitmap value, RemovalCause cause) {
+		if (cause == RemovalCause.EXPLICIT && key.equals(translatedKey.get())) {
+			// Removal made by decorator, it's delivered by caller
+			deferredRemoval.set(new Removal(key, value, translatedCause.get()));
+			return;
+		}
+		notifier.notifyRemoved(key, value, cause);
+	}
+}
@@ -19,6 +19,7 @@ import android.graphics.Bitmap;
 import com.nostra13.universalimageloader.cache.memory.LimitedMemoryCache;
 
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.HashMap;
@@ -118,7 +119,7 @@ public class UsingFreqLimitedMemoryCache extends LimitedMemoryCache {
 	}
 
 	@Override
-	protected Reference<Bitmap> createReference(Bitmap value) {
-		return new WeakReference<Bitmap>(value);
+	protected Reference<Bitmap> createReference(Bitmap value, ReferenceQueue<Bitmap> referenceQueue) {
+		return new WeakReference<Bitmap>(value, referenceQueue);
 	}
 }
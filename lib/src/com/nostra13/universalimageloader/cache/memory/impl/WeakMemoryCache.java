@@ -19,6 +19,7 @@ import android.graphics.Bitmap;
 import com.nostra13.universalimageloader.cache.memory.BaseMemoryCache;
 
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 
 /**
@@ -31,7 +32,7 @@ import java.lang.ref.WeakReference;
  */
 public class WeakMemoryCache extends BaseMemoryCache {
 	@Override
-	protected Reference<Bitmap> createReference(Bitmap value) {
-		return new WeakReference<Bitmap>(value);
+	protected Reference<Bitmap> createReference(Bitmap value, ReferenceQueue<Bitmap> referenceQueue) {
+		return new WeakReference<Bitmap>(value, referenceQueue);
 	}
 }
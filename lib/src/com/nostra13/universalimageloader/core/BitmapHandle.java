@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.graphics.Bitmap;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counted reference to {@link Bitmap} managed by {@link ImageLoader}. While at least one handle of bitmap isn't
+ * {@linkplain #release() released} the bitmap won't be recycled even if it's evicted from memory cache.<br />
+ * Each handle must be released exactly once.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ImageLoader#acquireBitmap(Bitmap)
+ * @see ImageLoaderConfiguration.Builder#recycleEvictedBitmaps()
+ * @since 1.9.3
+ */
+public final class BitmapHandle {
+
+	private final BitmapHandleRegistry registry;
+	final BitmapHandleRegistry.Entry entry;
+	private final AtomicBoolean released = new AtomicBoolean(false);
+	/** Reference for leak detection, is null if leak detection is disabled */
+	BitmapHandleRegistry.LeakReference leakReference;
+
+	BitmapHandle(BitmapHandleRegistry registry, BitmapHandleRegistry.Entry entry) {
+		this.registry = registry;
+		this.entry = entry;
+	}
+
+	/** Returns referenced bitmap. Bitmap is guaranteed not to be recycled until handle is released. */
+	public Bitmap getBitmap() {
+		return entry.bitmap;
+	}
+
+	/**
+	 * Releases reference to bitmap. Bitmap can be recycled after this call if it isn't referenced by anyone else.
+	 *
+	 * @throws IllegalStateException if handle was already released
+	 */
+	public void release() {
+		if (!released.compareAndSet(false, true)) {
+			throw new IllegalStateException("Bitmap handle is already released");
+		}
+		registry.release(this);
+	}
+
+	/** Returns <b>true</b> - if handle was released; <b>false</b> - otherwise */
+	public boolean isReleased() {
+		return released.get();
+	}
+}
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.graphics.Bitmap;
+import com.nostra13.universalimageloader.cache.memory.BitmapRecycler;
+import com.nostra13.universalimageloader.cache.memory.RemovalCause;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.core.imageaware.ImageAware;
+import com.nostra13.universalimageloader.utils.L;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts references to bitmaps held by memory cache, loading tasks and {@link ImageAware ImageAwares} which display
+ * them. Bitmap which was put into memory cache is {@linkplain BitmapRecycler recycled} as soon as it's removed from
+ * cache and isn't referenced by anyone.<br />
+ * If leak detection is enabled then {@linkplain BitmapHandle handles} which were collected by GC without release are
+ * logged (with stack trace of acquisition) and released.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class BitmapHandleRegistry implements RemovalListener {
+
+	private static final String LOG_RECYCLE_BITMAP = "Recycle bitmap evicted from memory cache [%s]";
+	private static final String WARNING_HANDLE_LEAKED = "Bitmap handle was collected by GC but wasn't released. "
+			+ "Release every acquired handle. Handle was acquired at:";
+
+	/** Reference count of bitmap. Guarded by registry lock. */
+	static final class Entry {
+		final Bitmap bitmap;
+		int refCount;
+		/** Whether memory cache holds bitmap now */
+		boolean cached;
+		/** Whether bitmap was ever put in memory cache. Only such bitmaps are recycled. */
+		boolean cacheOwned;
+		String cacheKey;
+
+		Entry(Bitmap bitmap) {
+			this.bitmap = bitmap;
+		}
+	}
+
+	/** Weak reference to handle which tracks handle leaks */
+	static final class LeakReference extends WeakReference<BitmapHandle> {
+		final Entry entry;
+		final Throwable acquisitionTrace;
+
+		LeakReference(BitmapHandle handle, ReferenceQueue<BitmapHandle> queue) {
+			super(handle, queue);
+			entry = handle.entry;
+			acquisitionTrace = new Throwable("Bitmap handle acquisition");
+		}
+	}
+
+	/** Bitmap displayed in ImageAware */
+	private static final class Binding {
+		final ImageAware imageAware;
+		final BitmapHandle handle;
+
+		Binding(ImageAware imageAware, BitmapHandle handle) {
+			this.imageAware = imageAware;
+			this.handle = handle;
+		}
+	}
+
+	private final BitmapRecycler recycler;
+	private final boolean detectLeaks;
+
+	private final Map<Bitmap, Entry> entries = new IdentityHashMap<Bitmap, Entry>();
+	private final Map<Integer, Binding> bindings = Collections.synchronizedMap(new HashMap<Integer, Binding>());
+
+	private final ReferenceQueue<BitmapHandle> leakQueue = new ReferenceQueue<BitmapHandle>();
+	private final Set<LeakReference> leakReferences = Collections.synchronizedSet(new HashSet<LeakReference>());
+
+	/**
+	 * @param recycler    Disposes bitmaps which were evicted from memory cache and aren't referenced anymore
+	 * @param detectLeaks Whether leaked handles should be tracked. Is expensive, use for debug only.
+	 */
+	BitmapHandleRegistry(BitmapRecycler recycler, boolean detectLeaks) {
+		this.recycler = recycler;
+		this.detectLeaks = detectLeaks;
+	}
+
+	/**
+	 * Acquires reference to bitmap
+	 *
+	 * @return Handle which must be released or <b>null</b> if bitmap is already recycled
+	 */
+	BitmapHandle acquire(Bitmap bitmap) {
+		if (detectLeaks) {
+			releaseLeakedHandles();
+		}
+
+		BitmapHandle handle;
+		synchronized (entries) {
+			if (bitmap.isRecycled()) return null;
+
+			Entry entry = entries.get(bitmap);
+			if (entry == null) {
+				entry = new Entry(bitmap);
+				entries.put(bitmap, entry);
+			}
+			entry.refCount++;
+			handle = new BitmapHandle(this, entry);
+		}
+		if (detectLeaks) {
+			handle.leakReference = new LeakReference(handle, leakQueue);
+			leakReferences.add(handle.leakReference);
+		}
+		return handle;
+	}
+
+	/** Is called by {@link BitmapHandle#release()} */
+	void release(BitmapHandle handle) {
+		if (handle.leakReference != null) {
+			leakReferences.remove(handle.leakReference);
+			handle.leakReference.clear();
+		}
+		releaseEntry(handle.entry);
+	}
+
+	/** Marks bitmap as held by memory cache. Must be called before bitmap is put into memory cache. */
+	void markCached(String memoryCacheKey, Bitmap bitmap) {
+		synchronized (entries) {
+			Entry entry = entries.get(bitmap);
+			if (entry == null) {
+				entry = new Entry(bitmap);
+				entries.put(bitmap, entry);
+			}
+			if (!entry.cached) {
+				entry.cached = true;
+				entry.cacheOwned = true;
+				entry.cacheKey = memoryCacheKey;
+				entry.refCount++;
+			}
+		}
+	}
+
+	@Override
+	public void onRemoved(String key, Bitmap value, RemovalCause cause) {
+		if (value == null) return; // collected by GC
+
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(value);
+			if (entry == null || !entry.cached) return;
+			entry.cached = false;
+		}
+		releaseEntry(entry);
+	}
+
+	/**
+	 * Binds bitmap to ImageAware which displays it. Previously bound bitmap is released. Bitmaps aren't bound to
+	 * ImageAwares without view (e.g. {@link com.nostra13.universalimageloader.core.imageaware.NonViewAware}): such
+	 * binding would never be released because these ImageAwares are never reused or collected.
+	 *
+	 * @param bitmap Displayed bitmap or <b>null</b> if ImageAware doesn't display bitmap anymore
+	 */
+	void bind(ImageAware imageAware, Bitmap bitmap) {
+		if (imageAware.getWrappedView() == null) {
+			releaseCollectedBindings();
+			return;
+		}
+		BitmapHandle handle = bitmap == null ? null : acquire(bitmap);
+		Binding previous;
+		if (handle == null) {
+			previous = bindings.remove(imageAware.getId());
+		} else {
+			previous = bindings.put(imageAware.getId(), new Binding(imageAware, handle));
+		}
+		if (previous != null) {
+			previous.handle.release();
+		}
+		releaseCollectedBindings();
+	}
+
+	/** Releases bitmaps bound to ImageAwares which were collected by GC */
+	private void releaseCollectedBindings() {
+		List<Binding> collected = null;
+		synchronized (bindings) {
+			Iterator<Binding> it = bindings.values().iterator();
+			while (it.hasNext()) {
+				Binding binding = it.next();
+				if (binding.imageAware.isCollected()) {
+					it.remove();
+					if (collected == null) {
+						collected = new ArrayList<Binding>();
+					}
+					collected.add(binding);
+				}
+			}
+		}
+		if (collected != null) {
+			for (Binding binding : collected) {
+				binding.handle.release();
+			}
+		}
+	}
+
+	private void releaseLeakedHandles() {
+		LeakReference leakReference;
+		while ((leakReference = (LeakReference) leakQueue.poll()) != null) {
+			if (leakReferences.remove(leakReference)) {
+				L.w(WARNING_HANDLE_LEAKED);
+				L.e(leakReference.acquisitionTrace);
+				releaseEntry(leakReference.entry);
+			}
+		}
+	}
+
+	private void releaseEntry(Entry entry) {
+		synchronized (entries) {
+			entry.refCount--;
+			if (entry.refCount > 0) return;
+
+			entries.remove(entry.bitmap);
+			// Recycle under lock so concurrent acquire() sees recycled bitmap
+			if (entry.cacheOwned && !entry.bitmap.isRecycled()) {
+				L.d(LOG_RECYCLE_BITMAP, entry.cacheKey);
+				recycler.recycle(entry.bitmap);
+			}
+		}
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.utils.MemoryCacheUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes list of {@linkplain ImageRequest image requests} in parallel through {@link ImageLoader} and waits for all
+ * of them. Duplicated requests (same URI, target size and options) are executed once. Number of simultaneously running
+ * loadings is limited. Doesn't use own threads: next request is started by completion callback of previous one.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ImageLoader#loadImagesSync(List, int)
+ * @since 1.9.3
+ */
+final class BulkImageLoader implements ImageHandle.Callback {
+
+	private final ImageLoader imageLoader;
+	private final ImageLoaderConfiguration configuration;
+	private final List<ImageRequest> requests;
+	private final Semaphore permits;
+	/** Asynchronous copies of requests' options */
+	private final Map<DisplayImageOptions, DisplayImageOptions> preparedOptions =
+			new IdentityHashMap<DisplayImageOptions, DisplayImageOptions>();
+
+	private CountDownLatch doneLatch;
+
+	BulkImageLoader(ImageLoader imageLoader, ImageLoaderConfiguration configuration, List<ImageRequest> requests,
+			int maxConcurrentLoads) {
+		this.imageLoader = imageLoader;
+		this.configuration = configuration;
+		this.requests = requests;
+		permits = new Semaphore(maxConcurrentLoads);
+	}
+
+	/**
+	 * Executes requests and waits for them
+	 *
+	 * @return Handles of done loadings in order of requests. Duplicated requests have the same handle.
+	 * @throws InterruptedException if current thread was interrupted while waiting, started loadings are cancelled
+	 */
+	List<ImageHandle> execute() throws InterruptedException {
+		Map<RequestKey, Integer> uniqueIndexes = new HashMap<RequestKey, Integer>();
+		List<ImageRequest> uniqueRequests = new ArrayList<ImageRequest>();
+		int[] resultIndexes = new int[requests.size()];
+		for (int i = 0; i < requests.size(); i++) {
+			ImageRequest request = prepareRequest(requests.get(i));
+			RequestKey key = new RequestKey(request);
+			Integer index = uniqueIndexes.get(key);
+			if (index == null) {
+				index = uniqueRequests.size();
+				uniqueIndexes.put(key, index);
+				uniqueRequests.add(request);
+			}
+			resultIndexes[i] = index;
+		}
+
+		doneLatch = new CountDownLatch(uniqueRequests.size());
+		ImageHandle[] handles = new ImageHandle[uniqueRequests.size()];
+		try {
+			for (int i = 0; i < handles.length; i++) {
+				permits.acquire();
+				handles[i] = imageLoader.load(uniqueRequests.get(i));
+				handles[i].addCallback(this);
+			}
+			doneLatch.await();
+		} catch (InterruptedException e) {
+			for (ImageHandle handle : handles) {
+				if (handle != null) {
+					handle.cancel(true);
+				}
+			}
+			throw e;
+		}
+
+		List<ImageHandle> results = new ArrayList<ImageHandle>(resultIndexes.length);
+		for (int index : resultIndexes) {
+			results.add(handles[index]);
+		}
+		return results;
+	}
+
+	@Override
+	public void onDone(ImageHandle handle) {
+		permits.release();
+		doneLatch.countDown();
+	}
+
+	/**
+	 * Resolves defaults of request and makes it asynchronous. Events are delivered on worker threads (without handler)
+	 * because waiting thread can't process them.
+	 */
+	private ImageRequest prepareRequest(ImageRequest request) {
+		ImageSize targetSize = request.getTargetSize();
+		if (targetSize == null) {
+			targetSize = configuration.getMaxImageSize();
+		}
+		DisplayImageOptions options = request.getOptions();
+		if (options == null) {
+			options = configuration.defaultDisplayImageOptions;
+		}
+		if (options.isSyncLoading() || options.getHandler() != null) {
+			DisplayImageOptions asyncOptions = preparedOptions.get(options);
+			if (asyncOptions == null) {
+				asyncOptions = new DisplayImageOptions.Builder().cloneFrom(options).syncLoading(false).handler(null)
+						.build();
+				preparedOptions.put(options, asyncOptions);
+			}
+			options = asyncOptions;
+		}
+		return new ImageRequest.Builder(request.getUri()).targetSize(targetSize).options(options)
+				.trackProgress(request.isTrackProgress()).build();
+	}
+
+	/** Identifies request by URI, target size and options instance */
+	private static class RequestKey {
+		private final String memoryCacheKey;
+		private final DisplayImageOptions options;
+
+		RequestKey(ImageRequest request) {
+			memoryCacheKey = MemoryCacheUtils.generateKey(String.valueOf(request.getUri()), request.getTargetSize());
+			options = request.getOptions();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RequestKey)) return false;
+			RequestKey other = (RequestKey) o;
+			return memoryCacheKey.equals(other.memoryCacheKey) && options == other.options;
+		}
+
+		@Override
+		public int hashCode() {
+			return memoryCacheKey.hashCode() * 31 + System.identityHashCode(options);
+		}
+	}
+}
@@ -16,16 +16,19 @@ import android.annotation.TargetApi;
 import android.app.ActivityManager;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
 import android.os.Build;
 import com.nostra13.universalimageloader.cache.disc.DiskCache;
 import com.nostra13.universalimageloader.cache.disc.impl.UnlimitedDiskCache;
 import com.nostra13.universalimageloader.cache.disc.impl.ext.LruDiskCache;
 import com.nostra13.universalimageloader.cache.disc.naming.FileNameGenerator;
 import com.nostra13.universalimageloader.cache.disc.naming.HashCodeFileNameGenerator;
+import com.nostra13.universalimageloader.cache.memory.BitmapRecycler;
 import com.nostra13.universalimageloader.cache.memory.MemoryCache;
 import com.nostra13.universalimageloader.cache.memory.impl.LruMemoryCache;
 import com.nostra13.universalimageloader.core.assist.QueueProcessingType;
 import com.nostra13.universalimageloader.core.assist.deque.LIFOLinkedBlockingDeque;
+import com.nostra13.universalimageloader.core.assist.deque.LockFreeLIFOBlockingQueue;
 import com.nostra13.universalimageloader.core.decode.BaseImageDecoder;
 import com.nostra13.universalimageloader.core.decode.ImageDecoder;
 import com.nostra13.universalimageloader.core.display.BitmapDisplayer;
@@ -39,8 +42,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -64,9 +70,19 @@ public class DefaultConfigurationFactory {
      */
     public static Executor createExecutor(int threadPoolSize, int threadPriority,
             QueueProcessingType tasksProcessingType) {
-        boolean lifo = tasksProcessingType == QueueProcessingType.LIFO;
-        BlockingQueue<Runnable> taskQueue =
-                lifo ? new LIFOLinkedBlockingDeque<Runnable>() : new LinkedBlockingQueue<Runnable>();
+        BlockingQueue<Runnable> taskQueue;
+        switch (tasksProcessingType) {
+            case LIFO:
+                taskQueue = new LIFOLinkedBlockingDeque<Runnable>();
+                break;
+            case LOCK_FREE_LIFO:
+                taskQueue = new LockFreeLIFOBlockingQueue<Runnable>();
+                break;
+            case FIFO:
+            default:
+                taskQueue = new LinkedBlockingQueue<Runnable>();
+                break;
+        }
         return new ThreadPoolExecutor(threadPoolSize, threadPoolSize, 0L, TimeUnit.MILLISECONDS, taskQueue,
                 createThreadFactory(threadPriority, "uil-pool-"));
     }
@@ -76,6 +92,19 @@ public class DefaultConfigurationFactory {
         return Executors.newCachedThreadPool(createThreadFactory(Thread.NORM_PRIORITY, "uil-pool-d-"));
     }
 
+    /** 为ImageLoaderEngine提供单线程定时器，用于延迟加载（任务在延迟期间不占用工作线程）和定期调整线程池大小。 */
+    public static ScheduledExecutorService createTimer() {
+        return Executors.newSingleThreadScheduledExecutor(createThreadFactory(Thread.NORM_PRIORITY, "uil-pool-t-"));
+    }
+
+    /**
+     * 为HedgingImageDownloader提供请求线程池：最多 maxThreads 个线程，超出时任务被拒绝（不对冲），空闲线程超时后退出。
+     */
+    public static ExecutorService createHedgeExecutor(int maxThreads, int threadPriority) {
+        return new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                createThreadFactory(threadPriority, "uil-pool-h-"));
+    }
+
     /** 返回一个HashCodeFileNameGenerator对象，即以 uri HashCode 为文件名的文件名生成器 */
     public static FileNameGenerator createFileNameGenerator() {
         return new HashCodeFileNameGenerator();
@@ -157,6 +186,16 @@ public class DefaultConfigurationFactory {
         return new SimpleBitmapDisplayer();
     }
 
+    /** Creates default implementation of {@link BitmapRecycler} which {@linkplain Bitmap#recycle() recycles} bitmaps */
+    public static BitmapRecycler createBitmapRecycler() {
+        return new BitmapRecycler() {
+            @Override
+            public void recycle(Bitmap bitmap) {
+                bitmap.recycle();
+            }
+        };
+    }
+
     /** Creates default implementation of {@linkplain ThreadFactory thread factory} for task executor */
     private static ThreadFactory createThreadFactory(int threadPriority, String threadNamePrefix) {
         return new DefaultThreadFactory(threadPriority, threadNamePrefix);
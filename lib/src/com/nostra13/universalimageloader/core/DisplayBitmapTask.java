@@ -42,6 +42,8 @@ final class DisplayBitmapTask implements Runnable {
     private final ImageLoadingListener listener;
     private final ImageLoaderEngine engine;
     private final LoadedFrom loadedFrom;
+    /** Keeps bitmap from recycling until it's displayed. Is null if bitmap recycling is disabled. */
+    private final BitmapHandle bitmapHandle;
 
     public DisplayBitmapTask(Bitmap bitmap, ImageLoadingInfo imageLoadingInfo, ImageLoaderEngine engine,
             LoadedFrom loadedFrom) {
@@ -53,10 +55,23 @@ final class DisplayBitmapTask implements Runnable {
         listener = imageLoadingInfo.listener;
         this.engine = engine;
         this.loadedFrom = loadedFrom;
+        bitmapHandle = engine.acquireBitmap(bitmap);
     }
 
     @Override
     public void run() {
+        long start = System.nanoTime();
+        try {
+            display();
+        } finally {
+            if (bitmapHandle != null) {
+                bitmapHandle.release();
+            }
+            engine.getMetrics().onDisplayed(System.nanoTime() - start);
+        }
+    }
+
+    private void display() {
         // 判断imageAware是否被 GC 回收
         if (imageAware.isCollected()) {
             // 调用取消加载回调接口
@@ -73,6 +88,7 @@ final class DisplayBitmapTask implements Runnable {
             // 调用displayer显示图片，并将imageAware从正在加载的 map 中移除。调用加载成功回调接口
             L.d(LOG_DISPLAY_IMAGE_IN_IMAGEAWARE, loadedFrom, memoryCacheKey);
             displayer.display(bitmap, imageAware, loadedFrom);
+            engine.bindBitmap(imageAware, bitmap);
             engine.cancelDisplayTaskFor(imageAware);
             listener.onLoadingComplete(imageUri, imageAware.getWrappedView(), bitmap);
         }
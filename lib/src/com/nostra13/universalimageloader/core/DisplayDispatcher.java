@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Delivers {@linkplain DisplayBitmapTask display tasks} to handler in batches, once per
+ * {@linkplain ProgressDispatcher#FRAME_INTERVAL frame}. Batch is run until per-frame time budget is spent, the rest of
+ * tasks spill to next frame. At least one task is run every frame. Tasks of all handlers of one looper (every display
+ * call on UI thread gets its own handler) share one batch.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class DisplayDispatcher {
+
+	private final long frameBudgetNanos;
+	private final ImageLoaderMetrics metrics;
+	private final Map<Looper, Batch> batches = new HashMap<Looper, Batch>();
+
+	/**
+	 * @param frameBudgetMillis Maximum time of display work per frame, in milliseconds
+	 * @param metrics           Metrics which get display time of frames
+	 */
+	DisplayDispatcher(int frameBudgetMillis, ImageLoaderMetrics metrics) {
+		this.frameBudgetNanos = frameBudgetMillis * 1000000L;
+		this.metrics = metrics;
+	}
+
+	/** Queues display task for delivery at next frame */
+	void post(Handler handler, Runnable displayTask) {
+		Batch batch;
+		boolean schedule;
+		synchronized (this) {
+			Looper looper = handler.getLooper();
+			batch = batches.get(looper);
+			if (batch == null) {
+				batch = new Batch(looper);
+				batches.put(looper, batch);
+			}
+			batch.tasks.add(displayTask);
+			schedule = !batch.scheduled;
+			batch.scheduled = true;
+		}
+		if (schedule) {
+			batch.scheduleAtNextFrame();
+		}
+	}
+
+	/** Display tasks of one looper which are waiting for frame */
+	private final class Batch implements Runnable {
+		final Looper looper;
+		final Handler handler;
+		final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+		boolean scheduled;
+
+		Batch(Looper looper) {
+			this.looper = looper;
+			handler = new Handler(looper);
+		}
+
+		void scheduleAtNextFrame() {
+			long now = SystemClock.uptimeMillis();
+			long frameInterval = ProgressDispatcher.FRAME_INTERVAL;
+			handler.postAtTime(this, now - now % frameInterval + frameInterval);
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			boolean spilled;
+			while (true) {
+				Runnable task;
+				synchronized (DisplayDispatcher.this) {
+					task = tasks.poll();
+					if (task == null) {
+						scheduled = false;
+						spilled = false;
+						batches.remove(looper);
+						break;
+					}
+				}
+				task.run();
+				if (System.nanoTime() - start >= frameBudgetNanos) {
+					synchronized (DisplayDispatcher.this) {
+						spilled = !tasks.isEmpty();
+						scheduled = spilled;
+					}
+					break;
+				}
+			}
+			metrics.onDisplayFrame(System.nanoTime() - start, spilled);
+			if (spilled) {
+				scheduleAtNextFrame();
+			}
+		}
+	}
+}
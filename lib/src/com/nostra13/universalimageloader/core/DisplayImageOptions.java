@@ -66,6 +66,8 @@ import com.nostra13.universalimageloader.core.process.BitmapProcessor;
  *        .showImageOnFail(R.drawable.ic_error) // resource or drawable<br>
  *        .resetViewBeforeLoading(false) // default<br>
  *        .delayBeforeLoading(1000)<br>
+ *        .priority(0) // default<br>
+ *        .deadline(5000)<br>
  *        .cacheInMemory(false) // default<br>
  *        .cacheOnDisk(false) // default<br>
  *        .preProcessor(...)<br>
@@ -93,6 +95,8 @@ public final class DisplayImageOptions {
     private final ImageScaleType imageScaleType;
     private final Options decodingOptions;
     private final int delayBeforeLoading;
+    private final int priority;
+    private final int deadline;
     private final boolean considerExifParams;
     private final Object extraForDownloader;
     private final BitmapProcessor preProcessor;
@@ -114,6 +118,8 @@ public final class DisplayImageOptions {
         imageScaleType = builder.imageScaleType;
         decodingOptions = builder.decodingOptions;
         delayBeforeLoading = builder.delayBeforeLoading;
+        priority = builder.priority;
+        deadline = builder.deadline;
         considerExifParams = builder.considerExifParams;
         extraForDownloader = builder.extraForDownloader;
         preProcessor = builder.preProcessor;
@@ -183,6 +189,15 @@ public final class DisplayImageOptions {
         return delayBeforeLoading;
     }
 
+    public int getPriority() {
+        return priority;
+    }
+
+    /** Returns deadline of loading in milliseconds from request or 0 if engine-wide default deadline is used */
+    public int getDeadline() {
+        return deadline;
+    }
+
     public boolean isConsiderExifParams() {
         return considerExifParams;
     }
@@ -229,6 +244,8 @@ public final class DisplayImageOptions {
         private ImageScaleType imageScaleType = ImageScaleType.IN_SAMPLE_POWER_OF_2;
         private Options decodingOptions = new Options();
         private int delayBeforeLoading = 0;
+        private int priority = 0;
+        private int deadline = 0;
         private boolean considerExifParams = false;
         private Object extraForDownloader = null;
         private BitmapProcessor preProcessor = null;
@@ -418,7 +435,10 @@ public final class DisplayImageOptions {
             return this;
         }
 
-        /** Sets delay time before starting loading task. Default - no delay. */
+        /**
+         * Sets delay time before starting loading task. Default - no delay. Task doesn't occupy worker thread during
+         * delay and is skipped if ImageAware is bound to another image when delay expires.
+         */
         public Builder delayBeforeLoading(int delayInMillis) {
             this.delayBeforeLoading = delayInMillis;
             return this;
@@ -436,6 +456,31 @@ public final class DisplayImageOptions {
             return this;
         }
 
+        /**
+         * Sets priority of loading task. Greater value means higher priority. Tasks with lower priority are shed first
+         * when {@linkplain ImageLoaderConfiguration.Builder#taskQueueLimit(int,
+         * com.nostra13.universalimageloader.core.assist.QueueOverflowPolicy,
+         * com.nostra13.universalimageloader.core.listener.TaskShedListener) task queue} is full. Default - 0.
+         */
+        public Builder priority(int priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Sets deadline of loading in milliseconds from request. Task which is still queued after deadline is dropped,
+         * running download is aborted. Listener gets fail event with
+         * {@link com.nostra13.universalimageloader.core.assist.FailReason.FailType#DEADLINE_EXPIRED DEADLINE_EXPIRED}.
+         * Default - 0, {@linkplain ImageLoaderConfiguration.Builder#defaultDeadline(int) engine-wide deadline} is used.
+         */
+        public Builder deadline(int deadlineInMillis) {
+            if (deadlineInMillis < 0) {
+                throw new IllegalArgumentException("deadlineInMillis must not be negative");
+            }
+            this.deadline = deadlineInMillis;
+            return this;
+        }
+
         /**
          * Sets bitmap processor which will be process bitmaps before they will be cached in memory. So memory cache
          * will contain bitmap processed by incoming preProcessor.<br />
@@ -495,6 +540,8 @@ public final class DisplayImageOptions {
             imageScaleType = options.imageScaleType;
             decodingOptions = options.decodingOptions;
             delayBeforeLoading = options.delayBeforeLoading;
+            priority = options.priority;
+            deadline = options.deadline;
             considerExifParams = options.considerExifParams;
             extraForDownloader = options.extraForDownloader;
             preProcessor = options.preProcessor;
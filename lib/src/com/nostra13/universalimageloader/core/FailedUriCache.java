@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.os.SystemClock;
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.assist.FailReason.FailType;
+import com.nostra13.universalimageloader.core.download.HttpStatusException;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of image URIs which failed to load permanently (e.g. server answered 404/410 or content can't be
+ * decoded). Display requests for such URIs fail immediately with cached {@link FailReason} instead of occupying
+ * connection and worker thread again. Entries expire after TTL defined for their fail reason; least recently used
+ * entries are evicted if cache is full.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class FailedUriCache {
+
+	private static final int NOT_CACHED = 0;
+
+	private static final class FailedUri {
+		final FailReason failReason;
+		final long expirationTime;
+
+		FailedUri(FailReason failReason, long expirationTime) {
+			this.failReason = failReason;
+			this.expirationTime = expirationTime;
+		}
+	}
+
+	/** TTLs (in milliseconds) of failures by HTTP status code */
+	private final Map<Integer, Long> statusTtls;
+	private final long decodingErrorTtl;
+
+	/** Guarded by itself */
+	private final Map<String, FailedUri> entries;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong storedCount = new AtomicLong();
+
+	/**
+	 * @param maxSize          Maximum number of cached URIs
+	 * @param statusTtls       TTLs (in milliseconds) of failures caused by HTTP responses with defined status codes
+	 * @param decodingErrorTtl TTL (in milliseconds) of {@linkplain FailType#DECODING_ERROR decoding failures}. 0 -
+	 *                         decoding failures aren't cached.
+	 */
+	FailedUriCache(final int maxSize, Map<Integer, Long> statusTtls, long decodingErrorTtl) {
+		this.statusTtls = new HashMap<Integer, Long>(statusTtls);
+		this.decodingErrorTtl = decodingErrorTtl;
+		entries = new LinkedHashMap<String, FailedUri>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, FailedUri> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/** @return Cached fail reason for URI or <b>null</b> if URI isn't known as failed or its entry expired */
+	FailReason get(String uri) {
+		synchronized (entries) {
+			FailedUri entry = entries.get(uri);
+			if (entry == null) return null;
+			if (entry.expirationTime <= SystemClock.uptimeMillis()) {
+				entries.remove(uri);
+				return null;
+			}
+			hitCount.incrementAndGet();
+			return entry.failReason;
+		}
+	}
+
+	/**
+	 * Remembers failure of URI if its fail reason is permanent according to cache policy.
+	 *
+	 * @return <b>true</b> - if failure was cached; <b>false</b> - otherwise
+	 */
+	boolean put(String uri, FailType failType, Throwable cause) {
+		long ttl = getTtl(failType, cause);
+		if (ttl <= NOT_CACHED) return false;
+
+		FailedUri entry = new FailedUri(new FailReason(failType, cause), SystemClock.uptimeMillis() + ttl);
+		synchronized (entries) {
+			entries.put(uri, entry);
+		}
+		storedCount.incrementAndGet();
+		return true;
+	}
+
+	/** @return <b>true</b> - if URI was cached as failed; <b>false</b> - otherwise */
+	boolean invalidate(String uri) {
+		synchronized (entries) {
+			return entries.remove(uri) != null;
+		}
+	}
+
+	void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	long getHitCount() {
+		return hitCount.get();
+	}
+
+	long getStoredCount() {
+		return storedCount.get();
+	}
+
+	private long getTtl(FailType failType, Throwable cause) {
+		switch (failType) {
+			case DECODING_ERROR:
+				return decodingErrorTtl;
+			case IO_ERROR:
+				// Downloader wrappers may wrap status exception
+				for (Throwable t = cause; t != null; t = t.getCause()) {
+					if (t instanceof HttpStatusException) {
+						Long ttl = statusTtls.get(((HttpStatusException) t).getStatusCode());
+						return ttl == null ? NOT_CACHED : ttl;
+					}
+				}
+				return NOT_CACHED;
+			default:
+				return NOT_CACHED;
+		}
+	}
+}
@@ -0,0 +1,289 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.graphics.Bitmap;
+import android.view.View;
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.ViewScaleType;
+import com.nostra13.universalimageloader.core.imageaware.ImageAware;
+import com.nostra13.universalimageloader.core.imageaware.NonViewAware;
+import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
+import com.nostra13.universalimageloader.core.listener.ImageLoadingProgressListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Handle of image loading started by {@link ImageLoader#load(ImageRequest)}. It's a {@link Future} of loaded Bitmap:
+ * loading can be cancelled, awaited or composed with other work via {@linkplain #addCallback(Callback) callbacks}.
+ * Handle doesn't occupy any thread, it's completed by loading events of ImageLoader.<br />
+ * <br />
+ * <b>NOTE:</b> If loading was started on UI thread then handle is completed on UI thread, so don't block UI thread by
+ * {@link #get()} waiting for such handle. Handles of loadings started on background threads are completed on
+ * ImageLoader's worker threads.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ImageRequest
+ * @since 1.9.3
+ */
+public final class ImageHandle implements Future<Bitmap> {
+
+	private static final String ERROR_LOADING_FAILED = "Image loading failed: %s [%s]";
+
+	private static final int STATE_LOADING = 0;
+	private static final int STATE_COMPLETED = 1;
+	private static final int STATE_FAILED = 2;
+	private static final int STATE_CANCELLED = 3;
+
+	private final ImageLoaderEngine engine;
+	private final String uri;
+	private final ImageAware imageAware;
+	private final ImageLoadingListener listener;
+	private final ImageLoadingProgressListener progressListener;
+	private final boolean trackProgress;
+	private final EventListener eventListener = new EventListener();
+	private final CountDownLatch doneLatch = new CountDownLatch(1);
+
+	// Guarded by this
+	private final List<Callback> callbacks = new ArrayList<Callback>();
+	private int state = STATE_LOADING;
+	private Bitmap bitmap;
+	private FailReason failReason;
+
+	private volatile int loadedBytes = 0;
+	private volatile int totalBytes = -1;
+
+	ImageHandle(ImageLoaderEngine engine, String uri, ImageSize targetSize, ImageLoadingListener listener,
+			ImageLoadingProgressListener progressListener, boolean trackProgress) {
+		this.engine = engine;
+		this.uri = uri;
+		this.listener = listener;
+		this.progressListener = progressListener;
+		this.trackProgress = trackProgress || progressListener != null;
+		imageAware = new RequestImageAware(uri, targetSize);
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	/**
+	 * Cancels loading. Queued task is removed from queue, running download is aborted. Cancelled handle is done at once,
+	 * {@link #get()} throws {@link CancellationException}.
+	 *
+	 * @param mayInterruptIfRunning Is ignored, running loading is always stopped
+	 * @return <b>false</b> - if loading is done already; <b>true</b> - otherwise
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		if (!finish(STATE_CANCELLED, null, null)) return false;
+		engine.cancelDisplayTask(imageAware);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return state == STATE_CANCELLED;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return state != STATE_LOADING;
+	}
+
+	/**
+	 * Waits for loading end and returns loaded Bitmap
+	 *
+	 * @throws CancellationException if loading was cancelled
+	 * @throws ExecutionException    if loading failed, its cause is cause of {@linkplain #getFailReason() fail reason}
+	 */
+	@Override
+	public Bitmap get() throws InterruptedException, ExecutionException {
+		doneLatch.await();
+		return getResult();
+	}
+
+	/**
+	 * Waits at most given time for loading end and returns loaded Bitmap
+	 *
+	 * @throws CancellationException if loading was cancelled
+	 * @throws ExecutionException    if loading failed, its cause is cause of {@linkplain #getFailReason() fail reason}
+	 * @throws TimeoutException      if loading isn't done in given time
+	 */
+	@Override
+	public Bitmap get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!doneLatch.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		return getResult();
+	}
+
+	/** Returns loaded Bitmap without waiting or <b>null</b> if image isn't loaded (yet) */
+	public synchronized Bitmap getBitmap() {
+		return bitmap;
+	}
+
+	/** Returns reason of loading fail or <b>null</b> if loading didn't fail */
+	public synchronized FailReason getFailReason() {
+		return failReason;
+	}
+
+	/**
+	 * Returns number of downloaded bytes. Is tracked only if it was
+	 * {@linkplain ImageRequest.Builder#trackProgress(boolean) requested}.
+	 */
+	public int getLoadedBytes() {
+		return loadedBytes;
+	}
+
+	/** Returns total number of bytes to download or -1 if it's unknown (yet) */
+	public int getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Adds callback which is called when loading is done (completed, failed or cancelled). Callback is called on thread
+	 * which finishes loading or immediately on current thread if loading is done already.
+	 */
+	public void addCallback(Callback callback) {
+		synchronized (this) {
+			if (state == STATE_LOADING) {
+				callbacks.add(callback);
+				return;
+			}
+		}
+		callback.onDone(this);
+	}
+
+	ImageAware getImageAware() {
+		return imageAware;
+	}
+
+	ImageLoadingListener getLoadingListener() {
+		return eventListener;
+	}
+
+	/** Returns progress listener for loading task or <b>null</b> if progress isn't tracked */
+	ImageLoadingProgressListener getProgressListener() {
+		return trackProgress ? eventListener : null;
+	}
+
+	private synchronized Bitmap getResult() throws ExecutionException {
+		switch (state) {
+			case STATE_CANCELLED:
+				throw new CancellationException();
+			case STATE_FAILED:
+				String message = String.format(ERROR_LOADING_FAILED, failReason.getType(), uri);
+				throw new ExecutionException(message, failReason.getCause());
+			default:
+				return bitmap;
+		}
+	}
+
+	/** @return <b>true</b> - if handle was finished by this call; <b>false</b> - if it was done already */
+	private boolean finish(int newState, Bitmap loadedImage, FailReason reason) {
+		List<Callback> callbacksToCall;
+		synchronized (this) {
+			if (state != STATE_LOADING) return false;
+			state = newState;
+			bitmap = loadedImage;
+			failReason = reason;
+			callbacksToCall = new ArrayList<Callback>(callbacks);
+			callbacks.clear();
+		}
+		doneLatch.countDown();
+		engine.unregisterHandle(this);
+		engine.cancelDisplayTaskFor(imageAware);
+		for (Callback callback : callbacksToCall) {
+			callback.onDone(this);
+		}
+		return true;
+	}
+
+	/** Callback of loading end */
+	public interface Callback {
+		/** Is called when loading is done. Use handle methods to get result. */
+		void onDone(ImageHandle handle);
+	}
+
+	/** Receives events of loading task, completes handle and passes events to wrapped listeners */
+	private class EventListener implements ImageLoadingListener, ImageLoadingProgressListener {
+
+		@Override
+		public void onLoadingStarted(String imageUri, View view) {
+			if (listener != null) {
+				listener.onLoadingStarted(imageUri, view);
+			}
+		}
+
+		@Override
+		public void onLoadingFailed(String imageUri, View view, FailReason failReason) {
+			finish(STATE_FAILED, null, failReason);
+			if (listener != null) {
+				listener.onLoadingFailed(imageUri, view, failReason);
+			}
+		}
+
+		@Override
+		public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
+			finish(STATE_COMPLETED, loadedImage, null);
+			if (listener != null) {
+				listener.onLoadingComplete(imageUri, view, loadedImage);
+			}
+		}
+
+		@Override
+		public void onLoadingCancelled(String imageUri, View view) {
+			finish(STATE_CANCELLED, null, null);
+			if (listener != null) {
+				listener.onLoadingCancelled(imageUri, view);
+			}
+		}
+
+		@Override
+		public void onProgressUpdate(String imageUri, View view, int current, int total) {
+			loadedBytes = current;
+			totalBytes = total;
+			if (progressListener != null) {
+				progressListener.onProgressUpdate(imageUri, view, current, total);
+			}
+		}
+	}
+
+	/**
+	 * Non-view ImageAware with identity-based id, so loadings of the same URI by different handles don't replace each
+	 * other in engine and can be cancelled separately
+	 */
+	private static class RequestImageAware extends NonViewAware {
+
+		RequestImageAware(String imageUri, ImageSize imageSize) {
+			super(imageUri, imageSize, ViewScaleType.CROP);
+		}
+
+		@Override
+		public int getId() {
+			return System.identityHashCode(this);
+		}
+	}
+}
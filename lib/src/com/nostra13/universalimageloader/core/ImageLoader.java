@@ -20,14 +20,14 @@ import android.view.View;
 import android.widget.ImageView;
 import com.nostra13.universalimageloader.cache.disc.DiskCache;
 import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.MissRatioCurve;
 import com.nostra13.universalimageloader.core.assist.FailReason;
 import com.nostra13.universalimageloader.core.assist.FlushedInputStream;
 import com.nostra13.universalimageloader.core.assist.ImageSize;
 import com.nostra13.universalimageloader.core.assist.LoadedFrom;
-import com.nostra13.universalimageloader.core.assist.ViewScaleType;
+import com.nostra13.universalimageloader.core.assist.PrefetchLevel;
 import com.nostra13.universalimageloader.core.imageaware.ImageAware;
 import com.nostra13.universalimageloader.core.imageaware.ImageViewAware;
-import com.nostra13.universalimageloader.core.imageaware.NonViewAware;
 import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
 import com.nostra13.universalimageloader.core.listener.ImageLoadingProgressListener;
 import com.nostra13.universalimageloader.core.listener.SimpleImageLoadingListener;
@@ -35,6 +35,9 @@ import com.nostra13.universalimageloader.utils.ImageSizeUtils;
 import com.nostra13.universalimageloader.utils.L;
 import com.nostra13.universalimageloader.utils.MemoryCacheUtils;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Singletone for image loading and displaying at {@link ImageView ImageViews}<br />
  * <b>NOTE:</b> {@link #init(ImageLoaderConfiguration)} method must be called before any other method.
@@ -50,10 +53,15 @@ public class ImageLoader {
     static final String LOG_INIT_CONFIG = "Initialize ImageLoader with configuration";
     static final String LOG_DESTROY = "Destroy ImageLoader";
     static final String LOG_LOAD_IMAGE_FROM_MEMORY_CACHE = "Load image from memory cache [%s]";
+    private static final String LOG_FAIL_FROM_FAILED_URI_CACHE = "URI is cached as failed (%1$s) [%2$s]";
 
     private static final String WARNING_RE_INIT_CONFIG = "Try to initialize ImageLoader which had already been initialized before. "
             + "To re-init ImageLoader with new configuration call ImageLoader.destroy() at first.";
     private static final String ERROR_WRONG_ARGUMENTS = "Wrong arguments were passed to displayImage() method (ImageView reference must not be null)";
+    private static final String ERROR_WRONG_LOAD_ARGUMENTS = "Wrong arguments were passed to load() method (request must not be null)";
+    private static final String ERROR_WRONG_BULK_ARGUMENTS = "Wrong arguments were passed to loadImagesSync() method (requests must not be null, maxConcurrentLoads must be positive)";
+    private static final String ERROR_BULK_LOADING_ON_UI_THREAD = "loadImagesSync() must not be called on UI thread";
+    private static final String ERROR_WRONG_PREFETCH_ARGUMENTS = "Wrong arguments were passed to prefetch() method (URIs and level must not be null)";
     private static final String ERROR_NOT_INIT = "ImageLoader must be init with configuration before using";
     private static final String ERROR_INIT_CONFIG_WITH_NULL = "ImageLoader configuration can not be initialized with null";
 
@@ -254,6 +262,7 @@ public class ImageLoader {
             } else {
                 imageAware.setImageDrawable(null);
             }
+            engine.bindBitmap(imageAware, null);
             listener.onLoadingComplete(uri, imageAware.getWrappedView(), null);
             return;
         }
@@ -265,8 +274,11 @@ public class ImageLoader {
         listener.onLoadingStarted(uri, imageAware.getWrappedView());
         // 从内存缓存中取出图片
         Bitmap bmp = configuration.memoryCache.get(memoryCacheKey);
+        // 开启图片回收时，防止图片在显示前被回收
+        BitmapHandle bmpHandle = engine.acquireBitmap(bmp);
         if (bmp != null && !bmp.isRecycled()) {// 图片没被回收
             L.d(LOG_LOAD_IMAGE_FROM_MEMORY_CACHE, memoryCacheKey);
+            engine.onCacheHit(memoryCacheKey);
             // 图片是否需要后续处理
             if (options.shouldPostProcess()) {// 需要后续处理
                 ImageLoadingInfo imageLoadingInfo = new ImageLoadingInfo(uri, imageAware, targetSize, memoryCacheKey,
@@ -282,13 +294,35 @@ public class ImageLoader {
                 }
             } else {// 不需要后续处理,直接显示 BitmapDisplayer display
                 options.getDisplayer().display(bmp, imageAware, LoadedFrom.MEMORY_CACHE);
+                engine.bindBitmap(imageAware, bmp);
                 listener.onLoadingComplete(uri, imageAware.getWrappedView(), bmp);
             }
+            if (bmpHandle != null) {
+                bmpHandle.release();
+            }
         } else {// 内存中图片为空，或被回收
+            // 已知加载失败的 uri 直接失败，不再提交任务
+            FailReason failReason = engine.getCachedFailReason(uri);
+            if (failReason != null) {
+                L.d(LOG_FAIL_FROM_FAILED_URI_CACHE, failReason.getType(), memoryCacheKey);
+                engine.cancelDisplayTaskFor(imageAware);
+                if (options.shouldShowImageOnFail()) {
+                    imageAware.setImageDrawable(options.getImageOnFail(configuration.resources));
+                    engine.bindBitmap(imageAware, null);
+                } else if (options.isResetViewBeforeLoading()) {
+                    imageAware.setImageDrawable(null);
+                    engine.bindBitmap(imageAware, null);
+                }
+                listener.onLoadingFailed(uri, imageAware.getWrappedView(), failReason);
+                return;
+            }
+
             if (options.shouldShowImageOnLoading()) {// 显示加载中图片
                 imageAware.setImageDrawable(options.getImageOnLoading(configuration.resources));
+                engine.bindBitmap(imageAware, null);
             } else if (options.isResetViewBeforeLoading()) {
                 imageAware.setImageDrawable(null);
+                engine.bindBitmap(imageAware, null);
             }
 
             ImageLoadingInfo imageLoadingInfo = new ImageLoadingInfo(uri, imageAware, targetSize, memoryCacheKey,
@@ -546,16 +580,51 @@ public class ImageLoader {
      */
     public void loadImage(String uri, ImageSize targetImageSize, DisplayImageOptions options,
             ImageLoadingListener listener, ImageLoadingProgressListener progressListener) {
+        ImageRequest request = new ImageRequest.Builder(uri).targetSize(targetImageSize).options(options).build();
+        load(request, listener == null ? defaultListener : listener, progressListener);
+    }
+
+    /**
+     * Starts loading of image which isn't bound to any view. Returned handle is a
+     * {@linkplain java.util.concurrent.Future future} of loaded Bitmap, it allows to cancel loading, wait for it or
+     * react on its end by {@linkplain ImageHandle#addCallback(ImageHandle.Callback) callback}. Loading doesn't take any
+     * thread besides ImageLoader's ones. {@linkplain #setDefaultLoadingListener(ImageLoadingListener) Default loading
+     * listener} also gets events of this loading.<br />
+     * <b>NOTE:</b> {@link #init(ImageLoaderConfiguration)} method must be called before this method call
+     * 
+     * @param request
+     *            Request which defines image URI, target size and options
+     * @return Handle of started loading
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     * @throws IllegalArgumentException
+     *             if passed <b>request</b> is null
+     */
+    public ImageHandle load(ImageRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException(ERROR_WRONG_LOAD_ARGUMENTS);
+        }
+        return load(request, defaultListener, null);
+    }
+
+    private ImageHandle load(ImageRequest request, ImageLoadingListener listener,
+            ImageLoadingProgressListener progressListener) {
         checkConfiguration();
+        ImageSize targetImageSize = request.getTargetSize();
         if (targetImageSize == null) {
             targetImageSize = configuration.getMaxImageSize();
         }
+        DisplayImageOptions options = request.getOptions();
         if (options == null) {
             options = configuration.defaultDisplayImageOptions;
         }
 
-        NonViewAware imageAware = new NonViewAware(uri, targetImageSize, ViewScaleType.CROP);
-        displayImage(uri, imageAware, options, listener, progressListener);
+        ImageHandle handle = new ImageHandle(engine, request.getUri(), targetImageSize, listener, progressListener,
+                request.isTrackProgress());
+        engine.registerHandle(handle);
+        displayImage(request.getUri(), handle.getImageAware(), options, handle.getLoadingListener(),
+                handle.getProgressListener());
+        return handle;
     }
 
     /**
@@ -640,9 +709,76 @@ public class ImageLoader {
         }
         options = new DisplayImageOptions.Builder().cloneFrom(options).syncLoading(true).build();
 
-        SyncImageLoadingListener listener = new SyncImageLoadingListener();
-        loadImage(uri, targetImageSize, options, listener);
-        return listener.getLoadedBitmap();
+        ImageRequest request = new ImageRequest.Builder(uri).targetSize(targetImageSize).options(options).build();
+        return load(request, null, null).getBitmap();
+    }
+
+    /**
+     * Loads and decodes images in parallel and waits for all of them. Loadings run on ImageLoader's thread pools, at
+     * most <b>maxConcurrentLoads</b> of them at the same time. Duplicated requests (same URI, target size and options
+     * instance) are loaded once. Must be called on background thread.<br />
+     * <b>NOTE:</b> {@link #init(ImageLoaderConfiguration)} method must be called before this method call
+     * 
+     * @param requests
+     *            Image requests
+     * @param maxConcurrentLoads
+     *            Maximum number of simultaneous loadings of this call
+     * @return Done {@linkplain ImageHandle handles} in order of requests: each one contains loaded Bitmap or
+     *         {@linkplain ImageHandle#getFailReason() fail reason} of its request
+     * @throws InterruptedException
+     *             if current thread was interrupted while waiting; started loadings are cancelled
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before or if method is called on UI
+     *             thread
+     * @throws IllegalArgumentException
+     *             if passed <b>requests</b> is null or <b>maxConcurrentLoads</b> isn't positive
+     */
+    public List<ImageHandle> loadImagesSync(List<ImageRequest> requests, int maxConcurrentLoads)
+            throws InterruptedException {
+        checkConfiguration();
+        if (requests == null || maxConcurrentLoads <= 0) {
+            throw new IllegalArgumentException(ERROR_WRONG_BULK_ARGUMENTS);
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException(ERROR_BULK_LOADING_ON_UI_THREAD);
+        }
+        return new BulkImageLoader(this, configuration, requests, maxConcurrentLoads).execute();
+    }
+
+    /**
+     * Prefetches images in background so they are taken from cache when they are displayed. Prefetch tasks run on
+     * separate pool of lowest priority threads and don't take worker threads of display tasks. Image which is cached
+     * already or is being loaded at this moment (by display task or another prefetch) is skipped. Duplicated URIs are
+     * ignored. Default display image options
+     * {@linkplain ImageLoaderConfiguration.Builder#defaultDisplayImageOptions(DisplayImageOptions) from configuration}
+     * are used for downloading and decoding.<br />
+     * Prefetch statistics are available in {@linkplain #getMetrics() metrics}.<br />
+     * <b>NOTE:</b> {@link #init(ImageLoaderConfiguration)} method must be called before this method call
+     * 
+     * @param uris
+     *            Image URIs (i.e. "http://site.com/image.png", "file:///mnt/sdcard/image.png")
+     * @param targetImageSize
+     *            Size which images will be decoded for if <b>level</b> is {@link PrefetchLevel#MEMORY}. Must match
+     *            target size of later display to hit memory cache. If <b>null</b> - configuration
+     *            {@linkplain ImageLoaderConfiguration.Builder#memoryCacheExtraOptions(int, int) maximum image size} will
+     *            be used.
+     * @param level
+     *            Defines whether images are only downloaded to disk cache or also decoded into memory cache
+     * @return Group of submitted prefetch tasks which can be cancelled as a whole
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     * @throws IllegalArgumentException
+     *             if passed <b>uris</b> or <b>level</b> is null
+     */
+    public PrefetchGroup prefetch(Collection<String> uris, ImageSize targetImageSize, PrefetchLevel level) {
+        checkConfiguration();
+        if (uris == null || level == null) {
+            throw new IllegalArgumentException(ERROR_WRONG_PREFETCH_ARGUMENTS);
+        }
+        if (targetImageSize == null) {
+            targetImageSize = configuration.getMaxImageSize();
+        }
+        return engine.prefetch(uris, targetImageSize, level);
     }
 
     /**
@@ -673,6 +809,50 @@ public class ImageLoader {
         return configuration.memoryCache;
     }
 
+    /**
+     * Returns runtime metrics of ImageLoader work
+     * 
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     */
+    public ImageLoaderMetrics getMetrics() {
+        checkConfiguration();
+        return engine.getMetrics();
+    }
+
+    /**
+     * Acquires reference to bitmap loaded by ImageLoader (e.g. passed to
+     * {@link ImageLoadingListener#onLoadingComplete(String, View, Bitmap)}) so it won't be recycled after eviction from
+     * memory cache until returned handle is {@linkplain BitmapHandle#release() released}. Makes sense only if
+     * {@linkplain ImageLoaderConfiguration.Builder#recycleEvictedBitmaps() bitmap recycling} is enabled.
+     * 
+     * @return Bitmap handle which must be released or <b>null</b> if bitmap recycling is disabled or bitmap is already
+     *         recycled
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     */
+    public BitmapHandle acquireBitmap(Bitmap bitmap) {
+        checkConfiguration();
+        return engine.acquireBitmap(bitmap);
+    }
+
+    /**
+     * Returns miss ratio curve of memory cache: predicted hit ratio of memory cache for several sizes relative to its
+     * current size.
+     * 
+     * @return Miss ratio curve or <b>null</b> if estimation wasn't enabled by
+     *         {@link ImageLoaderConfiguration.Builder#trackMemoryCacheMissRatioCurve()}
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     */
+    public MissRatioCurve getMissRatioCurve() {
+        checkConfiguration();
+        if (configuration.missRatioCurveMemoryCache == null) {
+            return null;
+        }
+        return configuration.missRatioCurveMemoryCache.getMissRatioCurve();
+    }
+
     /**
      * Clears memory cache
      * 
@@ -730,6 +910,32 @@ public class ImageLoader {
         configuration.diskCache.clear();
     }
 
+    /**
+     * Removes URI from {@linkplain ImageLoaderConfiguration.Builder#failedUriCache(int, int) failed URIs cache} so
+     * next display request for it loads image again.
+     * 
+     * @return <b>true</b> - if URI was cached as failed; <b>false</b> - otherwise
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     */
+    public boolean invalidateFailedUri(String uri) {
+        checkConfiguration();
+        return configuration.failedUriCache != null && configuration.failedUriCache.invalidate(uri);
+    }
+
+    /**
+     * Clears {@linkplain ImageLoaderConfiguration.Builder#failedUriCache(int, int) failed URIs cache}.
+     * 
+     * @throws IllegalStateException
+     *             if {@link #init(ImageLoaderConfiguration)} method wasn't called before
+     */
+    public void clearFailedUriCache() {
+        checkConfiguration();
+        if (configuration.failedUriCache != null) {
+            configuration.failedUriCache.clear();
+        }
+    }
+
     /**
      * Returns URI of image which is loading at this moment into passed
      * {@link com.nostra13.universalimageloader.core.imageaware.ImageAware ImageAware}
@@ -747,24 +953,26 @@ public class ImageLoader {
 
     /**
      * Cancel the task of loading and displaying image for passed
-     * {@link com.nostra13.universalimageloader.core.imageaware.ImageAware ImageAware}.
+     * {@link com.nostra13.universalimageloader.core.imageaware.ImageAware ImageAware}. Task is removed from queue if
+     * it isn't started yet, running download is aborted.
      * 
      * @param imageAware
      *            {@link com.nostra13.universalimageloader.core.imageaware.ImageAware ImageAware} for which display task
      *            will be cancelled
      */
     public void cancelDisplayTask(ImageAware imageAware) {
-        engine.cancelDisplayTaskFor(imageAware);
+        engine.cancelDisplayTask(imageAware);
     }
 
     /**
-     * Cancel the task of loading and displaying image for passed {@link android.widget.ImageView ImageView}.
+     * Cancel the task of loading and displaying image for passed {@link android.widget.ImageView ImageView}. Task is
+     * removed from queue if it isn't started yet, running download is aborted.
      * 
      * @param imageView
      *            {@link android.widget.ImageView ImageView} for which display task will be cancelled
      */
     public void cancelDisplayTask(ImageView imageView) {
-        engine.cancelDisplayTaskFor(new ImageViewAware(imageView));
+        engine.cancelDisplayTask(new ImageViewAware(imageView));
     }
 
     /**
@@ -807,7 +1015,9 @@ public class ImageLoader {
     }
 
     /**
-     * Cancels all running and scheduled display image tasks.<br />
+     * Cancels all running and scheduled display image tasks. Listeners of cancelled tasks get
+     * {@link ImageLoadingListener#onLoadingCancelled(String, View)} event, {@linkplain ImageHandle handles}
+     * which aren't done are cancelled.<br />
      * <b>NOTE:</b> This method doesn't shutdown
      * {@linkplain com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#taskExecutor(java.util.concurrent.Executor)
      * custom task executors} if you set them.<br />
@@ -840,24 +1050,4 @@ public class ImageLoader {
         }
         return handler;
     }
-
-    /**
-     * Listener which is designed for synchronous image loading.
-     * 
-     * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
-     * @since 1.9.0
-     */
-    private static class SyncImageLoadingListener extends SimpleImageLoadingListener {
-
-        private Bitmap loadedImage;
-
-        @Override
-        public void onLoadingComplete(String imageUri, View view, Bitmap loadedImage) {
-            this.loadedImage = loadedImage;
-        }
-
-        public Bitmap getLoadedBitmap() {
-            return loadedImage;
-        }
-    }
 }
@@ -17,19 +17,34 @@ import android.content.res.Resources;
 import android.util.DisplayMetrics;
 import com.nostra13.universalimageloader.cache.disc.DiskCache;
 import com.nostra13.universalimageloader.cache.disc.naming.FileNameGenerator;
+import com.nostra13.universalimageloader.cache.memory.BaseMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.BitmapRecycler;
 import com.nostra13.universalimageloader.cache.memory.MemoryCache;
+import com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.RemovalListener;
+import com.nostra13.universalimageloader.cache.memory.ResizableMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.WrappingMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.impl.AdaptiveMemoryCache;
+import com.nostra13.universalimageloader.cache.memory.impl.MissRatioCurveMemoryCache;
 import com.nostra13.universalimageloader.cache.memory.impl.FuzzyKeyMemoryCache;
 import com.nostra13.universalimageloader.core.assist.FlushedInputStream;
 import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.QueueOverflowPolicy;
 import com.nostra13.universalimageloader.core.assist.QueueProcessingType;
 import com.nostra13.universalimageloader.core.decode.ImageDecoder;
+import com.nostra13.universalimageloader.core.download.HedgingImageDownloader;
 import com.nostra13.universalimageloader.core.download.ImageDownloader;
+import com.nostra13.universalimageloader.core.download.RetryingImageDownloader;
+import com.nostra13.universalimageloader.core.listener.TaskShedListener;
 import com.nostra13.universalimageloader.core.process.BitmapProcessor;
 import com.nostra13.universalimageloader.utils.L;
 import com.nostra13.universalimageloader.utils.MemoryCacheUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 /**
@@ -51,17 +66,33 @@ import java.util.concurrent.Executor;
  *        .taskExecutor(...)<br>
  *        .taskExecutorForCachedImages(...)<br>
  *        .threadPoolSize(3) // default<br>
+ *        .threadPoolSizeForCachedImages(4) // default = number of CPU cores<br>
+ *        .adaptiveThreadPoolSize(2, 6)<br>
  *        .threadPriority(Thread.NORM_PRIORITY - 2) // default<br>
  *        .tasksProcessingOrder(QueueProcessingType.FIFO) // default<br>
+ *        .maxConcurrentLoadsPerHost(2)<br>
+ *        .taskQueueLimit(100, QueueOverflowPolicy.DROP_OLDEST, null)<br>
+ *        .coalesceProgressUpdates(100, 5)<br>
+ *        .batchDisplayPerFrame(8)<br>
+ *        .defaultDeadline(10000)<br>
  *        .denyCacheImageMultipleSizesInMemory()<br>
  *        .memoryCache(new LruMemoryCache(2 * 1024 * 1024))<br>
  *        .memoryCacheSize(2 * 1024 * 1024)<br>
  *        .memoryCacheSizePercentage(13) // default<br>
+ *        .memoryCacheRemovalListener(...)<br>
+ *        .memoryCacheAdaptiveSize(4 * 1024 * 1024, 32 * 1024 * 1024, null)<br>
+ *        .trackMemoryCacheMissRatioCurve()<br>
+ *        .recycleEvictedBitmaps()<br>
  *        .diskCache(new UnlimitedDiscCache(cacheDir)) // default<br>
  *        .diskCacheSize(50 * 1024 * 1024)<br>
  *        .diskCacheFileCount(100)<br>
  *        .diskCacheFileNameGenerator(new HashCodeFileNameGenerator()) // default<br>
  *        .imageDownloader(new BaseImageDownloader(context)) // default<br>
+ *        .retryDownloads(2, 500)<br>
+ *        .downloadCircuitBreaker(5, 30000)<br>
+ *        .hedgeDownloads(95, 0.05f)<br>
+ *        .failedUriCache(200, 600)<br>
+ *        .failedUriCacheTtl(403, 60)<br>
  *        .imageDecoder(new BaseImageDecoder()) // default<br>
  *        .defaultDisplayImageOptions(DisplayImageOptions.createSimple()) // default<br>
  *        .writeDebugLogs()<br>
@@ -87,18 +118,47 @@ public final class ImageLoaderConfiguration {
     // 用户是否自定义了上面的 taskExecutor。
     final boolean customExecutor;
     final boolean customExecutorForCachedImages;
-    // 上面两个默认线程池的核心池大小，即最大并发数。
+    // 从源获取图片的默认线程池的核心池大小，即最大并发数。
     final int threadPoolSize;
+    // 解码磁盘缓存图片的默认线程池的核心池大小。解码受 CPU 限制，默认为 CPU 核数。
+    final int threadPoolSizeForCachedImages;
+    // 自动调整线程池大小的上下限，0 表示不自动调整。
+    final int minThreadPoolSize;
+    final int maxThreadPoolSize;
     // 上面两个默认线程池的线程优先级。
     final int threadPriority;
+    // 单个 host 同时进行的网络加载数上限，0 表示不限制。
+    final int maxConcurrentLoadsPerHost;
+    // 等待执行的任务数上限，0 表示不限制；超出时按 queueOverflowPolicy 丢弃任务并通知 taskShedListener。
+    final int taskQueueLimit;
+    final QueueOverflowPolicy queueOverflowPolicy;
+    final TaskShedListener taskShedListener;
+    // 是否合并进度回调：单个任务按最小间隔和最小百分比步长限流，所有任务的回调按帧批量投递。
+    final boolean coalesceProgressUpdates;
+    final int progressUpdateInterval;
+    final int progressUpdateStep;
+    // 按帧批量显示图片时每帧显示工作的时间预算（毫秒），0 表示不批量显示。
+    final int displayFrameBudget;
+    // 加载任务默认的截止时间（毫秒，从请求开始计），DisplayImageOptions 未设置时使用，0 表示不限制。
+    final int defaultDeadline;
     // 上面两个默认线程池的线程队列类型。目前只有 FIFO, LIFO 两种可供选择。
     final QueueProcessingType tasksProcessingType;
     // 图片内存缓存
     final MemoryCache memoryCache;
+    // 估算内存缓存命中率曲线，未开启时为 null
+    final MissRatioCurveMemoryCache missRatioCurveMemoryCache;
+    // 引用计数，回收从内存缓存移除且不再使用的图片，未开启时为 null
+    final BitmapHandleRegistry bitmapHandleRegistry;
     // 图片磁盘缓存，一般放在 SD 卡
     final DiskCache diskCache;
     // 图片下载器
     final ImageDownloader downloader;
+    // 对慢下载发起对冲请求的下载器（已包装在 downloader 中），未开启时为 null
+    final HedgingImageDownloader hedgingDownloader;
+    // 重试临时错误并按 host 熔断的下载器（已包装在 downloader 中），未开启时为 null
+    final RetryingImageDownloader retryingDownloader;
+    // 加载失败（如 404/410、无法解码）的 uri 缓存，命中时直接失败而不再提交任务，未开启时为 null
+    final FailedUriCache failedUriCache;
     // 图片解码器，内部可使用常用的BitmapFactory.decode(…)将图片资源解码成Bitmap对象。
     final ImageDecoder decoder;
     // 图片显示的配置项。比如加载前、加载中、加载失败应该显示的占位图片，图片是否需要在磁盘缓存，是否需要在内存缓存等。
@@ -118,12 +178,29 @@ public final class ImageLoaderConfiguration {
         taskExecutor = builder.taskExecutor;
         taskExecutorForCachedImages = builder.taskExecutorForCachedImages;
         threadPoolSize = builder.threadPoolSize;
+        threadPoolSizeForCachedImages = builder.threadPoolSizeForCachedImages;
+        minThreadPoolSize = builder.minThreadPoolSize;
+        maxThreadPoolSize = builder.maxThreadPoolSize;
         threadPriority = builder.threadPriority;
+        maxConcurrentLoadsPerHost = builder.maxConcurrentLoadsPerHost;
+        taskQueueLimit = builder.taskQueueLimit;
+        queueOverflowPolicy = builder.queueOverflowPolicy;
+        taskShedListener = builder.taskShedListener;
+        coalesceProgressUpdates = builder.coalesceProgressUpdates;
+        progressUpdateInterval = builder.progressUpdateInterval;
+        progressUpdateStep = builder.progressUpdateStep;
+        displayFrameBudget = builder.displayFrameBudget;
+        defaultDeadline = builder.defaultDeadline;
         tasksProcessingType = builder.tasksProcessingType;
         diskCache = builder.diskCache;
         memoryCache = builder.memoryCache;
+        missRatioCurveMemoryCache = builder.missRatioCurveMemoryCache;
+        bitmapHandleRegistry = builder.bitmapHandleRegistry;
         defaultDisplayImageOptions = builder.defaultDisplayImageOptions;
         downloader = builder.downloader;
+        hedgingDownloader = builder.hedgingDownloader;
+        retryingDownloader = builder.retryingDownloader;
+        failedUriCache = builder.failedUriCache;
         decoder = builder.decoder;
 
         customExecutor = builder.customExecutor;
@@ -184,11 +261,24 @@ public final class ImageLoaderConfiguration {
         private static final String WARNING_OVERLAP_DISK_CACHE_PARAMS = "diskCache(), diskCacheSize() and diskCacheFileCount calls overlap each other";
         private static final String WARNING_OVERLAP_DISK_CACHE_NAME_GENERATOR = "diskCache() and diskCacheFileNameGenerator() calls overlap each other";
         private static final String WARNING_OVERLAP_MEMORY_CACHE = "memoryCache() and memoryCacheSize() calls overlap each other";
-        private static final String WARNING_OVERLAP_EXECUTOR = "threadPoolSize(), threadPriority() and tasksProcessingOrder() calls "
+        private static final String WARNING_OVERLAP_EXECUTOR = "threadPoolSize(), threadPoolSizeForCachedImages(), "
+                + "threadPriority() and tasksProcessingOrder() calls "
                 + "can overlap taskExecutor() and taskExecutorForCachedImages() calls.";
+        private static final String WARNING_ADAPTIVE_POOL_SIZE_NOT_SUPPORTED = "adaptiveThreadPoolSize() is ignored for "
+                + "custom executors";
+        private static final String WARNING_NOT_OBSERVABLE_MEMORY_CACHE = "memoryCacheRemovalListener() is ignored because "
+                + "memory cache doesn't implement ObservableMemoryCache";
+        private static final String WARNING_NOT_RESIZABLE_MEMORY_CACHE = "memoryCacheAdaptiveSize() is ignored because "
+                + "memory cache doesn't implement ResizableMemoryCache";
+        private static final String WARNING_MISS_RATIO_CURVE_NOT_SUPPORTED = "trackMemoryCacheMissRatioCurve() is ignored "
+                + "because memory cache doesn't implement ResizableMemoryCache";
+        private static final String WARNING_RECYCLING_NOT_SUPPORTED = "recycleEvictedBitmaps() is ignored because memory "
+                + "cache isn't observable or keeps bitmaps by weak references";
 
         /** {@value} */
         public static final int DEFAULT_THREAD_POOL_SIZE = 3;
+        /** Number of available CPU cores */
+        public static final int DEFAULT_THREAD_POOL_SIZE_FOR_CACHED_IMAGES = Runtime.getRuntime().availableProcessors();
         /** 线程优先级 */
         public static final int DEFAULT_THREAD_PRIORITY = Thread.NORM_PRIORITY - 2;
         /** {@value} */
@@ -208,7 +298,19 @@ public final class ImageLoaderConfiguration {
         private boolean customExecutorForCachedImages = false;
 
         private int threadPoolSize = DEFAULT_THREAD_POOL_SIZE;
+        private int threadPoolSizeForCachedImages = DEFAULT_THREAD_POOL_SIZE_FOR_CACHED_IMAGES;
+        private int minThreadPoolSize = 0;
+        private int maxThreadPoolSize = 0;
         private int threadPriority = DEFAULT_THREAD_PRIORITY;
+        private int maxConcurrentLoadsPerHost = 0;
+        private int taskQueueLimit = 0;
+        private QueueOverflowPolicy queueOverflowPolicy = null;
+        private TaskShedListener taskShedListener = null;
+        private boolean coalesceProgressUpdates = false;
+        private int progressUpdateInterval = 0;
+        private int progressUpdateStep = 0;
+        private int displayFrameBudget = 0;
+        private int defaultDeadline = 0;
         private boolean denyCacheImageMultipleSizesInMemory = false;
         private QueueProcessingType tasksProcessingType = DEFAULT_TASK_PROCESSING_TYPE;
 
@@ -217,9 +319,30 @@ public final class ImageLoaderConfiguration {
         private int diskCacheFileCount = 0;
 
         private MemoryCache memoryCache = null;
+        private RemovalListener memoryCacheRemovalListener = null;
+        private int memoryCacheMinSize = 0;
+        private int memoryCacheMaxSize = 0;
+        private AdaptiveMemoryCache.SizingListener memoryCacheSizingListener = null;
+        private boolean trackMemoryCacheMissRatioCurve = false;
+        private MissRatioCurveMemoryCache missRatioCurveMemoryCache = null;
+        private BitmapRecycler bitmapRecycler = null;
+        private BitmapHandleRegistry bitmapHandleRegistry = null;
         private DiskCache diskCache = null;
         private FileNameGenerator diskCacheFileNameGenerator = null;
         private ImageDownloader downloader = null;
+        private int hedgeLatencyPercentile = 0;
+        private float maxHedgeRate = 0;
+        private HedgingImageDownloader hedgingDownloader = null;
+        private int maxDownloadRetries = 0;
+        private int downloadRetryBackoff = 0;
+        private int circuitFailureThreshold = 0;
+        private int circuitOpenDuration = 0;
+        private RetryingImageDownloader retryingDownloader = null;
+        private int failedUriCacheSize = 0;
+        private int failedUriTtl = 0;
+        private final Map<Integer, Integer> failedUriStatusTtls = new HashMap<Integer, Integer>();
+        private int failedUriDecodingErrorTtl = -1;
+        private FailedUriCache failedUriCache = null;
         private ImageDecoder decoder;
         private DisplayImageOptions defaultDisplayImageOptions = null;
 
@@ -302,6 +425,8 @@ public final class ImageLoaderConfiguration {
         /**
          * Sets custom {@linkplain Executor executor} for tasks of displaying <b>cached on disk</b> images (these tasks
          * are executed quickly so UIL prefer to use separate executor for them).<br />
+         * Images downloaded from network are decoded by this executor too: network executor only downloads them into
+         * disk cache, so slow network reads don't hold threads which could decode.<br />
          * <br />
          * If you set the same executor for {@linkplain #taskExecutor(Executor) general tasks} and tasks about cached
          * images (this method) then these tasks will be in the same thread pool. So short-lived tasks can wait a long
@@ -310,7 +435,7 @@ public final class ImageLoaderConfiguration {
          * <b>NOTE:</b> If you set custom executor then following configuration options will not be considered for this
          * executor:
          * <ul>
-         * <li>{@link #threadPoolSize(int)}</li>
+         * <li>{@link #threadPoolSizeForCachedImages(int)}</li>
          * <li>{@link #threadPriority(int)}</li>
          * <li>{@link #tasksProcessingOrder(QueueProcessingType)}</li>
          * </ul>
@@ -318,7 +443,8 @@ public final class ImageLoaderConfiguration {
          * @see #taskExecutor(Executor)
          */
         public Builder taskExecutorForCachedImages(Executor executorForCachedImages) {
-            if (threadPoolSize != DEFAULT_THREAD_POOL_SIZE || threadPriority != DEFAULT_THREAD_PRIORITY
+            if (threadPoolSizeForCachedImages != DEFAULT_THREAD_POOL_SIZE_FOR_CACHED_IMAGES
+                    || threadPriority != DEFAULT_THREAD_PRIORITY
                     || tasksProcessingType != DEFAULT_TASK_PROCESSING_TYPE) {
                 L.w(WARNING_OVERLAP_EXECUTOR);
             }
@@ -328,7 +454,8 @@ public final class ImageLoaderConfiguration {
         }
 
         /**
-         * Sets thread pool size for image display tasks.<br />
+         * Sets thread pool size for image display tasks which load images from network (or other sources except disk
+         * cache). These tasks are I/O-bound.<br />
          * Default value - {@link #DEFAULT_THREAD_POOL_SIZE this}
          */
         public Builder threadPoolSize(int threadPoolSize) {
@@ -340,6 +467,45 @@ public final class ImageLoaderConfiguration {
             return this;
         }
 
+        /**
+         * Sets thread pool size for tasks which decode and process images cached on disk (including just downloaded
+         * ones). These tasks are CPU-bound.<br />
+         * Default value - {@link #DEFAULT_THREAD_POOL_SIZE_FOR_CACHED_IMAGES number of CPU cores}
+         */
+        public Builder threadPoolSizeForCachedImages(int threadPoolSize) {
+            if (taskExecutorForCachedImages != null) {
+                L.w(WARNING_OVERLAP_EXECUTOR);
+            }
+
+            this.threadPoolSizeForCachedImages = threadPoolSize;
+            return this;
+        }
+
+        /**
+         * Enables adaptive sizing of default thread pools. Size of pool for network loads is adjusted within defined
+         * bounds by observed throughput and backlog (hill climbing); {@linkplain #threadPoolSize(int) thread pool size}
+         * is initial size. Pool for cached images (CPU-bound) shrinks while CPU is saturated and grows back up to
+         * {@linkplain #threadPoolSizeForCachedImages(int) its size}. Decisions are logged, current sizes are available
+         * via {@link ImageLoader#getMetrics()}.<br />
+         * Custom executors aren't resized.<br />
+         * Default value - fixed pool sizes
+         *
+         * @param minThreadPoolSize Minimum size of pool for network loads
+         * @param maxThreadPoolSize Maximum size of pool for network loads
+         */
+        public Builder adaptiveThreadPoolSize(int minThreadPoolSize, int maxThreadPoolSize) {
+            if (minThreadPoolSize <= 0) {
+                throw new IllegalArgumentException("minThreadPoolSize must be a positive number");
+            }
+            if (maxThreadPoolSize < minThreadPoolSize) {
+                throw new IllegalArgumentException("maxThreadPoolSize must be not less than minThreadPoolSize");
+            }
+
+            this.minThreadPoolSize = minThreadPoolSize;
+            this.maxThreadPoolSize = maxThreadPoolSize;
+            return this;
+        }
+
         /**
          * Sets the priority for image loading threads. Should be <b>NOT</b> greater than {@link Thread#MAX_PRIORITY} or
          * less than {@link Thread#MIN_PRIORITY}<br />
@@ -362,6 +528,109 @@ public final class ImageLoaderConfiguration {
             return this;
         }
 
+        /**
+         * Sets maximum number of simultaneous network loads from one host. Network tasks are dispatched to
+         * {@linkplain #taskExecutor(Executor) task executor} in round-robin order of hosts, at most
+         * {@linkplain #threadPoolSize(int) thread pool size} at once. So one slow host can't occupy all threads and starve
+         * images from other hosts. Queue depth per host is available via {@link ImageLoader#getMetrics()}.<br />
+         * Default value - no limit (tasks go directly to task executor)
+         */
+        public Builder maxConcurrentLoadsPerHost(int maxConcurrentLoadsPerHost) {
+            if (maxConcurrentLoadsPerHost <= 0) {
+                throw new IllegalArgumentException("maxConcurrentLoadsPerHost must be a positive number");
+            }
+
+            this.maxConcurrentLoadsPerHost = maxConcurrentLoadsPerHost;
+            return this;
+        }
+
+        /**
+         * Bounds number of display tasks which wait for execution (separately for network loads and for loads of
+         * cached images). If queue is full then policy decides which task is shed. So memory and latency stay bounded
+         * under burst of submissions.<br />
+         * Only queues of {@link java.util.concurrent.ThreadPoolExecutor ThreadPoolExecutor}s (default executors are
+         * such) are bounded.<br />
+         * Default value - no limit
+         *
+         * @param maxQueuedTasks Maximum number of waiting tasks
+         * @param policy         Policy which decides what task is shed
+         * @param listener       Listener of shed tasks; can be <b>null</b>
+         */
+        public Builder taskQueueLimit(int maxQueuedTasks, QueueOverflowPolicy policy, TaskShedListener listener) {
+            if (maxQueuedTasks <= 0) {
+                throw new IllegalArgumentException("maxQueuedTasks must be a positive number");
+            }
+            if (policy == null) {
+                throw new IllegalArgumentException("policy can't be null");
+            }
+
+            this.taskQueueLimit = maxQueuedTasks;
+            this.queueOverflowPolicy = policy;
+            this.taskShedListener = listener;
+            return this;
+        }
+
+        /**
+         * Coalesces {@linkplain com.nostra13.universalimageloader.core.listener.ImageLoadingProgressListener progress}
+         * events. Event of loading task is fired only if minimum interval and minimum step passed since previous event
+         * of task; final event (all bytes are loaded) is always fired. Events of all tasks are delivered to handler in
+         * batches, at most one message per frame. Numbers of posted messages and coalesced events are available via
+         * {@link ImageLoader#getMetrics()}.<br />
+         * Default value - every copied buffer fires event
+         *
+         * @param minIntervalMillis Minimum interval between events of one task, in milliseconds
+         * @param minPercentStep    Minimum progress step between events of one task, in percents
+         */
+        public Builder coalesceProgressUpdates(int minIntervalMillis, int minPercentStep) {
+            if (minIntervalMillis < 0) {
+                throw new IllegalArgumentException("minIntervalMillis can't be negative");
+            }
+            if (minPercentStep < 0 || minPercentStep > 100) {
+                throw new IllegalArgumentException("minPercentStep must be in range [0, 100]");
+            }
+
+            this.coalesceProgressUpdates = true;
+            this.progressUpdateInterval = minIntervalMillis;
+            this.progressUpdateStep = minPercentStep;
+            return this;
+        }
+
+        /**
+         * Delivers loaded images to handler in batches, once per frame, instead of one message per image. Batch is
+         * displayed until frame time budget is spent, remaining images are displayed at next frame. So many images
+         * which are loaded at once don't cause jank. Main thread time of display work per frame is available via
+         * {@link ImageLoader#getMetrics()}.<br />
+         * Images which are displayed synchronously or without handler aren't batched.<br />
+         * Default value - every image is posted to handler separately
+         *
+         * @param frameBudgetMillis Maximum time of display work per frame, in milliseconds
+         */
+        public Builder batchDisplayPerFrame(int frameBudgetMillis) {
+            if (frameBudgetMillis <= 0) {
+                throw new IllegalArgumentException("frameBudgetMillis must be a positive number");
+            }
+
+            this.displayFrameBudget = frameBudgetMillis;
+            return this;
+        }
+
+        /**
+         * Sets deadline of loading for requests which don't set {@linkplain DisplayImageOptions.Builder#deadline(int)
+         * own deadline}. Task which is still queued after deadline is dropped, running download is aborted. Number of
+         * expired tasks is available via {@link ImageLoader#getMetrics()}.<br />
+         * Default value - tasks don't have deadline
+         *
+         * @param deadlineMillis Deadline in milliseconds from request
+         */
+        public Builder defaultDeadline(int deadlineMillis) {
+            if (deadlineMillis <= 0) {
+                throw new IllegalArgumentException("deadlineMillis must be a positive number");
+            }
+
+            this.defaultDeadline = deadlineMillis;
+            return this;
+        }
+
         /**
          * When you display an image in a small {@link android.widget.ImageView ImageView} and later you try to display
          * this image (from identical URI) in a larger {@link android.widget.ImageView ImageView} so decoded image of
@@ -378,7 +647,8 @@ public final class ImageLoaderConfiguration {
         }
 
         /**
-         * Sets type of queue processing for tasks for loading and displaying images.<br />
+         * Sets type of queue processing for tasks for loading and displaying images. Use
+         * {@link QueueProcessingType#LOCK_FREE_LIFO} to avoid lock contention between submitting thread and workers.<br />
          * Default value - {@link QueueProcessingType#FIFO}
          */
         public Builder tasksProcessingOrder(QueueProcessingType tasksProcessingType) {
@@ -452,6 +722,81 @@ public final class ImageLoaderConfiguration {
             return this;
         }
 
+        /**
+         * Sets listener of entries removed from memory cache (evicted by size, removed explicitly, replaced, expired or
+         * collected by GC). Listener is called outside of cache lock.<br />
+         * <br />
+         * <b>NOTE:</b> Listener is considered only if memory cache implements {@link ObservableMemoryCache}. All
+         * memory caches of {@link com.nostra13.universalimageloader.cache.memory.impl} package implement it.
+         */
+        public Builder memoryCacheRemovalListener(RemovalListener listener) {
+            this.memoryCacheRemovalListener = listener;
+            return this;
+        }
+
+        /**
+         * Enables adaptive memory cache sizing: maximum size of memory cache is adjusted at runtime using observed hit
+         * ratio, eviction rate and heap headroom (see {@link AdaptiveMemoryCache}).<br />
+         * Adaptive sizing is disabled by default.<br />
+         * <b>NOTE:</b> Is considered only if memory cache implements {@link ResizableMemoryCache}. Default memory cache
+         * implements it.
+         *
+         * @param minSize        Minimum size of memory cache (in bytes)
+         * @param maxSize        Maximum size of memory cache (in bytes)
+         * @param sizingListener Listener of sizing decisions. Can be null.
+         */
+        public Builder memoryCacheAdaptiveSize(int minSize, int maxSize, AdaptiveMemoryCache.SizingListener sizingListener) {
+            if (minSize <= 0 || minSize > maxSize) {
+                throw new IllegalArgumentException("minSize must be a positive number not greater than maxSize");
+            }
+
+            this.memoryCacheMinSize = minSize;
+            this.memoryCacheMaxSize = maxSize;
+            this.memoryCacheSizingListener = sizingListener;
+            return this;
+        }
+
+        /**
+         * Enables estimation of memory cache miss ratio curve: predicted hit ratio of memory cache for 0.5x, 1x, 2x and
+         * 4x of its current size (see {@link MissRatioCurveMemoryCache}). Curve is available via
+         * {@link ImageLoader#getMissRatioCurve()}.<br />
+         * Estimation is disabled by default.<br />
+         * <b>NOTE:</b> Is considered only if memory cache implements {@link ResizableMemoryCache}. Default memory cache
+         * implements it.
+         */
+        public Builder trackMemoryCacheMissRatioCurve() {
+            this.trackMemoryCacheMissRatioCurve = true;
+            return this;
+        }
+
+        /**
+         * Enables {@linkplain android.graphics.Bitmap#recycle() recycling} of bitmaps which were evicted from memory
+         * cache and aren't displayed or used by loading tasks anymore. Bitmaps are reference counted, see
+         * {@link ImageLoader#acquireBitmap(android.graphics.Bitmap)} to keep bitmap which was passed to listener.<br />
+         * Recycling is disabled by default.<br />
+         * <b>NOTE:</b> Is considered only if memory cache keeps bitmaps by strong references and implements
+         * {@link com.nostra13.universalimageloader.cache.memory.ObservableMemoryCache}. Default memory cache meets
+         * these conditions. If {@link #writeDebugLogs()} is enabled then leaked bitmap handles are detected and logged.
+         */
+        public Builder recycleEvictedBitmaps() {
+            return recycleEvictedBitmaps(DefaultConfigurationFactory.createBitmapRecycler());
+        }
+
+        /**
+         * Enables disposal of bitmaps which were evicted from memory cache and aren't displayed or used by loading
+         * tasks anymore (see {@link #recycleEvictedBitmaps()}).
+         *
+         * @param bitmapRecycler Recycles evicted bitmaps or puts them into pool
+         */
+        public Builder recycleEvictedBitmaps(BitmapRecycler bitmapRecycler) {
+            if (bitmapRecycler == null) {
+                throw new IllegalArgumentException("bitmapRecycler must not be null");
+            }
+
+            this.bitmapRecycler = bitmapRecycler;
+            return this;
+        }
+
         /** @deprecated Use {@link #diskCacheSize(int)} instead */
         @Deprecated
         public Builder discCacheSize(int maxCacheSize) {
@@ -580,6 +925,131 @@ public final class ImageLoaderConfiguration {
             return this;
         }
 
+        /**
+         * Enables retries of network requests which failed because of transient errors (timeouts, refused and reset
+         * connections, 5xx/408/429 responses). Delay before retry is random value between 0 and backoff which is doubled
+         * on every retry; waiting stops when task is cancelled or its deadline expires. Image downloader is wrapped by
+         * {@link RetryingImageDownloader}. Number of retries is available via {@link ImageLoader#getMetrics()}.<br />
+         * Default value - requests aren't retried
+         *
+         * @param maxRetries        Maximum number of retries of one request
+         * @param baseBackoffMillis Backoff before first retry, in milliseconds
+         */
+        public Builder retryDownloads(int maxRetries, int baseBackoffMillis) {
+            if (maxRetries <= 0) {
+                throw new IllegalArgumentException("maxRetries must be a positive number");
+            }
+            if (baseBackoffMillis < 0) {
+                throw new IllegalArgumentException("baseBackoffMillis must not be negative");
+            }
+
+            this.maxDownloadRetries = maxRetries;
+            this.downloadRetryBackoff = baseBackoffMillis;
+            return this;
+        }
+
+        /**
+         * Enables per-host circuit breaker: after defined number of consecutive image requests to host failed with
+         * transient errors (request counts once after all its {@linkplain #retryDownloads(int, int) retries}) all
+         * requests to this host fail fast (without network access) during defined time, then single trial request is
+         * sent. Image downloader is wrapped by {@link RetryingImageDownloader}. States of circuits are available via
+         * {@link ImageLoader#getMetrics()}.<br />
+         * Default value - circuit breaker is disabled
+         *
+         * @param failureThreshold Number of consecutive failed image requests which opens circuit of host
+         * @param openMillis       How long circuit stays open, in milliseconds
+         */
+        public Builder downloadCircuitBreaker(int failureThreshold, int openMillis) {
+            if (failureThreshold <= 0 || openMillis <= 0) {
+                throw new IllegalArgumentException("failureThreshold and openMillis must be positive numbers");
+            }
+
+            this.circuitFailureThreshold = failureThreshold;
+            this.circuitOpenDuration = openMillis;
+            return this;
+        }
+
+        /**
+         * Enables hedging of slow network downloads: if response takes longer than defined percentile of response
+         * latency observed for its host then second request for the same image is issued and stream of request which
+         * responds first is used. Image downloader is wrapped by {@link HedgingImageDownloader}; if
+         * {@linkplain #retryDownloads(int, int) retries} are enabled then hedged download as a whole is retried. Numbers
+         * of hedged downloads are available via {@link ImageLoader#getMetrics()}.<br />
+         * Default value - downloads aren't hedged
+         *
+         * @param latencyPercentile Percentile (1..99) of observed response latency of host after which download is
+         *                          hedged
+         * @param maxHedgeRate      Maximum share (0..1] of network downloads which can be hedged
+         */
+        public Builder hedgeDownloads(int latencyPercentile, float maxHedgeRate) {
+            if (latencyPercentile < 1 || latencyPercentile > 99) {
+                throw new IllegalArgumentException("latencyPercentile must be in range 1..99");
+            }
+            if (maxHedgeRate <= 0 || maxHedgeRate > 1) {
+                throw new IllegalArgumentException("maxHedgeRate must be in range (0..1]");
+            }
+
+            this.hedgeLatencyPercentile = latencyPercentile;
+            this.maxHedgeRate = maxHedgeRate;
+            return this;
+        }
+
+        /**
+         * Enables cache of URIs which failed to load permanently. By default failures caused by HTTP responses 404 and
+         * 410 and {@linkplain com.nostra13.universalimageloader.core.assist.FailReason.FailType#DECODING_ERROR decoding
+         * errors} are cached. Display requests for cached URIs fail immediately (without task submitting) with cached
+         * {@link com.nostra13.universalimageloader.core.assist.FailReason}. Number of cache hits is available via
+         * {@link ImageLoader#getMetrics()}, entries can be removed by {@link ImageLoader#invalidateFailedUri(String)}.
+         * <br />
+         * Default value - failed URIs aren't cached
+         *
+         * @param maxSize    Maximum number of cached URIs. Least recently used URIs are evicted if cache is full.
+         * @param ttlSeconds How long URI stays failed, in seconds
+         */
+        public Builder failedUriCache(int maxSize, int ttlSeconds) {
+            if (maxSize <= 0 || ttlSeconds <= 0) {
+                throw new IllegalArgumentException("maxSize and ttlSeconds must be positive numbers");
+            }
+
+            this.failedUriCacheSize = maxSize;
+            this.failedUriTtl = ttlSeconds;
+            return this;
+        }
+
+        /**
+         * Sets how long URI stays failed if its loading failed because of HTTP response with passed status code.
+         * Overrides TTL defined in {@link #failedUriCache(int, int)}. Makes sense only if failed URIs cache is enabled.
+         *
+         * @param httpStatusCode HTTP status code of response (4xx or 5xx)
+         * @param ttlSeconds     How long URI stays failed, in seconds. 0 - such failures aren't cached.
+         */
+        public Builder failedUriCacheTtl(int httpStatusCode, int ttlSeconds) {
+            if (httpStatusCode < 400 || httpStatusCode > 599) {
+                throw new IllegalArgumentException("httpStatusCode must be in range 400..599");
+            }
+            if (ttlSeconds < 0) {
+                throw new IllegalArgumentException("ttlSeconds must not be negative");
+            }
+
+            failedUriStatusTtls.put(httpStatusCode, ttlSeconds);
+            return this;
+        }
+
+        /**
+         * Sets how long URI stays failed if its content couldn't be decoded. Overrides TTL defined in
+         * {@link #failedUriCache(int, int)}. Makes sense only if failed URIs cache is enabled.
+         *
+         * @param ttlSeconds How long URI stays failed, in seconds. 0 - decoding errors aren't cached.
+         */
+        public Builder failedUriCacheDecodingErrorTtl(int ttlSeconds) {
+            if (ttlSeconds < 0) {
+                throw new IllegalArgumentException("ttlSeconds must not be negative");
+            }
+
+            this.failedUriDecodingErrorTtl = ttlSeconds;
+            return this;
+        }
+
         /**
          * Sets utility which will be responsible for decoding of image stream.<br />
          * Default value -
@@ -622,16 +1092,30 @@ public final class ImageLoaderConfiguration {
         /**
          * 初始化值为null的属性。若用户没有配置相关项，UIL会通过调用DefaultConfigurationFactory中的函数返回一个默认值当配置。
          */
+        /** Whether memory cache (or cache wrapped by decorators) holds Bitmaps by soft/weak references */
+        private static boolean holdsReferences(MemoryCache memoryCache) {
+            while (memoryCache instanceof WrappingMemoryCache) {
+                memoryCache = ((WrappingMemoryCache) memoryCache).getWrappedCache();
+            }
+            return memoryCache instanceof BaseMemoryCache;
+        }
+
         private void initEmptyFieldsWithDefaultValues() {
+            if (maxThreadPoolSize > 0) {
+                if (taskExecutor != null && taskExecutorForCachedImages != null) {
+                    L.w(WARNING_ADAPTIVE_POOL_SIZE_NOT_SUPPORTED);
+                }
+                threadPoolSize = Math.max(minThreadPoolSize, Math.min(maxThreadPoolSize, threadPoolSize));
+            }
             if (taskExecutor == null) {// 线程3个
                 taskExecutor = DefaultConfigurationFactory
                         .createExecutor(threadPoolSize, threadPriority, tasksProcessingType);
             } else {
                 customExecutor = true;
             }
-            if (taskExecutorForCachedImages == null) {
+            if (taskExecutorForCachedImages == null) {// 线程数为 CPU 核数
                 taskExecutorForCachedImages = DefaultConfigurationFactory
-                        .createExecutor(threadPoolSize, threadPriority, tasksProcessingType);
+                        .createExecutor(threadPoolSizeForCachedImages, threadPriority, tasksProcessingType);
             } else {
                 customExecutorForCachedImages = true;
             }
@@ -645,12 +1129,71 @@ public final class ImageLoaderConfiguration {
             if (memoryCache == null) {
                 memoryCache = DefaultConfigurationFactory.createMemoryCache(context, memoryCacheSize);
             }
+            if (bitmapRecycler != null && holdsReferences(memoryCache)) {
+                // Bitmaps from weak references can be returned by cache after eviction
+                L.w(WARNING_RECYCLING_NOT_SUPPORTED);
+                bitmapRecycler = null;
+            }
+            if (memoryCacheMaxSize > 0) {
+                if (memoryCache instanceof ResizableMemoryCache) {
+                    AdaptiveMemoryCache adaptiveMemoryCache = new AdaptiveMemoryCache(
+                            (ResizableMemoryCache) memoryCache, memoryCacheMinSize, memoryCacheMaxSize);
+                    adaptiveMemoryCache.setSizingListener(memoryCacheSizingListener);
+                    memoryCache = adaptiveMemoryCache;
+                } else {
+                    L.w(WARNING_NOT_RESIZABLE_MEMORY_CACHE);
+                }
+            }
+            if (trackMemoryCacheMissRatioCurve) {
+                if (memoryCache instanceof ResizableMemoryCache) {
+                    missRatioCurveMemoryCache = new MissRatioCurveMemoryCache((ResizableMemoryCache) memoryCache);
+                    memoryCache = missRatioCurveMemoryCache;
+                } else {
+                    L.w(WARNING_MISS_RATIO_CURVE_NOT_SUPPORTED);
+                }
+            }
             if (denyCacheImageMultipleSizesInMemory) {
                 memoryCache = new FuzzyKeyMemoryCache(memoryCache, MemoryCacheUtils.createFuzzyKeyComparator());
             }
+            if (memoryCacheRemovalListener != null) {
+                if (memoryCache instanceof ObservableMemoryCache) {
+                    ((ObservableMemoryCache) memoryCache).addRemovalListener(memoryCacheRemovalListener);
+                } else {
+                    L.w(WARNING_NOT_OBSERVABLE_MEMORY_CACHE);
+                }
+            }
+            if (bitmapRecycler != null) {
+                if (memoryCache instanceof ObservableMemoryCache) {
+                    bitmapHandleRegistry = new BitmapHandleRegistry(bitmapRecycler, writeLogs);
+                    ((ObservableMemoryCache) memoryCache).addRemovalListener(bitmapHandleRegistry);
+                } else {
+                    L.w(WARNING_RECYCLING_NOT_SUPPORTED);
+                }
+            }
             if (downloader == null) {
                 downloader = DefaultConfigurationFactory.createImageDownloader(context);
             }
+            // Retries wrap hedging: backoff runs on caller thread and isn't measured as latency, hedges aren't retried
+            if (hedgeLatencyPercentile > 0 && hedgingDownloader == null) {
+                hedgingDownloader = new HedgingImageDownloader(downloader, hedgeLatencyPercentile, maxHedgeRate,
+                        threadPriority);
+                downloader = hedgingDownloader;
+            }
+            if ((maxDownloadRetries > 0 || circuitFailureThreshold > 0) && retryingDownloader == null) {
+                retryingDownloader = new RetryingImageDownloader(downloader, maxDownloadRetries,
+                        downloadRetryBackoff, circuitFailureThreshold, circuitOpenDuration);
+                downloader = retryingDownloader;
+            }
+            if (failedUriCacheSize > 0 && failedUriCache == null) {
+                Map<Integer, Long> statusTtls = new HashMap<Integer, Long>();
+                statusTtls.put(HttpURLConnection.HTTP_NOT_FOUND, failedUriTtl * 1000L);
+                statusTtls.put(HttpURLConnection.HTTP_GONE, failedUriTtl * 1000L);
+                for (Map.Entry<Integer, Integer> entry : failedUriStatusTtls.entrySet()) {
+                    statusTtls.put(entry.getKey(), entry.getValue() * 1000L);
+                }
+                int decodingErrorTtl = failedUriDecodingErrorTtl < 0 ? failedUriTtl : failedUriDecodingErrorTtl;
+                failedUriCache = new FailedUriCache(failedUriCacheSize, statusTtls, decodingErrorTtl * 1000L);
+            }
             if (decoder == null) {
                 decoder = DefaultConfigurationFactory.createImageDecoder(writeLogs);
             }
@@ -12,20 +12,42 @@
  *******************************************************************************/
 package com.nostra13.universalimageloader.core;
 
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.text.TextUtils;
 import android.view.View;
 import com.nostra13.universalimageloader.core.assist.FailReason;
 import com.nostra13.universalimageloader.core.assist.FlushedInputStream;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.PrefetchLevel;
+import com.nostra13.universalimageloader.core.assist.QueueOverflowPolicy;
+import com.nostra13.universalimageloader.core.assist.QueueProcessingType;
+import com.nostra13.universalimageloader.core.download.ImageDownloader;
 import com.nostra13.universalimageloader.core.imageaware.ImageAware;
 import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -36,6 +58,11 @@ import java.util.concurrent.locks.ReentrantLock;
  *        任务分发器
  */
 class ImageLoaderEngine {
+
+    private static final long POOL_SIZE_CHECK_INTERVAL = 2000; // ms
+    private static final int PREFETCH_THREAD_POOL_SIZE = 2;
+    private static final int MAX_TRACKED_PREFETCHED_IMAGES = 256;
+
     // ImageLoader的配置信息，可包括图片最大尺寸、线程池、缓存、下载器、解码器等等。
     final ImageLoaderConfiguration configuration;
     /**
@@ -53,12 +80,24 @@ class ImageLoaderEngine {
      * 去执行任务，不存在较耗时或阻塞操作，所以用无并发数(Int 最大值)限制的线程池即可。
      */
     private Executor taskDistributor;
+    // 定时器：延迟加载（任务在延迟期间不占用工作线程）、定期调整线程池大小。首次需要时才创建。
+    private ScheduledExecutorService timer;
+    // 正在等待延迟结束的任务
+    private final Set<LoadAndDisplayImageTask> delayedTasks = Collections
+            .synchronizedSet(new HashSet<LoadAndDisplayImageTask>());
     /**
      * ImageAware与内存缓存 key 对应的 map，key 为ImageAware的 id，value 为内存缓存的 key。
      */
     private final Map<Integer, String> cacheKeysForImageAwares = Collections
             .synchronizedMap(new HashMap<Integer, String>());
-    // 图片正在加载的重入锁 map，key 为图片的 uri，value 为标识其正在加载的重入锁。
+    /**
+     * ImageAware 与尚未结束的加载任务对应的 map，key 为ImageAware的 id，用于主动取消任务。
+     */
+    private final Map<Integer, LoadAndDisplayImageTask> tasksForImageAwares = Collections
+            .synchronizedMap(new HashMap<Integer, LoadAndDisplayImageTask>());
+    // 尚未完成的 ImageHandle，stop 时取消，避免等待它们的线程永远阻塞
+    private final Set<ImageHandle> activeHandles = Collections.synchronizedSet(new HashSet<ImageHandle>());
+    // 图片正在加载的重入锁 map，key 为图片的 uri，value 为标识其正在加载的重入锁。由自身同步。
     private final Map<String, ReentrantLock> uriLocks = new WeakHashMap<String, ReentrantLock>();
     // 是否被暂停。如果为true，则所有新的加载或显示任务都会等待直到取消暂停(为false)。
     private final AtomicBoolean paused = new AtomicBoolean(false);
@@ -66,16 +105,83 @@ class ImageLoaderEngine {
     private final AtomicBoolean networkDenied = new AtomicBoolean(false);
     // 是否是慢网络情况，如果为true，则自动调用SlowNetworkImageDownloader下载图片。
     private final AtomicBoolean slowNetwork = new AtomicBoolean(false);
-    // 暂停的等待锁，可在engine被暂停后调用这个锁等待。
+    // 暂停锁，保护 paused 状态切换与暂停期间挂起的任务队列。
     private final Object pauseLock = new Object();
+    // 暂停期间挂起的任务，按提交顺序排列。任务留在这里而不是阻塞工作线程，resume 后按相关性重新提交。
+    private final List<LoadAndDisplayImageTask> parkedTasks = new ArrayList<LoadAndDisplayImageTask>();
+    // 任务提交序号，越大表示越新，resume 时越新的任务越先执行
+    private final AtomicLong submitSequence = new AtomicLong();
+    // 图片引用计数，未开启图片回收时为 null
+    private final BitmapHandleRegistry bitmapHandleRegistry;
+    // 按 host 公平调度网络任务，未设置单 host 并发数限制时为 null
+    private final PerHostTaskScheduler networkTaskScheduler;
+    // 保证同一时刻只有一个线程检查任务队列是否已满
+    private final Object queueLimitLock = new Object();
+    // 按吞吐量自动调整线程池大小，未开启时为 null
+    private final ThreadPoolSizeController networkPoolSizeController;
+    private final ThreadPoolSizeController decodingPoolSizeController;
+    // 上次调整线程池大小的时间和当时进程占用的 CPU 时间，均由定时器线程访问
+    private long lastPoolSizeCheckTime;
+    private long lastCpuTime = ThreadPoolSizeController.CPU_TIME_UNKNOWN;
+    // 运行时统计
+    private final ImageLoaderMetrics metrics = new ImageLoaderMetrics(this);
+    // 按帧合并投递进度回调
+    private final ProgressDispatcher progressDispatcher = new ProgressDispatcher(metrics);
+    // 按帧批量显示图片，未开启时为 null
+    private final DisplayDispatcher displayDispatcher;
+    // 预加载线程池（最低线程优先级），首次预加载时才创建
+    private Executor prefetchExecutor;
+    // 正在排队或执行的预加载任务的 key，用于去重
+    private final Set<String> prefetchingKeys = Collections.synchronizedSet(new HashSet<String>());
+    // 最近预加载完成但尚未被显示使用的图片 key，用于统计预加载命中
+    private final Map<String, Boolean> prefetchedKeys = new LinkedHashMap<String, Boolean>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_TRACKED_PREFETCHED_IMAGES;
+        }
+    };
 
     ImageLoaderEngine(ImageLoaderConfiguration configuration) {
         this.configuration = configuration;
 
         taskExecutor = configuration.taskExecutor;
         taskExecutorForCachedImages = configuration.taskExecutorForCachedImages;
+        bitmapHandleRegistry = configuration.bitmapHandleRegistry;
 
         taskDistributor = DefaultConfigurationFactory.createTaskDistributor();
+
+        if (configuration.maxConcurrentLoadsPerHost > 0) {
+            Executor networkExecutor = new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    initExecutorsIfNeed();
+                    taskExecutor.execute(command);
+                }
+            };
+            int maxRunning = Math.max(configuration.threadPoolSize, configuration.maxThreadPoolSize);
+            networkTaskScheduler = new PerHostTaskScheduler(networkExecutor, configuration.maxConcurrentLoadsPerHost,
+                    maxRunning, configuration.tasksProcessingType != QueueProcessingType.FIFO);
+        } else {
+            networkTaskScheduler = null;
+        }
+
+        if (configuration.displayFrameBudget > 0) {
+            displayDispatcher = new DisplayDispatcher(configuration.displayFrameBudget, metrics);
+        } else {
+            displayDispatcher = null;
+        }
+
+        if (configuration.maxThreadPoolSize > 0) {
+            networkPoolSizeController = new ThreadPoolSizeController("Network", configuration.minThreadPoolSize,
+                    configuration.maxThreadPoolSize, false);
+            decodingPoolSizeController = new ThreadPoolSizeController("Cached images", 1,
+                    configuration.threadPoolSizeForCachedImages, true);
+        } else {
+            networkPoolSizeController = null;
+            decodingPoolSizeController = null;
+        }
     }
 
     /**
@@ -83,34 +189,249 @@ class ImageLoaderEngine {
      * 内部根据图片是否被磁盘缓存过确定使用taskExecutorForCachedImages还是taskExecutor执行该 task。
      */
     void submit(final LoadAndDisplayImageTask task) {
-        taskDistributor.execute(new Runnable() {
+        if (networkPoolSizeController != null) {
+            getTimer(); // starts periodic resizing of thread pools
+        }
+        task.submitSequence = submitSequence.incrementAndGet();
+        LoadAndDisplayImageTask previous = tasksForImageAwares.put(task.imageAware.getId(), task);
+        if (previous != null && !previous.memoryCacheKey.equals(task.memoryCacheKey) && removeQueuedTask(previous)) {
+            // ImageAware 已被复用，丢弃队列中为其加载旧图片的任务
+            metrics.onTaskPruned();
+        }
+        if (task.options.shouldDelayBeforeLoading()) {
+            submitDelayed(task);
+        } else {
+            distribute(task);
+        }
+    }
+
+    /**
+     * Holds task in timer queue during {@linkplain DisplayImageOptions#getDelayBeforeLoading() delay}. Task is
+     * distributed when delay expires if ImageAware is still bound to image of task.
+     */
+    private void submitDelayed(final LoadAndDisplayImageTask task) {
+        delayedTasks.add(task);
+        getTimer().schedule(new Runnable() {
             @Override
             public void run() {
-                File image = configuration.diskCache.get(task.getLoadingUri());
-                boolean isImageCachedOnDisk = image != null && image.exists();
-                initExecutorsIfNeed();
-                if (isImageCachedOnDisk) {// 磁盘是否缓存过
-                    taskExecutorForCachedImages.execute(task);
+                if (!delayedTasks.remove(task)) return; // task was cancelled
+
+                if (task.isTaskNotActual()) {
+                    onTaskFinished(task);
+                    metrics.onTaskPruned();
                 } else {
-                    taskExecutor.execute(task);
+                    distribute(task);
+                }
+            }
+        }, task.options.getDelayBeforeLoading(), TimeUnit.MILLISECONDS);
+    }
+
+    /** Runs action on engine timer after delay */
+    ScheduledFuture<?> schedule(Runnable action, long delayMillis) {
+        return getTimer().schedule(action, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService getTimer() {
+        if (timer == null || timer.isShutdown()) {
+            timer = DefaultConfigurationFactory.createTimer();
+            if (networkPoolSizeController != null) {
+                lastPoolSizeCheckTime = 0;
+                timer.scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        adjustThreadPoolSizes();
+                    }
+                }, POOL_SIZE_CHECK_INTERVAL, POOL_SIZE_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+        }
+        return timer;
+    }
+
+    /** Resizes default thread pools by their load. Is called by timer. */
+    private void adjustThreadPoolSizes() {
+        long now = System.currentTimeMillis();
+        long cpuTime = ThreadPoolSizeController.readCpuTime();
+        long interval = now - lastPoolSizeCheckTime;
+        boolean firstCheck = lastPoolSizeCheckTime == 0;
+        double cpuUsage = -1;
+        if (cpuTime != ThreadPoolSizeController.CPU_TIME_UNKNOWN
+                && lastCpuTime != ThreadPoolSizeController.CPU_TIME_UNKNOWN && interval > 0) {
+            cpuUsage = (cpuTime - lastCpuTime) / (double) (interval * Runtime.getRuntime().availableProcessors());
+        }
+        lastPoolSizeCheckTime = now;
+        lastCpuTime = cpuTime;
+        if (firstCheck) return;
+
+        if (!configuration.customExecutor && taskExecutor instanceof ThreadPoolExecutor) {
+            networkPoolSizeController.adjust((ThreadPoolExecutor) taskExecutor, interval, cpuUsage);
+        }
+        if (!configuration.customExecutorForCachedImages && taskExecutorForCachedImages instanceof ThreadPoolExecutor) {
+            decodingPoolSizeController.adjust((ThreadPoolExecutor) taskExecutorForCachedImages, interval, cpuUsage);
+        }
+    }
+
+    /** Returns current size of pool for network loads (or configured size if pool isn't default one) */
+    int getThreadPoolSize() {
+        return getPoolSize(taskExecutor, configuration.threadPoolSize);
+    }
+
+    /** Returns current size of pool for loads of cached images (or configured size if pool isn't default one) */
+    int getThreadPoolSizeForCachedImages() {
+        return getPoolSize(taskExecutorForCachedImages, configuration.threadPoolSizeForCachedImages);
+    }
+
+    private static int getPoolSize(Executor executor, int defaultSize) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getCorePoolSize() : defaultSize;
+    }
+
+    private void distribute(final LoadAndDisplayImageTask task) {
+        taskDistributor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isTaskNotActual()) {// ImageAware 已被复用，不进入线程池队列
+                    onTaskFinished(task);
+                    metrics.onTaskPruned();
+                } else if (task.isDeadlineExpired()) {// 已超过截止时间，不进入线程池队列
+                    onTaskFinished(task);
+                    task.expire();
+                } else if (!parkIfPaused(task)) {// 暂停时挂起，不进入线程池队列
+                    dispatch(task);
                 }
             }
         });
     }
 
+    /** 根据图片是否被磁盘缓存过确定使用taskExecutorForCachedImages还是taskExecutor执行该 task。 */
+    private void dispatch(LoadAndDisplayImageTask task) {
+        File image = configuration.diskCache.get(task.getLoadingUri());
+        boolean isImageCachedOnDisk = image != null && image.exists();
+        initExecutorsIfNeed();
+        if (configuration.taskQueueLimit > 0 && !admitToQueue(task, isImageCachedOnDisk)) {// 队列已满，任务被丢弃
+            return;
+        }
+        if (isImageCachedOnDisk) {// 磁盘是否缓存过
+            taskExecutorForCachedImages.execute(task);
+        } else if (networkTaskScheduler != null) {// 按 host 公平调度
+            networkTaskScheduler.submit(task.getLoadingUri(), task);
+        } else {
+            taskExecutor.execute(task);
+        }
+    }
+
     /** 添加一个ProcessAndDisplayImageTask。直接用taskExecutorForCachedImages执行该 task。 */
     void submit(ProcessAndDisplayImageTask task) {
         initExecutorsIfNeed();
         taskExecutorForCachedImages.execute(task);
     }
 
+    /**
+     * Applies {@linkplain QueueOverflowPolicy overflow policy} if queue of task is full.
+     * 
+     * @return <b>true</b> - if task can be queued; <b>false</b> - if task was shed
+     */
+    private boolean admitToQueue(LoadAndDisplayImageTask task, boolean isImageCachedOnDisk) {
+        QueueOverflowPolicy policy = configuration.queueOverflowPolicy;
+        LoadAndDisplayImageTask victim;
+        synchronized (queueLimitLock) {
+            List<LoadAndDisplayImageTask> queuedTasks = getQueuedTasks(isImageCachedOnDisk);
+            if (queuedTasks.size() < configuration.taskQueueLimit) return true;
+
+            switch (policy) {
+                case DROP_OLDEST:
+                    victim = findVictim(queuedTasks, false);
+                    break;
+                case DROP_LOWEST_PRIORITY:
+                    victim = findVictim(queuedTasks, true);
+                    if (victim == null || task.options.getPriority() < victim.options.getPriority()) {
+                        victim = task;
+                    }
+                    break;
+                case REJECT:
+                default:
+                    victim = task;
+                    break;
+            }
+            if (victim != task && (victim == null || !removeQueuedTask(victim))) {
+                return true; // queued task was started meanwhile so there is free place
+            }
+        }
+
+        onTaskFinished(victim);
+        victim.shed(policy == QueueOverflowPolicy.REJECT);
+        metrics.onTaskShed();
+        if (configuration.taskShedListener != null) {
+            configuration.taskShedListener.onTaskShed(victim.uri, victim.imageAware.getWrappedView(), policy);
+        }
+        return victim != task;
+    }
+
+    /** Returns queued display tasks which wait for network load or for load from disk cache */
+    private List<LoadAndDisplayImageTask> getQueuedTasks(boolean isImageCachedOnDisk) {
+        List<Runnable> runnables = new ArrayList<Runnable>();
+        if (isImageCachedOnDisk) {
+            addQueuedRunnables(taskExecutorForCachedImages, runnables);
+        } else {
+            addQueuedRunnables(taskExecutor, runnables);
+            if (networkTaskScheduler != null) {
+                runnables.addAll(networkTaskScheduler.getQueuedTasks());
+            }
+        }
+
+        List<LoadAndDisplayImageTask> tasks = new ArrayList<LoadAndDisplayImageTask>(runnables.size());
+        for (Runnable runnable : runnables) {
+            if (runnable instanceof LoadAndDisplayImageTask) {
+                LoadAndDisplayImageTask task = (LoadAndDisplayImageTask) runnable;
+                if (!task.isOnDecodingStage()) { // downloaded image shouldn't be thrown away
+                    tasks.add(task);
+                }
+            }
+        }
+        return tasks;
+    }
+
+    private static void addQueuedRunnables(Executor executor, List<Runnable> runnables) {
+        if (executor instanceof ThreadPoolExecutor) {
+            runnables.addAll(((ThreadPoolExecutor) executor).getQueue());
+        }
+    }
+
+    /** Returns the oldest task (optionally with the lowest priority) or <b>null</b> if there are no tasks */
+    private static LoadAndDisplayImageTask findVictim(List<LoadAndDisplayImageTask> tasks, boolean byPriority) {
+        LoadAndDisplayImageTask victim = null;
+        for (LoadAndDisplayImageTask task : tasks) {
+            if (victim == null) {
+                victim = task;
+                continue;
+            }
+            int priority = task.options.getPriority();
+            int victimPriority = victim.options.getPriority();
+            if (byPriority && priority != victimPriority) {
+                if (priority < victimPriority) {
+                    victim = task;
+                }
+            } else if (task.submitSequence < victim.submitSequence) {
+                victim = task;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Submits task which downloaded image into disk cache on network stage. Image is decoded and processed on
+     * taskExecutorForCachedImages, so network threads don't do CPU-bound work.
+     */
+    void submitForDecoding(LoadAndDisplayImageTask task) {
+        initExecutorsIfNeed();
+        taskExecutorForCachedImages.execute(task);
+    }
+
     private void initExecutorsIfNeed() {
         if (!configuration.customExecutor && ((ExecutorService) taskExecutor).isShutdown()) {
-            taskExecutor = createTaskExecutor();
+            taskExecutor = createTaskExecutor(configuration.threadPoolSize);
         }
         if (!configuration.customExecutorForCachedImages && ((ExecutorService) taskExecutorForCachedImages)
                 .isShutdown()) {
-            taskExecutorForCachedImages = createTaskExecutor();
+            taskExecutorForCachedImages = createTaskExecutor(configuration.threadPoolSizeForCachedImages);
         }
     }
 
@@ -119,10 +440,9 @@ class ImageLoaderEngine {
      * 
      * @return
      */
-    private Executor createTaskExecutor() {
+    private Executor createTaskExecutor(int threadPoolSize) {
         return DefaultConfigurationFactory
-                .createExecutor(configuration.threadPoolSize, configuration.threadPriority,
-                        configuration.tasksProcessingType);
+                .createExecutor(threadPoolSize, configuration.threadPriority, configuration.tasksProcessingType);
     }
 
     /**
@@ -134,6 +454,16 @@ class ImageLoaderEngine {
         return cacheKeysForImageAwares.get(imageAware.getId());
     }
 
+    /** Registers handle which isn't done yet, so it's cancelled on {@link #stop()} */
+    void registerHandle(ImageHandle handle) {
+        activeHandles.add(handle);
+    }
+
+    /** Is called when handle is done */
+    void unregisterHandle(ImageHandle handle) {
+        activeHandles.remove(handle);
+    }
+
     /**
      * Associates <b>memoryCacheKey</b> with <b>imageAware</b>. Then it helps to define image URI is loaded into View at
      * exact moment.<br>
@@ -155,6 +485,140 @@ class ImageLoaderEngine {
         cacheKeysForImageAwares.remove(imageAware.getId());
     }
 
+    /**
+     * Cancels the task of loading and displaying image for incoming <b>imageAware</b> explicitly. Task is removed from
+     * executor queue if it isn't started yet, running download of task is aborted.<br>
+     * 主动取消一个显示任务：从队列中移除尚未执行的任务，中断正在进行的下载。
+     * 
+     * @param imageAware
+     *            {@link com.nostra13.universalimageloader.core.imageaware.ImageAware} for which display task will be
+     *            cancelled
+     */
+    void cancelDisplayTask(ImageAware imageAware) {
+        cancelDisplayTaskFor(imageAware);
+        LoadAndDisplayImageTask task = tasksForImageAwares.remove(imageAware.getId());
+        if (task != null) {
+            boolean removedFromQueue = removeQueuedTask(task);
+            task.cancel(removedFromQueue);
+            metrics.onTaskCancelled();
+        }
+    }
+
+    /** Is called by task when it's finished (and isn't handed over to another stage) */
+    void onTaskFinished(LoadAndDisplayImageTask task) {
+        synchronized (tasksForImageAwares) {
+            Integer imageAwareId = task.imageAware.getId();
+            if (tasksForImageAwares.get(imageAwareId) == task) {
+                tasksForImageAwares.remove(imageAwareId);
+            }
+        }
+    }
+
+    /** @return <b>true</b> - if task was removed from queue and won't be executed; <b>false</b> - otherwise */
+    private boolean removeQueuedTask(Runnable task) {
+        if (delayedTasks.remove(task)) {
+            return true;
+        }
+        synchronized (pauseLock) {
+            if (parkedTasks.remove(task)) {
+                return true;
+            }
+        }
+        if (networkTaskScheduler != null && networkTaskScheduler.remove(task)) {
+            return true;
+        }
+        return removeFromExecutor(taskExecutor, task) || removeFromExecutor(taskExecutorForCachedImages, task);
+    }
+
+    /**
+     * Submits prefetch tasks for images which aren't prefetched by other groups at this moment. Tasks run on separate
+     * small pool of lowest priority threads so they don't take worker threads of display tasks.<br>
+     * 提交预加载任务。
+     */
+    PrefetchGroup prefetch(Collection<String> uris, ImageSize targetSize, PrefetchLevel level) {
+        PrefetchGroup group = new PrefetchGroup(this);
+        Executor executor = getPrefetchExecutor();
+        for (String uri : new LinkedHashSet<String>(uris)) {
+            if (TextUtils.isEmpty(uri)) continue;
+
+            metrics.onPrefetchRequested();
+            if (getCachedFailReason(uri) != null) {
+                metrics.onPrefetchFailed();
+                continue;
+            }
+            PrefetchTask task = new PrefetchTask(this, group, uri, targetSize, level);
+            if (!prefetchingKeys.add(task.getKey())) {
+                metrics.onPrefetchDeduplicated();
+                continue;
+            }
+            group.add(task);
+            executor.execute(task);
+        }
+        return group;
+    }
+
+    /**
+     * 返回缓存的失败原因，uri 未被缓存为加载失败或未开启失败 uri 缓存时返回 null
+     */
+    FailReason getCachedFailReason(String uri) {
+        FailedUriCache failedUriCache = configuration.failedUriCache;
+        return failedUriCache == null ? null : failedUriCache.get(uri);
+    }
+
+    private synchronized Executor getPrefetchExecutor() {
+        if (prefetchExecutor == null) {
+            prefetchExecutor = DefaultConfigurationFactory.createExecutor(PREFETCH_THREAD_POOL_SIZE,
+                    Thread.MIN_PRIORITY, QueueProcessingType.FIFO);
+        }
+        return prefetchExecutor;
+    }
+
+    /** Removes prefetch task from queue. Running task stops its download itself because its group is cancelled. */
+    void cancelPrefetchTask(PrefetchTask task) {
+        Executor executor;
+        synchronized (this) {
+            executor = prefetchExecutor;
+        }
+        if (removeFromExecutor(executor, task)) {
+            metrics.onPrefetchCancelled();
+            onPrefetchFinished(task);
+        }
+    }
+
+    void onPrefetchFinished(PrefetchTask task) {
+        prefetchingKeys.remove(task.getKey());
+        task.group.onTaskFinished(task);
+    }
+
+    /** Remembers prefetched image to count its later use */
+    void onImagePrefetched(String key) {
+        metrics.onPrefetchLoaded();
+        synchronized (prefetchedKeys) {
+            prefetchedKeys.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Is called when image is taken from cache for display. Counts prefetch hit if image was prefetched.
+     * 
+     * @param key
+     *            Memory cache key (for memory cache hit) or image URI (for disk cache hit)
+     */
+    void onCacheHit(String key) {
+        Boolean prefetched;
+        synchronized (prefetchedKeys) {
+            if (prefetchedKeys.isEmpty()) return;
+            prefetched = prefetchedKeys.remove(key);
+        }
+        if (prefetched != null) {
+            metrics.onPrefetchUsed();
+        }
+    }
+
+    private static boolean removeFromExecutor(Executor executor, Runnable task) {
+        return executor instanceof ThreadPoolExecutor && ((ThreadPoolExecutor) executor).remove(task);
+    }
+
     /**
      * Denies or allows engine to download images from the network.<br />
      * <br />
@@ -188,32 +652,128 @@ class ImageLoaderEngine {
     /**
      * Pauses engine. All new "load&display" tasks won't be executed until ImageLoader is {@link #resume() resumed}.<br
 	 * />
-     * Already running tasks are not paused.<br>
-     * 暂停图片加载任务。所有新的加载或显示任务都会等待直到取消暂停(为false)。
+     * Already running tasks are not paused. Paused tasks are parked in engine, they don't block worker threads.<br>
+     * 暂停图片加载任务。所有新的加载或显示任务都会被挂起直到取消暂停(为false)。
      */
     void pause() {
-        paused.set(true);
+        synchronized (pauseLock) {
+            paused.set(true);
+        }
     }
 
     /**
-     * Resumes engine work. Paused "load&display" tasks will continue its work.<br>
+     * Resumes engine work. Parked tasks which are still actual are re-submitted, most recently submitted tasks go
+     * first (they are for views which are visible now). Not actual parked tasks are dropped.<br>
      * 继续图片加载任务。
      */
     void resume() {
-        paused.set(false);
+        final List<LoadAndDisplayImageTask> tasks;
         synchronized (pauseLock) {
+            paused.set(false);
             pauseLock.notifyAll();
+            if (parkedTasks.isEmpty()) return;
+            tasks = new ArrayList<LoadAndDisplayImageTask>(parkedTasks);
+            parkedTasks.clear();
+        }
+
+        for (Iterator<LoadAndDisplayImageTask> it = tasks.iterator(); it.hasNext(); ) {
+            LoadAndDisplayImageTask task = it.next();
+            if (task.isTaskNotActual()) {
+                it.remove();
+                onTaskFinished(task);
+            } else if (task.isDeadlineExpired()) {
+                it.remove();
+                onTaskFinished(task);
+                task.expire();
+            }
+        }
+        // LIFO queue runs last submitted task first, so submit the most relevant task last
+        final boolean lifo = configuration.tasksProcessingType != QueueProcessingType.FIFO;
+        Collections.sort(tasks, new Comparator<LoadAndDisplayImageTask>() {
+            @Override
+            public int compare(LoadAndDisplayImageTask lhs, LoadAndDisplayImageTask rhs) {
+                long lhsSequence = lhs.submitSequence;
+                long rhsSequence = rhs.submitSequence;
+                int result = lhsSequence < rhsSequence ? -1 : (lhsSequence == rhsSequence ? 0 : 1);
+                return lifo ? result : -result;
+            }
+        });
+        taskDistributor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (LoadAndDisplayImageTask task : tasks) {
+                    if (!parkIfPaused(task)) {
+                        dispatch(task);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Parks task until {@link #resume()} if engine is paused
+     * 
+     * @return <b>true</b> - if task was parked; <b>false</b> - if engine isn't paused
+     */
+    boolean parkIfPaused(LoadAndDisplayImageTask task) {
+        if (!paused.get()) return false;
+        synchronized (pauseLock) {
+            if (!paused.get()) return false;
+            parkedTasks.add(task);
+            return true;
+        }
+    }
+
+    /**
+     * Blocks calling thread while engine is paused. Is used by synchronous tasks which run on caller's thread.
+     */
+    void waitWhilePaused() throws InterruptedException {
+        if (!paused.get()) return;
+        synchronized (pauseLock) {
+            while (paused.get()) {
+                pauseLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Returns number of tasks which wait for execution: tasks in executor queues, tasks which wait for free slot of
+     * host, delayed and parked tasks
+     */
+    int getQueuedTaskCount() {
+        int count = getQueueSize(taskExecutor) + getQueueSize(taskExecutorForCachedImages) + delayedTasks.size()
+                + getParkedTaskCount();
+        if (networkTaskScheduler != null) {
+            count += networkTaskScheduler.getQueuedTaskCount();
+        }
+        return count;
+    }
+
+    private static int getQueueSize(Executor executor) {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    /** Returns number of tasks which are parked while engine is paused */
+    int getParkedTaskCount() {
+        synchronized (pauseLock) {
+            return parkedTasks.size();
         }
     }
 
     /**
-     * Stops engine, cancels all running and scheduled display image tasks. Clears internal data. <br />
+     * Stops engine, cancels all running and scheduled display image tasks (listeners of dropped tasks get cancel event,
+     * {@linkplain ImageHandle handles} which aren't done are cancelled). Clears internal data. <br />
      * <b>NOTE:</b> This method doesn't shutdown
      * {@linkplain com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#taskExecutor(java.util.concurrent.Executor)
      * custom task executors} if you set them.<br>
      * 暂停所有加载和显示图片任务并清除这里的内部属性值。
      */
     void stop() {
+        List<LoadAndDisplayImageTask> droppedTasks;
+        synchronized (tasksForImageAwares) {
+            droppedTasks = new ArrayList<LoadAndDisplayImageTask>(tasksForImageAwares.values());
+            tasksForImageAwares.clear();
+        }
         if (!configuration.customExecutor) {
             ((ExecutorService) taskExecutor).shutdownNow();
         }
@@ -221,8 +781,54 @@ class ImageLoaderEngine {
             ((ExecutorService) taskExecutorForCachedImages).shutdownNow();
         }
 
+        synchronized (this) {
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+        }
+        delayedTasks.clear();
+        if (networkTaskScheduler != null) {
+            networkTaskScheduler.clear();
+        }
         cacheKeysForImageAwares.clear();
-        uriLocks.clear();
+        synchronized (pauseLock) {
+            parkedTasks.clear();
+        }
+        // 排队、挂起、延迟和正在执行的任务都被丢弃，通知它们的 listener
+        for (LoadAndDisplayImageTask task : droppedTasks) {
+            task.cancel(true);
+        }
+        List<ImageHandle> handles;
+        synchronized (activeHandles) {
+            handles = new ArrayList<ImageHandle>(activeHandles);
+            activeHandles.clear();
+        }
+        for (ImageHandle handle : handles) {
+            handle.cancel(true);
+        }
+        synchronized (this) {
+            if (prefetchExecutor != null) {
+                ((ExecutorService) prefetchExecutor).shutdownNow();
+                prefetchExecutor = null;
+            }
+        }
+        prefetchingKeys.clear();
+        synchronized (uriLocks) {
+            uriLocks.clear();
+        }
+    }
+
+    /**
+     * Runs display task: synchronously, batched per frame (if {@linkplain DisplayDispatcher batching} is enabled and
+     * handler is set) or as ordinary callback.<br>
+     * 执行显示图片任务。
+     */
+    void runDisplayTask(DisplayBitmapTask task, boolean sync, Handler handler) {
+        if (!sync && handler != null && displayDispatcher != null) {
+            displayDispatcher.post(handler, task);
+        } else {
+            LoadAndDisplayImageTask.runTask(task, sync, handler, this);
+        }
     }
 
     /**
@@ -239,20 +845,71 @@ class ImageLoaderEngine {
      * @return
      */
     ReentrantLock getLockForUri(String uri) {
-        ReentrantLock lock = uriLocks.get(uri);
-        if (lock == null) {
-            lock = new ReentrantLock();
-            uriLocks.put(uri, lock);
+        // 显示任务和预加载任务在不同线程中获取锁
+        synchronized (uriLocks) {
+            ReentrantLock lock = uriLocks.get(uri);
+            if (lock == null) {
+                lock = new ReentrantLock();
+                uriLocks.put(uri, lock);
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * Acquires reference to bitmap so it won't be recycled until returned handle is released.
+     * 
+     * @return Handle or <b>null</b> if bitmap recycling is disabled or if bitmap is null or already recycled
+     */
+    BitmapHandle acquireBitmap(Bitmap bitmap) {
+        if (bitmapHandleRegistry == null || bitmap == null) return null;
+        return bitmapHandleRegistry.acquire(bitmap);
+    }
+
+    /** Marks bitmap as held by memory cache. Must be called before bitmap is put into memory cache. */
+    void markBitmapCached(String memoryCacheKey, Bitmap bitmap) {
+        if (bitmapHandleRegistry != null) {
+            bitmapHandleRegistry.markCached(memoryCacheKey, bitmap);
         }
-        return lock;
     }
 
-    AtomicBoolean getPause() {
-        return paused;
+    /**
+     * Binds bitmap displayed in <b>imageAware</b>. Bitmap which was displayed in <b>imageAware</b> before is released.
+     * 
+     * @param bitmap
+     *            Displayed bitmap or <b>null</b> if <b>imageAware</b> doesn't display any bitmap of ImageLoader
+     */
+    void bindBitmap(ImageAware imageAware, Bitmap bitmap) {
+        if (bitmapHandleRegistry != null) {
+            bitmapHandleRegistry.bind(imageAware, bitmap);
+        }
+    }
+
+    /** Returns downloader which corresponds to current network state */
+    ImageDownloader getDownloader() {
+        if (networkDenied.get()) {
+            return configuration.networkDeniedDownloader;
+        } else if (slowNetwork.get()) {
+            return configuration.slowNetworkDownloader;
+        } else {
+            return configuration.downloader;
+        }
+    }
+
+    PerHostTaskScheduler getNetworkTaskScheduler() {
+        return networkTaskScheduler;
+    }
+
+    ProgressDispatcher getProgressDispatcher() {
+        return progressDispatcher;
+    }
+
+    ImageLoaderMetrics getMetrics() {
+        return metrics;
     }
 
-    Object getPauseLock() {
-        return pauseLock;
+    boolean isPaused() {
+        return paused.get();
     }
 
     boolean isNetworkDenied() {
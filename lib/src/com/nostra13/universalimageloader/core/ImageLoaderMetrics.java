@@ -0,0 +1,398 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import com.nostra13.universalimageloader.core.download.HedgingImageDownloader;
+import com.nostra13.universalimageloader.core.download.RetryingImageDownloader;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runtime metrics of {@link ImageLoader} work. Values are actual at the moment of method call.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ImageLoader#getMetrics()
+ * @since 1.9.3
+ */
+public final class ImageLoaderMetrics {
+
+	private final ImageLoaderEngine engine;
+
+	private final AtomicInteger prunedTasks = new AtomicInteger();
+	private final AtomicInteger shedTasks = new AtomicInteger();
+	private final AtomicInteger cancelledTasks = new AtomicInteger();
+	private final AtomicInteger abortedDownloads = new AtomicInteger();
+	private final AtomicLong wastedBytes = new AtomicLong();
+	private final AtomicLong progressMessages = new AtomicLong();
+	private final AtomicLong coalescedProgressEvents = new AtomicLong();
+	private final AtomicLong displayCount = new AtomicLong();
+	private final AtomicLong displayTimeNanos = new AtomicLong();
+	private final AtomicLong displayFrames = new AtomicLong();
+	private final AtomicLong spilledDisplayFrames = new AtomicLong();
+	private final AtomicLong displayFrameTimeNanos = new AtomicLong();
+	private final AtomicLong maxDisplayFrameTimeNanos = new AtomicLong();
+	private final AtomicInteger prefetchRequests = new AtomicInteger();
+	private final AtomicInteger deduplicatedPrefetches = new AtomicInteger();
+	private final AtomicInteger cachedPrefetches = new AtomicInteger();
+	private final AtomicInteger loadedPrefetches = new AtomicInteger();
+	private final AtomicInteger failedPrefetches = new AtomicInteger();
+	private final AtomicInteger cancelledPrefetches = new AtomicInteger();
+	private final AtomicInteger usedPrefetches = new AtomicInteger();
+	private final AtomicInteger expiredTasks = new AtomicInteger();
+	private final AtomicInteger revalidatedImages = new AtomicInteger();
+
+	ImageLoaderMetrics(ImageLoaderEngine engine) {
+		this.engine = engine;
+	}
+
+	/**
+	 * Returns number of network tasks which wait for free slot, per host. Host of non-network URIs is empty string.
+	 * Map is empty if {@linkplain ImageLoaderConfiguration.Builder#maxConcurrentLoadsPerHost(int) per-host limit} isn't
+	 * set.
+	 */
+	public Map<String, Integer> getQueueDepthPerHost() {
+		PerHostTaskScheduler scheduler = engine.getNetworkTaskScheduler();
+		if (scheduler == null) return Collections.emptyMap();
+		return scheduler.getQueueDepthPerHost();
+	}
+
+	/**
+	 * Returns number of running network tasks per host. Map is empty if
+	 * {@linkplain ImageLoaderConfiguration.Builder#maxConcurrentLoadsPerHost(int) per-host limit} isn't set.
+	 */
+	public Map<String, Integer> getRunningLoadsPerHost() {
+		PerHostTaskScheduler scheduler = engine.getNetworkTaskScheduler();
+		if (scheduler == null) return Collections.emptyMap();
+		return scheduler.getRunningPerHost();
+	}
+
+	/**
+	 * Returns current size of thread pool for network loads. It changes if
+	 * {@linkplain ImageLoaderConfiguration.Builder#adaptiveThreadPoolSize(int, int) adaptive sizing} is enabled.
+	 */
+	public int getThreadPoolSize() {
+		return engine.getThreadPoolSize();
+	}
+
+	/**
+	 * Returns current size of thread pool for loads of cached images. It changes if
+	 * {@linkplain ImageLoaderConfiguration.Builder#adaptiveThreadPoolSize(int, int) adaptive sizing} is enabled.
+	 */
+	public int getThreadPoolSizeForCachedImages() {
+		return engine.getThreadPoolSizeForCachedImages();
+	}
+
+	/**
+	 * Returns number of tasks which wait for execution: tasks in executor queues (only for executors created by
+	 * ImageLoader or {@link java.util.concurrent.ThreadPoolExecutor ThreadPoolExecutor}s), tasks which wait for free
+	 * slot of host, delayed and parked tasks
+	 */
+	public int getQueuedTaskCount() {
+		return engine.getQueuedTaskCount();
+	}
+
+	/**
+	 * Returns number of tasks which were dropped before execution because their ImageAware was reused for another
+	 * image
+	 */
+	public int getPrunedTaskCount() {
+		return prunedTasks.get();
+	}
+
+	/**
+	 * Returns number of tasks which were shed because
+	 * {@linkplain ImageLoaderConfiguration.Builder#taskQueueLimit(int,
+	 * com.nostra13.universalimageloader.core.assist.QueueOverflowPolicy,
+	 * com.nostra13.universalimageloader.core.listener.TaskShedListener) task queue} was full
+	 */
+	public int getShedTaskCount() {
+		return shedTasks.get();
+	}
+
+	/** Returns number of tasks which are parked (don't occupy worker threads) while ImageLoader is paused */
+	public int getParkedTaskCount() {
+		return engine.getParkedTaskCount();
+	}
+
+	/** Returns number of display tasks which were {@linkplain ImageLoader#cancelDisplayTask cancelled} explicitly */
+	public int getCancelledTaskCount() {
+		return cancelledTasks.get();
+	}
+
+	/** Returns number of downloads which were aborted because of explicit cancel */
+	public int getAbortedDownloadCount() {
+		return abortedDownloads.get();
+	}
+
+	/** Returns number of bytes which were downloaded by aborted downloads and then thrown away */
+	public long getWastedBytes() {
+		return wastedBytes.get();
+	}
+
+	/** Returns number of messages which were posted to deliver progress events */
+	public long getProgressMessageCount() {
+		return progressMessages.get();
+	}
+
+	/**
+	 * Returns number of progress events which weren't delivered because of
+	 * {@linkplain ImageLoaderConfiguration.Builder#coalesceProgressUpdates(int, int) coalescing}
+	 */
+	public long getCoalescedProgressEventCount() {
+		return coalescedProgressEvents.get();
+	}
+
+	/** Returns number of images which were displayed by display tasks (memory cache hits aren't counted) */
+	public long getDisplayCount() {
+		return displayCount.get();
+	}
+
+	/** Returns average time of one display task on main thread (displayer and listener callback), in milliseconds */
+	public double getAverageDisplayTime() {
+		long count = displayCount.get();
+		return count == 0 ? 0 : displayTimeNanos.get() / 1e6 / count;
+	}
+
+	/**
+	 * Returns number of frames which ran batched display tasks. Is 0 if
+	 * {@linkplain ImageLoaderConfiguration.Builder#batchDisplayPerFrame(int) batching} is disabled.
+	 */
+	public long getDisplayFrameCount() {
+		return displayFrames.get();
+	}
+
+	/** Returns average time of display work per frame, in milliseconds */
+	public double getAverageDisplayTimePerFrame() {
+		long frames = displayFrames.get();
+		return frames == 0 ? 0 : displayFrameTimeNanos.get() / 1e6 / frames;
+	}
+
+	/** Returns maximum time of display work per frame, in milliseconds */
+	public double getMaxDisplayTimePerFrame() {
+		return maxDisplayFrameTimeNanos.get() / 1e6;
+	}
+
+	/** Returns number of frames which spent time budget so remaining display tasks spilled to next frame */
+	public long getSpilledDisplayFrameCount() {
+		return spilledDisplayFrames.get();
+	}
+
+	/** Returns number of images which were requested for {@linkplain ImageLoader#prefetch prefetch} */
+	public int getPrefetchRequestCount() {
+		return prefetchRequests.get();
+	}
+
+	/**
+	 * Returns number of prefetch requests which were skipped because the same image was being loaded (by display task or
+	 * another prefetch) at this moment
+	 */
+	public int getDeduplicatedPrefetchCount() {
+		return deduplicatedPrefetches.get();
+	}
+
+	/** Returns number of prefetch requests which were skipped because image was cached already */
+	public int getCachedPrefetchCount() {
+		return cachedPrefetches.get();
+	}
+
+	/** Returns number of images which were loaded by prefetch */
+	public int getPrefetchedImageCount() {
+		return loadedPrefetches.get();
+	}
+
+	/** Returns number of prefetch requests which failed */
+	public int getFailedPrefetchCount() {
+		return failedPrefetches.get();
+	}
+
+	/** Returns number of prefetch requests which were cancelled with their {@linkplain PrefetchGroup group} */
+	public int getCancelledPrefetchCount() {
+		return cancelledPrefetches.get();
+	}
+
+	/**
+	 * Returns number of prefetched images which were displayed later from cache (prefetch hits). Only recently
+	 * prefetched images are tracked.
+	 */
+	public int getUsedPrefetchCount() {
+		return usedPrefetches.get();
+	}
+
+	/** Returns share of prefetched images which were displayed later, from 0 to 1 */
+	public double getPrefetchHitRatio() {
+		int loaded = loadedPrefetches.get();
+		return loaded == 0 ? 0 : (double) usedPrefetches.get() / loaded;
+	}
+
+	/**
+	 * Returns number of tasks which were dropped from queue or whose download was aborted because their
+	 * {@linkplain DisplayImageOptions#getDeadline() deadline} expired
+	 */
+	public int getDeadlineExpiredCount() {
+		return expiredTasks.get();
+	}
+
+	/**
+	 * Returns number of network downloads which were hedged by second request. Is 0 if
+	 * {@linkplain ImageLoaderConfiguration.Builder#hedgeDownloads(int, float) hedging} is disabled.
+	 */
+	public long getHedgedDownloadCount() {
+		HedgingImageDownloader downloader = engine.configuration.hedgingDownloader;
+		return downloader == null ? 0 : downloader.getHedgeCount();
+	}
+
+	/** Returns number of hedged downloads where second request finished first */
+	public long getHedgeWinCount() {
+		HedgingImageDownloader downloader = engine.configuration.hedgingDownloader;
+		return downloader == null ? 0 : downloader.getHedgeWinCount();
+	}
+
+	/**
+	 * Returns number of retried network requests. Is 0 if
+	 * {@linkplain ImageLoaderConfiguration.Builder#retryDownloads(int, int) retries} are disabled.
+	 */
+	public long getDownloadRetryCount() {
+		RetryingImageDownloader downloader = engine.configuration.retryingDownloader;
+		return downloader == null ? 0 : downloader.getRetryCount();
+	}
+
+	/** Returns number of network requests which failed fast because circuit of host was open */
+	public long getFastFailedDownloadCount() {
+		RetryingImageDownloader downloader = engine.configuration.retryingDownloader;
+		return downloader == null ? 0 : downloader.getFastFailCount();
+	}
+
+	/**
+	 * Returns circuit states of requested hosts. Map is empty if
+	 * {@linkplain ImageLoaderConfiguration.Builder#downloadCircuitBreaker(int, int) circuit breaker} is disabled.
+	 */
+	public Map<String, RetryingImageDownloader.CircuitState> getCircuitStates() {
+		RetryingImageDownloader downloader = engine.configuration.retryingDownloader;
+		if (downloader == null) return Collections.emptyMap();
+		return downloader.getCircuitStates();
+	}
+
+	/**
+	 * Returns number of display requests which failed immediately because their URI was
+	 * {@linkplain ImageLoaderConfiguration.Builder#failedUriCache(int, int) cached as failed}
+	 */
+	public long getFailedUriCacheHitCount() {
+		FailedUriCache cache = engine.configuration.failedUriCache;
+		return cache == null ? 0 : cache.getHitCount();
+	}
+
+	/** Returns number of URIs which were put in failed URIs cache */
+	public long getFailedUriCacheStoreCount() {
+		FailedUriCache cache = engine.configuration.failedUriCache;
+		return cache == null ? 0 : cache.getStoredCount();
+	}
+
+	/** Returns current number of URIs in failed URIs cache (including expired ones which weren't requested yet) */
+	public int getFailedUriCacheSize() {
+		FailedUriCache cache = engine.configuration.failedUriCache;
+		return cache == null ? 0 : cache.size();
+	}
+
+	/**
+	 * Returns number of expired disk cached images which server confirmed as not modified (HTTP 304), so they were
+	 * refreshed without downloading. Disk cache must be
+	 * {@link com.nostra13.universalimageloader.cache.disc.RevalidatingDiskCache RevalidatingDiskCache}.
+	 */
+	public int getRevalidatedImageCount() {
+		return revalidatedImages.get();
+	}
+
+	void onTaskPruned() {
+		prunedTasks.incrementAndGet();
+	}
+
+	void onTaskShed() {
+		shedTasks.incrementAndGet();
+	}
+
+	void onTaskCancelled() {
+		cancelledTasks.incrementAndGet();
+	}
+
+	void onDeadlineExpired() {
+		expiredTasks.incrementAndGet();
+	}
+
+	void onProgressMessagePosted() {
+		progressMessages.incrementAndGet();
+	}
+
+	void onProgressEventCoalesced() {
+		coalescedProgressEvents.incrementAndGet();
+	}
+
+	void onDisplayed(long nanos) {
+		displayCount.incrementAndGet();
+		displayTimeNanos.addAndGet(nanos);
+	}
+
+	void onDisplayFrame(long nanos, boolean spilled) {
+		displayFrames.incrementAndGet();
+		displayFrameTimeNanos.addAndGet(nanos);
+		if (spilled) {
+			spilledDisplayFrames.incrementAndGet();
+		}
+		long max;
+		do {
+			max = maxDisplayFrameTimeNanos.get();
+		} while (nanos > max && !maxDisplayFrameTimeNanos.compareAndSet(max, nanos));
+	}
+
+	void onDownloadCancelled(int downloadedBytes) {
+		abortedDownloads.incrementAndGet();
+		wastedBytes.addAndGet(downloadedBytes);
+	}
+
+	void onPrefetchRequested() {
+		prefetchRequests.incrementAndGet();
+	}
+
+	void onPrefetchDeduplicated() {
+		deduplicatedPrefetches.incrementAndGet();
+	}
+
+	void onPrefetchCached() {
+		cachedPrefetches.incrementAndGet();
+	}
+
+	void onPrefetchLoaded() {
+		loadedPrefetches.incrementAndGet();
+	}
+
+	void onPrefetchFailed() {
+		failedPrefetches.incrementAndGet();
+	}
+
+	void onPrefetchCancelled() {
+		cancelledPrefetches.incrementAndGet();
+	}
+
+	void onPrefetchUsed() {
+		usedPrefetches.incrementAndGet();
+	}
+
+	void onImageRevalidated() {
+		revalidatedImages.incrementAndGet();
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+
+/**
+ * Request for loading of image which isn't bound to any view. Is executed by {@link ImageLoader#load(ImageRequest)}
+ * which returns {@link ImageHandle} of loading.<br />
+ * You can create instance:
+ * <ul>
+ * <li>with {@link Builder}:<br />
+ * <b>i.e.</b> :
+ * <code>new {@link ImageRequest}.{@link Builder#Builder(String) Builder(uri)}.{@link Builder#targetSize(ImageSize) targetSize(...)}.
+ * {@link Builder#options(DisplayImageOptions) options(...)}.{@link Builder#build() build()}</code><br />
+ * </li>
+ * </ul>
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ImageHandle
+ * @since 1.9.3
+ */
+public final class ImageRequest {
+
+	private final String uri;
+	private final ImageSize targetSize;
+	private final DisplayImageOptions options;
+	private final boolean trackProgress;
+
+	private ImageRequest(Builder builder) {
+		uri = builder.uri;
+		targetSize = builder.targetSize;
+		options = builder.options;
+		trackProgress = builder.trackProgress;
+	}
+
+	public String getUri() {
+		return uri;
+	}
+
+	/** Returns target size of image or <b>null</b> if maximum image size from configuration should be used */
+	public ImageSize getTargetSize() {
+		return targetSize;
+	}
+
+	/** Returns options of request or <b>null</b> if default options from configuration should be used */
+	public DisplayImageOptions getOptions() {
+		return options;
+	}
+
+	public boolean isTrackProgress() {
+		return trackProgress;
+	}
+
+	/**
+	 * Builder for {@link ImageRequest}
+	 *
+	 * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+	 * @since 1.9.3
+	 */
+	public static class Builder {
+		private final String uri;
+		private ImageSize targetSize = null;
+		private DisplayImageOptions options = null;
+		private boolean trackProgress = false;
+
+		/** @param uri Image URI (i.e. "http://site.com/image.png", "file:///mnt/sdcard/image.png") */
+		public Builder(String uri) {
+			this.uri = uri;
+		}
+
+		/**
+		 * Sets minimal size of loaded Bitmap. Image is decoded and scaled to Bitmap of the size which is <b>equal or
+		 * larger</b> (usually a bit larger) than incoming target size. If not set - maximum image size from
+		 * {@linkplain ImageLoaderConfiguration configuration} is used.
+		 */
+		public Builder targetSize(ImageSize targetSize) {
+			this.targetSize = targetSize;
+			return this;
+		}
+
+		/**
+		 * Sets {@linkplain DisplayImageOptions options} for image decoding. If not set - default display image options
+		 * {@linkplain ImageLoaderConfiguration.Builder#defaultDisplayImageOptions(DisplayImageOptions) from
+		 * configuration} are used.
+		 */
+		public Builder options(DisplayImageOptions options) {
+			this.options = options;
+			return this;
+		}
+
+		/**
+		 * Sets whether {@link ImageHandle} should track download progress. Progress events aren't posted if progress
+		 * isn't tracked. Caching on disk should be enabled in options to get progress. Default value - <b>false</b>.
+		 */
+		public Builder trackProgress(boolean trackProgress) {
+			this.trackProgress = trackProgress;
+			return this;
+		}
+
+		/** Builds configured {@link ImageRequest} object */
+		public ImageRequest build() {
+			return new ImageRequest(this);
+		}
+	}
+}
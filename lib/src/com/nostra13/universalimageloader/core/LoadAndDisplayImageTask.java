@@ -17,6 +17,11 @@ package com.nostra13.universalimageloader.core;
 
 import android.graphics.Bitmap;
 import android.os.Handler;
+import android.os.SystemClock;
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
+import com.nostra13.universalimageloader.cache.disc.DiskCache;
+import com.nostra13.universalimageloader.cache.disc.RevalidatingDiskCache;
+import com.nostra13.universalimageloader.core.assist.AbortableInputStream;
 import com.nostra13.universalimageloader.core.assist.FailReason;
 import com.nostra13.universalimageloader.core.assist.FailReason.FailType;
 import com.nostra13.universalimageloader.core.assist.ImageScaleType;
@@ -25,8 +30,12 @@ import com.nostra13.universalimageloader.core.assist.LoadedFrom;
 import com.nostra13.universalimageloader.core.assist.ViewScaleType;
 import com.nostra13.universalimageloader.core.decode.ImageDecoder;
 import com.nostra13.universalimageloader.core.decode.ImageDecodingInfo;
+import com.nostra13.universalimageloader.core.download.ConditionalImageDownloader;
+import com.nostra13.universalimageloader.core.download.ConditionalRequest;
+import com.nostra13.universalimageloader.core.download.HttpStatusException;
 import com.nostra13.universalimageloader.core.download.ImageDownloader;
 import com.nostra13.universalimageloader.core.download.ImageDownloader.Scheme;
+import com.nostra13.universalimageloader.core.download.RetryingImageDownloader.CircuitOpenException;
 import com.nostra13.universalimageloader.core.imageaware.ImageAware;
 import com.nostra13.universalimageloader.core.listener.ImageLoadingListener;
 import com.nostra13.universalimageloader.core.listener.ImageLoadingProgressListener;
@@ -36,7 +45,7 @@ import com.nostra13.universalimageloader.utils.L;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -48,10 +57,10 @@ import java.util.concurrent.locks.ReentrantLock;
  * @see ImageLoadingInfo
  * @since 1.3.1
  */
-final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
+final class LoadAndDisplayImageTask implements Runnable, IoUtils.CancellableCopyListener {
 
 	private static final String LOG_WAITING_FOR_RESUME = "ImageLoader is paused. Waiting...  [%s]";
-	private static final String LOG_RESUME_AFTER_PAUSE = ".. Resume loading [%s]";
+	private static final String LOG_PARKED_UNTIL_RESUME = "ImageLoader is paused. Task is parked until resume [%s]";
 	private static final String LOG_DELAY_BEFORE_LOADING = "Delay %d ms before loading...  [%s]";
 	private static final String LOG_START_DISPLAY_IMAGE_TASK = "Start display image task [%s]";
 	private static final String LOG_WAITING_FOR_IMAGE_LOADED = "Image already is loading. Waiting... [%s]";
@@ -63,10 +72,17 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 	private static final String LOG_POSTPROCESS_IMAGE = "PostProcess image before displaying [%s]";
 	private static final String LOG_CACHE_IMAGE_IN_MEMORY = "Cache image in memory [%s]";
 	private static final String LOG_CACHE_IMAGE_ON_DISK = "Cache image on disk [%s]";
+	private static final String LOG_SUBMIT_FOR_DECODING = "Image is downloaded. Submit it for decoding [%s]";
 	private static final String LOG_PROCESS_IMAGE_BEFORE_CACHE_ON_DISK = "Process image before cache on disk [%s]";
 	private static final String LOG_TASK_CANCELLED_IMAGEAWARE_REUSED = "ImageAware is reused for another image. Task is cancelled. [%s]";
 	private static final String LOG_TASK_CANCELLED_IMAGEAWARE_COLLECTED = "ImageAware was collected by GC. Task is cancelled. [%s]";
 	private static final String LOG_TASK_INTERRUPTED = "Task was interrupted [%s]";
+	private static final String LOG_TASK_CANCELLED_EXPLICITLY = "Task was cancelled explicitly [%s]";
+	private static final String LOG_DOWNLOAD_ABORTED = "Download was aborted after %d bytes [%s]";
+	private static final String LOG_DEADLINE_EXPIRED = "Deadline of task expired [%s]";
+	private static final String LOG_REMOVE_BROKEN_CACHED_IMAGE = "Cached image can't be decoded, remove it [%s]";
+	private static final String LOG_IMAGE_NOT_MODIFIED = "Image wasn't modified, cached image is refreshed [%s]";
+	private static final String LOG_CACHE_FAILED_URI = "Cache URI as failed (%1$s) [%2$s]";
 
 	private static final String ERROR_NO_IMAGE_STREAM = "No stream for image [%s]";
 	private static final String ERROR_PRE_PROCESSOR_NULL = "Pre-processor returned null [%s]";
@@ -79,21 +95,53 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 
 	// Helper references
 	private final ImageLoaderConfiguration configuration;
-	private final ImageDownloader downloader;
-	private final ImageDownloader networkDeniedDownloader;
-	private final ImageDownloader slowNetworkDownloader;
 	private final ImageDecoder decoder;
 	final String uri;
-	private final String memoryCacheKey;
+	final String memoryCacheKey;
 	final ImageAware imageAware;
 	private final ImageSize targetSize;
 	final DisplayImageOptions options;
 	final ImageLoadingListener listener;
 	final ImageLoadingProgressListener progressListener;
 	private final boolean syncLoading;
+	/** Uptime when task expires or 0 if task doesn't have deadline */
+	private final long deadlineTime;
 
 	// State vars
+	/** Sequence number of submission; greater number means more recent submission */
+	volatile long submitSequence;
 	private LoadedFrom loadedFrom = LoadedFrom.NETWORK;
+	/** Whether image was downloaded into disk cache on network stage and task was re-submitted for decoding */
+	private volatile boolean downloadedOnNetworkStage = false;
+	/** Whether task was {@linkplain #cancel(boolean) cancelled explicitly} */
+	private volatile boolean cancelled = false;
+	/** Stream which is being downloaded at this moment; is aborted on cancel */
+	private volatile InputStream activeStream;
+	/** Number of bytes downloaded by current download */
+	private volatile int downloadedBytes;
+	// Progress coalescing state, is accessed by loading thread only
+	private long lastProgressTime;
+	private int lastProgressPercent;
+	/** Progress which wasn't delivered because of coalescing or -1 */
+	private int pendingProgressCurrent = -1;
+	private int pendingProgressTotal;
+	/** Is incremented every time task is handed over to engine (parked on pause, re-submitted for decoding) */
+	private volatile int handOverCount = 0;
+	/** Whether running download was stopped because deadline expired */
+	private volatile boolean deadlineExpired = false;
+	/** Whether cancel event was posted already by {@link #cancel(boolean)} */
+	private volatile boolean cancelEventPosted = false;
+	// Thread which waits for image stream (e.g. downloader waits before retry); is interrupted on cancel and deadline
+	private final Object connectLock = new Object();
+	private Thread connectingThread;
+	private boolean connectInterrupted;
+	/**
+	 * Whether server confirmed expired disk cached image wasn't modified, so cached file wasn't downloaded by this
+	 * task. Is accessed by task threads only (decoding stage is submitted by network stage).
+	 */
+	private boolean revalidated = false;
+	/** Error of last download or <b>null</b>. Is accessed by loading thread only. */
+	private IOException downloadError;
 
 	public LoadAndDisplayImageTask(ImageLoaderEngine engine, ImageLoadingInfo imageLoadingInfo, Handler handler) {
 		this.engine = engine;
@@ -101,9 +149,6 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 		this.handler = handler;
 
 		configuration = engine.configuration;
-		downloader = configuration.downloader;
-		networkDeniedDownloader = configuration.networkDeniedDownloader;
-		slowNetworkDownloader = configuration.slowNetworkDownloader;
 		decoder = configuration.decoder;
 		uri = imageLoadingInfo.uri;
 		memoryCacheKey = imageLoadingInfo.memoryCacheKey;
@@ -113,12 +158,87 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 		listener = imageLoadingInfo.listener;
 		progressListener = imageLoadingInfo.progressListener;
 		syncLoading = options.isSyncLoading();
+		int deadline = options.getDeadline() > 0 ? options.getDeadline() : configuration.defaultDeadline;
+		deadlineTime = deadline > 0 ? SystemClock.uptimeMillis() + deadline : 0;
 	}
 
 	@Override
 	public void run() {
-		if (waitIfPaused()) return;
-		if (delayIfNeed()) return;
+		int handOvers = handOverCount;
+		try {
+			loadAndDisplay();
+		} finally {
+			if (handOverCount == handOvers) { // otherwise task was handed over to engine and will run again
+				engine.onTaskFinished(this);
+			}
+		}
+	}
+
+	/**
+	 * Cancels task explicitly. Running download is aborted (on background thread because closing of connection can
+	 * touch the network). If task was removed from executor queue (so it won't run) then cancel event is fired.
+	 */
+	void cancel(boolean removedFromQueue) {
+		cancelled = true;
+		interruptConnecting();
+		final InputStream stream = activeStream;
+		if (stream != null) {
+			engine.fireCallback(new Runnable() {
+				@Override
+				public void run() {
+					if (stream instanceof AbortableInputStream) {
+						((AbortableInputStream) stream).abort();
+					} else {
+						IoUtils.closeSilently(stream);
+					}
+				}
+			});
+		}
+		if (removedFromQueue && !syncLoading) {
+			cancelEventPosted = true;
+			postCancelEvent();
+		}
+	}
+
+	/**
+	 * Is called when task is shed from full queue. Rejected task fires fail event with {@link FailType#QUEUE_FULL},
+	 * dropped task fires cancel event.
+	 */
+	void shed(boolean rejected) {
+		if (syncLoading) return;
+		if (rejected) {
+			fireFailEvent(FailType.QUEUE_FULL, null);
+		} else {
+			postCancelEvent();
+		}
+	}
+
+	/** @return <b>true</b> - if task has deadline and it expired; <b>false</b> - otherwise */
+	boolean isDeadlineExpired() {
+		return deadlineTime > 0 && SystemClock.uptimeMillis() >= deadlineTime;
+	}
+
+	/** Is called when task is dropped because its deadline expired. Fires fail event. */
+	void expire() {
+		L.d(LOG_DEADLINE_EXPIRED, memoryCacheKey);
+		engine.getMetrics().onDeadlineExpired();
+		fireFailEvent(FailType.DEADLINE_EXPIRED, null);
+	}
+
+	/** @return <b>true</b> - if image is downloaded already and task waits for decoding; <b>false</b> - otherwise */
+	boolean isOnDecodingStage() {
+		return downloadedOnNetworkStage;
+	}
+
+	private void loadAndDisplay() {
+		if (!downloadedOnNetworkStage) { // Pause and delay were already passed on network stage
+			if (waitIfPaused()) return;
+			if (delayIfNeed()) return;
+			if (isDeadlineExpired()) {
+				expire();
+				return;
+			}
+		}
 
 		ReentrantLock loadFromUriLock = imageLoadingInfo.loadFromUriLock;
 		L.d(LOG_START_DISPLAY_IMAGE_TASK, memoryCacheKey);
@@ -128,13 +248,15 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 
 		loadFromUriLock.lock();
 		Bitmap bmp;
+		BitmapHandle bmpHandle = null; // keeps cached bitmap from recycling until display task takes it
 		try {
 			checkTaskNotActual();
 
 			bmp = configuration.memoryCache.get(memoryCacheKey);
+			bmpHandle = engine.acquireBitmap(bmp);
 			if (bmp == null || bmp.isRecycled()) {
 				bmp = tryLoadBitmap();
-				if (bmp == null) return; // listener callback already was fired
+				if (bmp == null) return; // listener callback already was fired or task was submitted for decoding
 
 				checkTaskNotActual();
 				checkTaskInterrupted();
@@ -149,6 +271,8 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 
 				if (bmp != null && options.isCacheInMemory()) {
 					L.d(LOG_CACHE_IMAGE_IN_MEMORY, memoryCacheKey);
+					bmpHandle = engine.acquireBitmap(bmp);
+					engine.markBitmapCached(memoryCacheKey, bmp);
 					configuration.memoryCache.put(memoryCacheKey, bmp);
 				}
 			} else {
@@ -166,6 +290,7 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 			checkTaskNotActual();
 			checkTaskInterrupted();
 		} catch (TaskCancelledException e) {
+			releaseBitmap(bmpHandle);
 			fireCancelEvent();
 			return;
 		} finally {
@@ -173,32 +298,53 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 		}
 
 		DisplayBitmapTask displayBitmapTask = new DisplayBitmapTask(bmp, imageLoadingInfo, engine, loadedFrom);
-		runTask(displayBitmapTask, syncLoading, handler, engine);
+		releaseBitmap(bmpHandle);
+		engine.runDisplayTask(displayBitmapTask, syncLoading, handler);
+	}
+
+	private void releaseBitmap(BitmapHandle bmpHandle) {
+		if (bmpHandle != null) {
+			bmpHandle.release();
+		}
 	}
 
-	/** @return <b>true</b> - if task should be interrupted; <b>false</b> - otherwise */
+	/**
+	 * Parks task in engine if engine is paused. Parked task is re-submitted on resume so worker thread isn't blocked
+	 * while engine is paused. Synchronous task runs on caller's thread so it waits for resume.
+	 *
+	 * @return <b>true</b> - if task should be interrupted (it's parked or it isn't actual); <b>false</b> - otherwise
+	 */
 	private boolean waitIfPaused() {
-		AtomicBoolean pause = engine.getPause();
-		if (pause.get()) {
-			synchronized (engine.getPauseLock()) {
-				if (pause.get()) {
+		if (syncLoading) {
+			try {
+				if (engine.isPaused()) {
 					L.d(LOG_WAITING_FOR_RESUME, memoryCacheKey);
-					try {
-						engine.getPauseLock().wait();
-					} catch (InterruptedException e) {
-						L.e(LOG_TASK_INTERRUPTED, memoryCacheKey);
-						return true;
-					}
-					L.d(LOG_RESUME_AFTER_PAUSE, memoryCacheKey);
 				}
+				engine.waitWhilePaused();
+			} catch (InterruptedException e) {
+				L.e(LOG_TASK_INTERRUPTED, memoryCacheKey);
+				return true;
 			}
+			return isTaskNotActual();
+		}
+
+		handOverCount++;
+		if (engine.parkIfPaused(this)) {
+			L.d(LOG_PARKED_UNTIL_RESUME, memoryCacheKey);
+			return true;
 		}
+		handOverCount--;
 		return isTaskNotActual();
 	}
 
-	/** @return <b>true</b> - if task should be interrupted; <b>false</b> - otherwise */
+	/**
+	 * Delays synchronous task. Asynchronous tasks are held by engine in timer queue during delay, so they don't occupy
+	 * worker thread.
+	 *
+	 * @return <b>true</b> - if task should be interrupted; <b>false</b> - otherwise
+	 */
 	private boolean delayIfNeed() {
-		if (options.shouldDelayBeforeLoading()) {
+		if (syncLoading && options.shouldDelayBeforeLoading()) {
 			L.d(LOG_DELAY_BEFORE_LOADING, options.getDelayBeforeLoading(), memoryCacheKey);
 			try {
 				Thread.sleep(options.getDelayBeforeLoading());
@@ -217,32 +363,69 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 			File imageFile = configuration.diskCache.get(uri);
 			if (imageFile != null && imageFile.exists() && imageFile.length() > 0) {
 				L.d(LOG_LOAD_IMAGE_FROM_DISK_CACHE, memoryCacheKey);
-				loadedFrom = LoadedFrom.DISC_CACHE;
+				loadedFrom = downloadedOnNetworkStage ? LoadedFrom.NETWORK : LoadedFrom.DISC_CACHE;
+				if (!downloadedOnNetworkStage) {
+					engine.onCacheHit(uri);
+				}
 
 				checkTaskNotActual();
 				bitmap = decodeImage(Scheme.FILE.wrap(imageFile.getAbsolutePath()));
+				if (isBitmapInvalid(bitmap)) {
+					if (downloadedOnNetworkStage && !revalidated) {
+						// Image was just downloaded on network stage, don't download it again on decoding stage
+						fireFailEvent(FailType.DECODING_ERROR, null);
+						return null;
+					}
+					removeBrokenCachedImage();
+				}
 			}
-			if (bitmap == null || bitmap.getWidth() <= 0 || bitmap.getHeight() <= 0) {
+			if (isBitmapInvalid(bitmap)) {
 				L.d(LOG_LOAD_IMAGE_FROM_NETWORK, memoryCacheKey);
 				loadedFrom = LoadedFrom.NETWORK;
+				checkDeadline();
 
 				String imageUriForDecoding = uri;
 				if (options.isCacheOnDisk() && tryCacheImageOnDisk()) {
 					imageFile = configuration.diskCache.get(uri);
 					if (imageFile != null) {
+						if (!syncLoading && !downloadedOnNetworkStage) {
+							// Decode on CPU-bound stage, free network thread for next download
+							L.d(LOG_SUBMIT_FOR_DECODING, memoryCacheKey);
+							downloadedOnNetworkStage = true;
+							handOverCount++;
+							engine.submitForDecoding(this);
+							return null;
+						}
 						imageUriForDecoding = Scheme.FILE.wrap(imageFile.getAbsolutePath());
 					}
 				}
 
+				checkDownloadFailure();
 				checkTaskNotActual();
 				bitmap = decodeImage(imageUriForDecoding);
 
-				if (bitmap == null || bitmap.getWidth() <= 0 || bitmap.getHeight() <= 0) {
+				if (isBitmapInvalid(bitmap) && revalidated) {
+					// Refreshed image is broken, download it again
+					removeBrokenCachedImage();
+					imageUriForDecoding = uri;
+					if (tryCacheImageOnDisk()) {
+						imageFile = configuration.diskCache.get(uri);
+						if (imageFile != null) {
+							imageUriForDecoding = Scheme.FILE.wrap(imageFile.getAbsolutePath());
+						}
+					}
+					checkDownloadFailure();
+					checkTaskNotActual();
+					bitmap = decodeImage(imageUriForDecoding);
+				}
+				if (isBitmapInvalid(bitmap)) {
 					fireFailEvent(FailType.DECODING_ERROR, null);
 				}
 			}
 		} catch (IllegalStateException e) {
 			fireFailEvent(FailType.NETWORK_DENIED, null);
+		} catch (DeadlineExpiredException e) {
+			expire();
 		} catch (TaskCancelledException e) {
 			throw e;
 		} catch (IOException e) {
@@ -258,6 +441,31 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 		return bitmap;
 	}
 
+	/**
+	 * @throws IOException error of download if server responded with error status or host is unhealthy; image isn't
+	 *                     requested again for decoding then, failure is reported with original cause
+	 */
+	private void checkDownloadFailure() throws IOException {
+		IOException error = downloadError;
+		if (error instanceof HttpStatusException || error instanceof CircuitOpenException) {
+			throw error;
+		}
+	}
+
+	private static boolean isBitmapInvalid(Bitmap bitmap) {
+		return bitmap == null || bitmap.getWidth() <= 0 || bitmap.getHeight() <= 0;
+	}
+
+	/**
+	 * Removes disk cached image which can't be decoded, so it's downloaded again unconditionally instead of being
+	 * revalidated
+	 */
+	private void removeBrokenCachedImage() {
+		L.w(LOG_REMOVE_BROKEN_CACHED_IMAGE, memoryCacheKey);
+		configuration.diskCache.remove(uri);
+		revalidated = false;
+	}
+
 	private Bitmap decodeImage(String imageUri) throws IOException {
 		ViewScaleType viewScaleType = imageAware.getScaleType();
 		ImageDecodingInfo decodingInfo = new ImageDecodingInfo(memoryCacheKey, imageUri, uri, targetSize, viewScaleType,
@@ -270,9 +478,10 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 		L.d(LOG_CACHE_IMAGE_ON_DISK, memoryCacheKey);
 
 		boolean loaded;
+		downloadError = null;
 		try {
 			loaded = downloadImage();
-			if (loaded) {
+			if (loaded && !revalidated) {
 				int width = configuration.maxImageWidthForDiskCache;
 				int height = configuration.maxImageHeightForDiskCache;
 				if (width > 0 || height > 0) {
@@ -281,26 +490,130 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 				}
 			}
 		} catch (IOException e) {
-			L.e(e);
+			if (!cancelled && !deadlineExpired) {
+				L.e(e);
+			}
+			downloadError = e;
 			loaded = false;
 		}
+		if (!loaded && deadlineExpired) {
+			throw new DeadlineExpiredException();
+		}
+		if (!loaded && cancelled) {
+			L.d(LOG_DOWNLOAD_ABORTED, downloadedBytes, memoryCacheKey);
+			engine.getMetrics().onDownloadCancelled(downloadedBytes);
+		}
 		return loaded;
 	}
 
 	private boolean downloadImage() throws IOException {
-		InputStream is = getDownloader().getStream(uri, options.getExtraForDownloader());
+		ImageDownloader downloader = getDownloader();
+		RevalidatingDiskCache revalidatingCache = null;
+		if (configuration.diskCache instanceof RevalidatingDiskCache) {
+			revalidatingCache = (RevalidatingDiskCache) configuration.diskCache;
+		}
+		ConditionalImageDownloader conditionalDownloader = null;
+		if (downloader instanceof ConditionalImageDownloader) {
+			conditionalDownloader = (ConditionalImageDownloader) downloader;
+		}
+		ConditionalRequest request = null;
+		if (revalidatingCache != null && conditionalDownloader != null) {
+			CacheValidators validators = revalidatingCache.getValidators(uri);
+			if (validators != null) {
+				request = new ConditionalRequest(validators);
+			}
+		}
+
+		InputStream is;
+		ScheduledFuture<?> deadlineInterrupt = scheduleDeadlineInterrupt();
+		synchronized (connectLock) {
+			connectingThread = Thread.currentThread();
+		}
+		try {
+			if (cancelled) return false; // was cancelled before connecting
+			if (request == null) {
+				is = downloader.getStream(uri, options.getExtraForDownloader());
+			} else {
+				try {
+					is = conditionalDownloader.getStream(uri, options.getExtraForDownloader(), request);
+				} catch (HttpStatusException e) {
+					if (!e.isNotModified()) throw e;
+					return refreshCachedImage(request);
+				}
+			}
+		} finally {
+			if (deadlineInterrupt != null) {
+				deadlineInterrupt.cancel(false);
+			}
+			synchronized (connectLock) {
+				connectingThread = null;
+				if (connectInterrupted) {
+					connectInterrupted = false;
+					Thread.interrupted(); // interruption was addressed to connecting only
+				}
+			}
+		}
 		if (is == null) {
 			L.e(ERROR_NO_IMAGE_STREAM, memoryCacheKey);
 			return false;
 		} else {
+			downloadedBytes = 0;
+			lastProgressTime = 0;
+			lastProgressPercent = Integer.MIN_VALUE / 2;
+			pendingProgressCurrent = -1;
+			activeStream = is;
+			ScheduledFuture<?> deadlineAbort = scheduleDeadlineAbort(is);
 			try {
-				return configuration.diskCache.save(uri, is, this);
+				if (cancelled) return false; // was cancelled while connecting
+				boolean saved = saveImageOnDisk(configuration.diskCache, downloader, uri, is, request, this);
+				if (saved) {
+					flushProgressEvent();
+				}
+				return saved;
 			} finally {
+				if (deadlineAbort != null) {
+					deadlineAbort.cancel(false);
+				}
+				activeStream = null;
 				IoUtils.closeSilently(is);
 			}
 		}
 	}
 
+	/**
+	 * Saves downloaded image into disk cache. Validators of response are saved too if disk cache can revalidate images.
+	 *
+	 * @param request Conditional request which image was downloaded by or <b>null</b>
+	 */
+	static boolean saveImageOnDisk(DiskCache diskCache, ImageDownloader downloader, String uri, InputStream is,
+			ConditionalRequest request, IoUtils.CopyListener listener) throws IOException {
+		if (!(diskCache instanceof RevalidatingDiskCache)) {
+			return diskCache.save(uri, is, listener);
+		}
+		CacheValidators validators = null;
+		if (request != null) {
+			validators = request.getResponseValidators();
+		} else if (downloader instanceof ConditionalImageDownloader) {
+			validators = ((ConditionalImageDownloader) downloader).getValidators(is);
+		}
+		return ((RevalidatingDiskCache) diskCache).save(uri, is, validators, listener);
+	}
+
+	/**
+	 * Refreshes expired disk cached image which server confirmed as not modified
+	 *
+	 * @return <b>true</b> - if image was refreshed; <b>false</b> - if image isn't in disk cache anymore
+	 */
+	private boolean refreshCachedImage(ConditionalRequest request) {
+		RevalidatingDiskCache diskCache = (RevalidatingDiskCache) configuration.diskCache;
+		if (!diskCache.refresh(uri, request.getResponseValidators())) return false;
+
+		L.d(LOG_IMAGE_NOT_MODIFIED, memoryCacheKey);
+		revalidated = true;
+		engine.getMetrics().onImageRevalidated();
+		return true;
+	}
+
 	/** Decodes image file into Bitmap, resize it and save it back */
 	private boolean resizeAndSaveImage(int maxWidth, int maxHeight) throws IOException {
 		// Decode image file, compress and re-save it
@@ -329,61 +642,187 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 		return saved;
 	}
 
+	/** Interrupts waiting for image stream, so downloader doesn't wait (e.g. before retry) for cancelled task */
+	private void interruptConnecting() {
+		synchronized (connectLock) {
+			if (connectingThread != null) {
+				connectingThread.interrupt();
+				connectInterrupted = true;
+			}
+		}
+	}
+
+	/**
+	 * Schedules interruption of waiting for image stream at deadline
+	 *
+	 * @return Scheduled interruption or <b>null</b> if task doesn't have deadline
+	 */
+	private ScheduledFuture<?> scheduleDeadlineInterrupt() {
+		if (deadlineTime == 0) return null;
+
+		long delay = Math.max(0, deadlineTime - SystemClock.uptimeMillis());
+		return engine.schedule(new Runnable() {
+			@Override
+			public void run() {
+				deadlineExpired = true;
+				interruptConnecting();
+			}
+		}, delay);
+	}
+
+	/**
+	 * Schedules abort of download stream at deadline, so stalled read doesn't hold task until read timeout
+	 *
+	 * @return Scheduled abort or <b>null</b> if task doesn't have deadline
+	 */
+	private ScheduledFuture<?> scheduleDeadlineAbort(final InputStream stream) {
+		if (deadlineTime == 0) return null;
+
+		long delay = Math.max(0, deadlineTime - SystemClock.uptimeMillis());
+		return engine.schedule(new Runnable() {
+			@Override
+			public void run() {
+				deadlineExpired = true;
+				// Disconnect can block, don't hold timer thread (it dispatches delayed tasks)
+				engine.fireCallback(new Runnable() {
+					@Override
+					public void run() {
+						if (stream instanceof AbortableInputStream) {
+							((AbortableInputStream) stream).abort();
+						} else {
+							IoUtils.closeSilently(stream);
+						}
+					}
+				});
+			}
+		}, delay);
+	}
+
 	@Override
 	public boolean onBytesCopied(int current, int total) {
-		return syncLoading || fireProgressEvent(current, total);
+		downloadedBytes = current;
+		if (isDeadlineExpired()) {
+			deadlineExpired = true;
+			return false;
+		}
+		return !cancelled && (syncLoading || fireProgressEvent(current, total));
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled || deadlineExpired;
 	}
 
 	/** @return <b>true</b> - if loading should be continued; <b>false</b> - if loading should be interrupted */
 	private boolean fireProgressEvent(final int current, final int total) {
 		if (isTaskInterrupted() || isTaskNotActual()) return false;
 		if (progressListener != null) {
-			Runnable r = new Runnable() {
-				@Override
-				public void run() {
-					progressListener.onProgressUpdate(uri, imageAware.getWrappedView(), current, total);
-				}
-			};
-			runTask(r, false, handler, engine);
+			if (configuration.coalesceProgressUpdates) {
+				fireCoalescedProgressEvent(current, total);
+			} else {
+				runTask(createProgressEvent(current, total), false, handler, engine);
+				engine.getMetrics().onProgressMessagePosted();
+			}
 		}
 		return true;
 	}
 
+	/**
+	 * Fires progress event if {@linkplain ImageLoaderConfiguration.Builder#coalesceProgressUpdates(int, int) minimum
+	 * interval and step} passed since last delivered event. Final event (all bytes are loaded) is always fired.
+	 */
+	private void fireCoalescedProgressEvent(int current, int total) {
+		boolean isFinal = current == total;
+		int percent = (int) (100L * current / total);
+		long now = SystemClock.uptimeMillis();
+		boolean intervalPassed = now - lastProgressTime >= configuration.progressUpdateInterval;
+		boolean stepPassed = percent - lastProgressPercent >= configuration.progressUpdateStep;
+		if (isFinal || (intervalPassed && stepPassed)) {
+			postProgressEvent(current, total, isFinal);
+		} else {
+			pendingProgressCurrent = current;
+			pendingProgressTotal = total;
+			engine.getMetrics().onProgressEventCoalesced();
+		}
+	}
+
+	/** Fires progress event which wasn't delivered because of coalescing, so listener gets final progress */
+	private void flushProgressEvent() {
+		if (pendingProgressCurrent >= 0 && progressListener != null && !isTaskNotActual()) {
+			postProgressEvent(pendingProgressCurrent, pendingProgressTotal, true);
+		}
+	}
+
+	/**
+	 * Posts progress event. Events are batched per frame across tasks if handler is set; final event is posted
+	 * immediately so it comes before completion event.
+	 */
+	private void postProgressEvent(int current, int total, boolean isFinal) {
+		lastProgressTime = SystemClock.uptimeMillis();
+		lastProgressPercent = (int) (100L * current / total);
+		pendingProgressCurrent = -1;
+
+		Runnable r = createProgressEvent(current, total);
+		if (handler == null) {
+			runTask(r, false, handler, engine);
+			engine.getMetrics().onProgressMessagePosted();
+		} else if (isFinal) {
+			engine.getProgressDispatcher().postNow(handler, this, r);
+		} else {
+			engine.getProgressDispatcher().post(handler, this, r);
+		}
+	}
+
+	private Runnable createProgressEvent(final int current, final int total) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				progressListener.onProgressUpdate(uri, imageAware.getWrappedView(), current, total);
+			}
+		};
+	}
+
 	private void fireFailEvent(final FailType failType, final Throwable failCause) {
-		if (syncLoading || isTaskInterrupted() || isTaskNotActual()) return;
+		FailedUriCache failedUriCache = configuration.failedUriCache;
+		if (failedUriCache != null && failedUriCache.put(uri, failType, failCause)) {
+			L.d(LOG_CACHE_FAILED_URI, failType, memoryCacheKey);
+		}
+		if (isInterruptedByStop() || isTaskNotActual()) return;
 		Runnable r = new Runnable() {
 			@Override
 			public void run() {
 				if (options.shouldShowImageOnFail()) {
 					imageAware.setImageDrawable(options.getImageOnFail(configuration.resources));
+					engine.bindBitmap(imageAware, null);
 				}
 				listener.onLoadingFailed(uri, imageAware.getWrappedView(), new FailReason(failType, failCause));
 			}
 		};
-		runTask(r, false, handler, engine);
+		runTask(r, syncLoading, handler, engine);
 	}
 
 	private void fireCancelEvent() {
-		if (syncLoading || isTaskInterrupted()) return;
+		if (cancelEventPosted || isInterruptedByStop()) return;
+		postCancelEvent();
+	}
+
+	/** Worker threads are interrupted by engine stop which fires cancel events of dropped tasks itself */
+	private boolean isInterruptedByStop() {
+		return !syncLoading && isTaskInterrupted();
+	}
+
+	private void postCancelEvent() {
 		Runnable r = new Runnable() {
 			@Override
 			public void run() {
 				listener.onLoadingCancelled(uri, imageAware.getWrappedView());
 			}
 		};
-		runTask(r, false, handler, engine);
+		runTask(r, syncLoading, handler, engine);
 	}
 
 	private ImageDownloader getDownloader() {
-		ImageDownloader d;
-		if (engine.isNetworkDenied()) {
-			d = networkDeniedDownloader;
-		} else if (engine.isSlowNetwork()) {
-			d = slowNetworkDownloader;
-		} else {
-			d = downloader;
-		}
-		return d;
+		return engine.getDownloader();
 	}
 
 	/**
@@ -392,6 +831,7 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 	 *                                this moment)
 	 */
 	private void checkTaskNotActual() throws TaskCancelledException {
+		checkTaskCancelled();
 		checkViewCollected();
 		checkViewReused();
 	}
@@ -400,8 +840,31 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 	 * @return <b>true</b> - if task is not actual (target ImageAware is collected by GC or the image URI of this task
 	 * doesn't match to image URI which is actual for current ImageAware at this moment)); <b>false</b> - otherwise
 	 */
-	private boolean isTaskNotActual() {
-		return isViewCollected() || isViewReused();
+	boolean isTaskNotActual() {
+		return isTaskCancelled() || isViewCollected() || isViewReused();
+	}
+
+	/** @throws DeadlineExpiredException if deadline of task expired */
+	private void checkDeadline() throws DeadlineExpiredException {
+		if (isDeadlineExpired()) {
+			throw new DeadlineExpiredException();
+		}
+	}
+
+	/** @throws TaskCancelledException if task was cancelled explicitly */
+	private void checkTaskCancelled() throws TaskCancelledException {
+		if (isTaskCancelled()) {
+			throw new TaskCancelledException();
+		}
+	}
+
+	/** @return <b>true</b> - if task was {@linkplain #cancel(boolean) cancelled explicitly}; <b>false</b> - otherwise */
+	private boolean isTaskCancelled() {
+		if (cancelled) {
+			L.d(LOG_TASK_CANCELLED_EXPLICITLY, memoryCacheKey);
+			return true;
+		}
+		return false;
 	}
 
 	/** @throws TaskCancelledException if target ImageAware is collected */
@@ -479,4 +942,13 @@ final class LoadAndDisplayImageTask implements Runnable, IoUtils.CopyListener {
 	 */
 	class TaskCancelledException extends Exception {
 	}
+
+	/**
+	 * Exception for case when deadline of task expires before image is loaded
+	 *
+	 * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+	 * @since 1.9.3
+	 */
+	class DeadlineExpiredException extends TaskCancelledException {
+	}
 }
@@ -0,0 +1,269 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import com.nostra13.universalimageloader.utils.L;
+import com.nostra13.universalimageloader.utils.UriUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Schedules network tasks fairly across hosts. Every host has its own queue; tasks are dispatched to executor in
+ * round-robin order of hosts while number of running tasks of host is less than per-host limit and total number of
+ * running tasks is less than total limit. So one slow host can't occupy all threads of executor.<br />
+ * Tasks of non-network URIs are grouped together and aren't limited per host.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class PerHostTaskScheduler {
+
+	private static final String NON_NETWORK_HOST = UriUtils.NON_NETWORK_HOST;
+
+	private static final String LOG_TASK_REJECTED = "Executor rejected task of host %s";
+
+	/** Task queue and running tasks count of host */
+	private static final class HostQueue {
+		final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+		int running;
+	}
+
+	private final Executor executor;
+	private final int maxRunningPerHost;
+	private final int maxRunning;
+	private final boolean lifo;
+
+	/** Hosts in round-robin order: host which was served last goes last */
+	private final LinkedHashMap<String, HostQueue> hosts = new LinkedHashMap<String, HostQueue>();
+	/** Dispatched tasks which still wait in executor queue (executor can be smaller than total limit) */
+	private final Map<Runnable, ScheduledTask> pending = new HashMap<Runnable, ScheduledTask>();
+	private int running;
+	/** Is incremented on {@link #clear()} so tasks of previous generation don't affect counters */
+	private int generation;
+
+	/**
+	 * @param executor          Executor which runs dispatched tasks
+	 * @param maxRunningPerHost Maximum number of running tasks per host
+	 * @param maxRunning        Maximum total number of running tasks
+	 * @param lifo              Whether last submitted task of host should be dispatched first
+	 */
+	PerHostTaskScheduler(Executor executor, int maxRunningPerHost, int maxRunning, boolean lifo) {
+		this.executor = executor;
+		this.maxRunningPerHost = maxRunningPerHost;
+		this.maxRunning = maxRunning;
+		this.lifo = lifo;
+	}
+
+	/** Queues task of image with defined URI and dispatches tasks if there are free slots */
+	void submit(String uri, Runnable task) {
+		String host = getHost(uri);
+		synchronized (this) {
+			HostQueue hostQueue = hosts.get(host);
+			if (hostQueue == null) {
+				hostQueue = new HostQueue();
+				hosts.put(host, hostQueue);
+			}
+			hostQueue.tasks.add(task);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Removes task which isn't started yet: queued task or dispatched task which waits in executor queue. Removed task
+	 * won't be run.
+	 *
+	 * @return <b>true</b> - if task was removed; <b>false</b> - if task isn't queued
+	 */
+	boolean remove(Runnable task) {
+		synchronized (this) {
+			Iterator<Map.Entry<String, HostQueue>> it = hosts.entrySet().iterator();
+			while (it.hasNext()) {
+				HostQueue hostQueue = it.next().getValue();
+				if (hostQueue.tasks.remove(task)) {
+					if (hostQueue.tasks.isEmpty() && hostQueue.running == 0) {
+						it.remove();
+					}
+					return true;
+				}
+			}
+			ScheduledTask scheduledTask = pending.remove(task);
+			if (scheduledTask == null) return false;
+			// Wrapper stays in executor queue but won't run task
+			releaseSlot(scheduledTask);
+		}
+		dispatch();
+		return true;
+	}
+
+	/** Drops all queued tasks and resets counters of running tasks */
+	synchronized void clear() {
+		hosts.clear();
+		pending.clear();
+		running = 0;
+		generation++;
+	}
+
+	/** Returns number of queued (not dispatched yet) tasks per host */
+	synchronized Map<String, Integer> getQueueDepthPerHost() {
+		Map<String, Integer> depths = new HashMap<String, Integer>();
+		for (Map.Entry<String, HostQueue> entry : hosts.entrySet()) {
+			depths.put(entry.getKey(), entry.getValue().tasks.size());
+		}
+		return depths;
+	}
+
+	/**
+	 * Returns tasks which aren't started yet: queued tasks and dispatched tasks which wait in executor queue (executor
+	 * queue contains them wrapped)
+	 */
+	synchronized List<Runnable> getQueuedTasks() {
+		List<Runnable> tasks = new ArrayList<Runnable>(pending.keySet());
+		for (HostQueue hostQueue : hosts.values()) {
+			tasks.addAll(hostQueue.tasks);
+		}
+		return tasks;
+	}
+
+	/** Returns total number of queued (not dispatched yet) tasks */
+	synchronized int getQueuedTaskCount() {
+		int count = 0;
+		for (HostQueue hostQueue : hosts.values()) {
+			count += hostQueue.tasks.size();
+		}
+		return count;
+	}
+
+	/** Returns number of running tasks per host */
+	synchronized Map<String, Integer> getRunningPerHost() {
+		Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+		for (Map.Entry<String, HostQueue> entry : hosts.entrySet()) {
+			runningPerHost.put(entry.getKey(), entry.getValue().running);
+		}
+		return runningPerHost;
+	}
+
+	private void dispatch() {
+		List<Runnable> tasksToRun = null;
+		synchronized (this) {
+			while (running < maxRunning) {
+				String host = nextHost();
+				if (host == null) break;
+
+				HostQueue hostQueue = hosts.remove(host);
+				hosts.put(host, hostQueue); // served host goes last
+				Runnable task = lifo ? hostQueue.tasks.removeLast() : hostQueue.tasks.removeFirst();
+				hostQueue.running++;
+				running++;
+				if (tasksToRun == null) {
+					tasksToRun = new ArrayList<Runnable>();
+				}
+				ScheduledTask scheduledTask = new ScheduledTask(host, task, generation);
+				pending.put(task, scheduledTask);
+				tasksToRun.add(scheduledTask);
+			}
+		}
+		if (tasksToRun != null) {
+			for (Runnable task : tasksToRun) {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					ScheduledTask scheduledTask = (ScheduledTask) task;
+					L.w(LOG_TASK_REJECTED, scheduledTask.host);
+					onTaskFinished(scheduledTask);
+				}
+			}
+		}
+	}
+
+	/** Returns first host in round-robin order which has queued tasks and free slot or <b>null</b> */
+	private String nextHost() {
+		for (Map.Entry<String, HostQueue> entry : hosts.entrySet()) {
+			HostQueue hostQueue = entry.getValue();
+			boolean unlimited = NON_NETWORK_HOST.equals(entry.getKey());
+			if (!hostQueue.tasks.isEmpty() && (unlimited || hostQueue.running < maxRunningPerHost)) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/** @return <b>true</b> - if task should be run; <b>false</b> - if it was removed while waiting in executor queue */
+	private synchronized boolean onTaskStarted(ScheduledTask task) {
+		if (pending.get(task.task) != task) return false;
+		pending.remove(task.task);
+		return true;
+	}
+
+	private void onTaskFinished(ScheduledTask task) {
+		synchronized (this) {
+			if (task.generation != generation) return;
+
+			if (pending.get(task.task) == task) { // task was rejected by executor
+				pending.remove(task.task);
+			}
+			releaseSlot(task);
+		}
+		dispatch();
+	}
+
+	/** Frees running slot of dispatched task. Must be called under lock for task of current generation. */
+	private void releaseSlot(ScheduledTask task) {
+		running--;
+		HostQueue hostQueue = hosts.get(task.host);
+		if (hostQueue != null) {
+			hostQueue.running--;
+			if (hostQueue.tasks.isEmpty() && hostQueue.running == 0) {
+				hosts.remove(task.host);
+			}
+		}
+	}
+
+	/** Returns host (with port) of network URI or {@link #NON_NETWORK_HOST} for other URIs */
+	static String getHost(String uri) {
+		return UriUtils.getHost(uri);
+	}
+
+	/** Runs task and frees its slot on finish */
+	private final class ScheduledTask implements Runnable {
+		final String host;
+		final Runnable task;
+		final int generation;
+
+		ScheduledTask(String host, Runnable task, int generation) {
+			this.host = host;
+			this.task = task;
+			this.generation = generation;
+		}
+
+		@Override
+		public void run() {
+			if (!onTaskStarted(this)) return;
+			try {
+				task.run();
+			} finally {
+				onTaskFinished(this);
+			}
+		}
+	}
+}
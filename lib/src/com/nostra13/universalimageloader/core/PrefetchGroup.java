@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Group of prefetch tasks which were submitted by one {@linkplain ImageLoader#prefetch prefetch} call. Group can be
+ * cancelled as a whole: queued tasks are removed from queue, running downloads are stopped.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see ImageLoader#prefetch(java.util.Collection, com.nostra13.universalimageloader.core.assist.ImageSize,
+ * com.nostra13.universalimageloader.core.assist.PrefetchLevel)
+ * @since 1.9.3
+ */
+public final class PrefetchGroup {
+
+	private final ImageLoaderEngine engine;
+	private final Set<PrefetchTask> pendingTasks = new HashSet<PrefetchTask>();
+
+	private volatile boolean cancelled = false;
+
+	PrefetchGroup(ImageLoaderEngine engine) {
+		this.engine = engine;
+	}
+
+	/** Cancels all not finished tasks of this group */
+	public void cancel() {
+		cancelled = true;
+		List<PrefetchTask> tasks;
+		synchronized (pendingTasks) {
+			tasks = new ArrayList<PrefetchTask>(pendingTasks);
+		}
+		for (PrefetchTask task : tasks) {
+			engine.cancelPrefetchTask(task);
+		}
+	}
+
+	/** @return <b>true</b> - if group was {@linkplain #cancel() cancelled} */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/** Returns number of tasks of this group which aren't finished yet */
+	public int getPendingCount() {
+		synchronized (pendingTasks) {
+			return pendingTasks.size();
+		}
+	}
+
+	/** @return <b>true</b> - if all tasks of this group are finished (or removed from queue) */
+	public boolean isDone() {
+		return getPendingCount() == 0;
+	}
+
+	void add(PrefetchTask task) {
+		synchronized (pendingTasks) {
+			pendingTasks.add(task);
+		}
+	}
+
+	void onTaskFinished(PrefetchTask task) {
+		synchronized (pendingTasks) {
+			pendingTasks.remove(task);
+		}
+	}
+}
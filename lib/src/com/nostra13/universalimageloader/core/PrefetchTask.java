@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.graphics.Bitmap;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.PrefetchLevel;
+import com.nostra13.universalimageloader.core.assist.ViewScaleType;
+import com.nostra13.universalimageloader.core.decode.ImageDecodingInfo;
+import com.nostra13.universalimageloader.core.download.ImageDownloader;
+import com.nostra13.universalimageloader.core.download.ImageDownloader.Scheme;
+import com.nostra13.universalimageloader.utils.IoUtils;
+import com.nostra13.universalimageloader.utils.L;
+import com.nostra13.universalimageloader.utils.MemoryCacheUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Prefetch task. Loads image into disk cache and (depending on {@link PrefetchLevel}) into memory cache, doesn't
+ * display it anywhere. Is skipped if image is cached already or is loading by another task at this moment.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see PrefetchGroup
+ * @since 1.9.3
+ */
+final class PrefetchTask implements Runnable, IoUtils.CancellableCopyListener {
+
+	private static final String LOG_PREFETCH_IMAGE = "Prefetch image [%s]";
+	private static final String LOG_PREFETCH_IMAGE_IS_LOADING = "Image is loading already. Prefetch is skipped [%s]";
+	private static final String LOG_PREFETCH_IMAGE_IS_CACHED = "Image is cached already. Prefetch is skipped [%s]";
+	private static final String LOG_PREFETCH_CANCELLED = "Prefetch was cancelled [%s]";
+
+	private static final String ERROR_NO_IMAGE_STREAM = "No stream for image [%s]";
+	private static final String ERROR_DECODING = "Prefetched image can't be decoded [%s]";
+
+	private final ImageLoaderEngine engine;
+	final PrefetchGroup group;
+	private final ImageLoaderConfiguration configuration;
+	private final DisplayImageOptions options;
+	final String uri;
+	final String memoryCacheKey;
+	private final ImageSize targetSize;
+	final PrefetchLevel level;
+
+	PrefetchTask(ImageLoaderEngine engine, PrefetchGroup group, String uri, ImageSize targetSize,
+			PrefetchLevel level) {
+		this.engine = engine;
+		this.group = group;
+		this.uri = uri;
+		this.targetSize = targetSize;
+		this.level = level;
+
+		configuration = engine.configuration;
+		options = configuration.defaultDisplayImageOptions;
+		memoryCacheKey = MemoryCacheUtils.generateKey(uri, targetSize);
+	}
+
+	/** Returns key which identifies result of this task: memory cache key or URI for disk-only prefetch */
+	String getKey() {
+		return level == PrefetchLevel.MEMORY ? memoryCacheKey : uri;
+	}
+
+	@Override
+	public void run() {
+		try {
+			if (group.isCancelled()) {
+				engine.getMetrics().onPrefetchCancelled();
+			} else {
+				prefetch();
+			}
+		} finally {
+			engine.onPrefetchFinished(this);
+		}
+	}
+
+	private void prefetch() {
+		ReentrantLock loadFromUriLock = engine.getLockForUri(uri);
+		if (!loadFromUriLock.tryLock()) {
+			// Display task loads the same image, it will be cached by it
+			L.d(LOG_PREFETCH_IMAGE_IS_LOADING, uri);
+			engine.getMetrics().onPrefetchDeduplicated();
+			return;
+		}
+
+		try {
+			if (level == PrefetchLevel.MEMORY && isCachedInMemory()) {
+				L.d(LOG_PREFETCH_IMAGE_IS_CACHED, memoryCacheKey);
+				engine.getMetrics().onPrefetchCached();
+				return;
+			}
+
+			File imageFile = configuration.diskCache.get(uri);
+			boolean cachedOnDisk = imageFile != null && imageFile.exists() && imageFile.length() > 0;
+			if (cachedOnDisk && level == PrefetchLevel.DISK_ONLY) {
+				L.d(LOG_PREFETCH_IMAGE_IS_CACHED, uri);
+				engine.getMetrics().onPrefetchCached();
+				return;
+			}
+
+			L.d(LOG_PREFETCH_IMAGE, getKey());
+			if (!cachedOnDisk) {
+				if (!downloadImage()) {
+					if (isCancelled()) {
+						L.d(LOG_PREFETCH_CANCELLED, uri);
+						engine.getMetrics().onPrefetchCancelled();
+					} else {
+						engine.getMetrics().onPrefetchFailed();
+					}
+					return;
+				}
+				imageFile = configuration.diskCache.get(uri);
+			}
+
+			if (level == PrefetchLevel.MEMORY && !decodeIntoMemory(imageFile)) {
+				L.e(ERROR_DECODING, memoryCacheKey);
+				engine.getMetrics().onPrefetchFailed();
+				return;
+			}
+			engine.onImagePrefetched(getKey());
+		} catch (IllegalStateException e) {
+			// Network downloads are denied
+			engine.getMetrics().onPrefetchFailed();
+		} catch (IOException e) {
+			if (!isCancelled()) {
+				L.e(e);
+			}
+			engine.getMetrics().onPrefetchFailed();
+		} catch (OutOfMemoryError e) {
+			L.e(e);
+			engine.getMetrics().onPrefetchFailed();
+		} finally {
+			loadFromUriLock.unlock();
+		}
+	}
+
+	private boolean isCachedInMemory() {
+		Bitmap bmp = configuration.memoryCache.get(memoryCacheKey);
+		return bmp != null && !bmp.isRecycled();
+	}
+
+	private boolean downloadImage() throws IOException {
+		ImageDownloader downloader = engine.getDownloader();
+		InputStream is = downloader.getStream(uri, options.getExtraForDownloader());
+		if (is == null) {
+			L.e(ERROR_NO_IMAGE_STREAM, uri);
+			return false;
+		}
+		try {
+			return !isCancelled()
+					&& LoadAndDisplayImageTask.saveImageOnDisk(configuration.diskCache, downloader, uri, is, null, this);
+		} finally {
+			IoUtils.closeSilently(is);
+		}
+	}
+
+	private boolean decodeIntoMemory(File imageFile) throws IOException {
+		if (imageFile == null) return false;
+
+		ImageDecodingInfo decodingInfo = new ImageDecodingInfo(memoryCacheKey,
+				Scheme.FILE.wrap(imageFile.getAbsolutePath()), uri, targetSize, ViewScaleType.CROP,
+				engine.getDownloader(), options);
+		Bitmap bmp = configuration.decoder.decode(decodingInfo);
+		if (bmp != null && options.shouldPreProcess()) {
+			bmp = options.getPreProcessor().process(bmp);
+		}
+		if (bmp == null || bmp.getWidth() <= 0 || bmp.getHeight() <= 0) return false;
+
+		engine.markBitmapCached(memoryCacheKey, bmp);
+		configuration.memoryCache.put(memoryCacheKey, bmp);
+		return true;
+	}
+
+	@Override
+	public boolean onBytesCopied(int current, int total) {
+		return !isCancelled();
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return group.isCancelled();
+	}
+}
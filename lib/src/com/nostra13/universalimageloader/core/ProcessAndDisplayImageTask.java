@@ -37,6 +37,8 @@ final class ProcessAndDisplayImageTask implements Runnable {
 	private final Bitmap bitmap;
 	private final ImageLoadingInfo imageLoadingInfo;
 	private final Handler handler;
+	/** Keeps bitmap from recycling until it's processed. Is null if bitmap recycling is disabled. */
+	private final BitmapHandle bitmapHandle;
 
 	public ProcessAndDisplayImageTask(ImageLoaderEngine engine, Bitmap bitmap, ImageLoadingInfo imageLoadingInfo,
 			Handler handler) {
@@ -44,6 +46,7 @@ final class ProcessAndDisplayImageTask implements Runnable {
 		this.bitmap = bitmap;
 		this.imageLoadingInfo = imageLoadingInfo;
 		this.handler = handler;
+		bitmapHandle = engine.acquireBitmap(bitmap);
 	}
 
 	@Override
@@ -51,9 +54,16 @@ final class ProcessAndDisplayImageTask implements Runnable {
 		L.d(LOG_POSTPROCESS_IMAGE, imageLoadingInfo.memoryCacheKey);
 
 		BitmapProcessor processor = imageLoadingInfo.options.getPostProcessor();
-		Bitmap processedBitmap = processor.process(bitmap);
-		DisplayBitmapTask displayBitmapTask = new DisplayBitmapTask(processedBitmap, imageLoadingInfo, engine,
-				LoadedFrom.MEMORY_CACHE);
-		LoadAndDisplayImageTask.runTask(displayBitmapTask, imageLoadingInfo.options.isSyncLoading(), handler, engine);
+		DisplayBitmapTask displayBitmapTask;
+		try {
+			Bitmap processedBitmap = processor.process(bitmap);
+			displayBitmapTask = new DisplayBitmapTask(processedBitmap, imageLoadingInfo, engine,
+					LoadedFrom.MEMORY_CACHE);
+		} finally {
+			if (bitmapHandle != null) {
+				bitmapHandle.release();
+			}
+		}
+		engine.runDisplayTask(displayBitmapTask, imageLoadingInfo.options.isSyncLoading(), handler);
 	}
 }
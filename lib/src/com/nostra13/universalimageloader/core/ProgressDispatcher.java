@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delivers progress events in batches: at most one message per {@linkplain #FRAME_INTERVAL frame} is posted to looper
+ * for all loading tasks (every task has its own handler, tasks are batched by looper of handler). If task fires several events during frame then only the latest one is delivered.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class ProgressDispatcher {
+
+	/** Duration of frame in milliseconds */
+	static final long FRAME_INTERVAL = 16;
+
+	private final ImageLoaderMetrics metrics;
+	private final Map<Looper, Batch> batches = new HashMap<Looper, Batch>();
+
+	ProgressDispatcher(ImageLoaderMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Queues progress event of task for delivery at next frame. Replaces not delivered event of the same task.
+	 *
+	 * @param handler Handler of task
+	 * @param key     Key of task
+	 * @param event   Progress event
+	 */
+	void post(Handler handler, Object key, Runnable event) {
+		boolean schedule;
+		Batch batch;
+		synchronized (this) {
+			Looper looper = handler.getLooper();
+			batch = batches.get(looper);
+			if (batch == null) {
+				batch = new Batch(looper);
+				batches.put(looper, batch);
+			}
+			if (batch.events.put(key, event) != null) {
+				metrics.onProgressEventCoalesced();
+			}
+			schedule = !batch.scheduled;
+			batch.scheduled = true;
+		}
+		if (schedule) {
+			long now = SystemClock.uptimeMillis();
+			batch.handler.postAtTime(batch, now - now % FRAME_INTERVAL + FRAME_INTERVAL); // align to frame boundary
+			metrics.onProgressMessagePosted();
+		}
+	}
+
+	/**
+	 * Delivers progress event of task immediately (e.g. final one, to keep it before completion event). Not delivered
+	 * event of the same task is dropped.
+	 */
+	void postNow(Handler handler, Object key, Runnable event) {
+		synchronized (this) {
+			Batch batch = batches.get(handler.getLooper());
+			if (batch != null && batch.events.remove(key) != null) {
+				metrics.onProgressEventCoalesced();
+			}
+		}
+		handler.post(event);
+		metrics.onProgressMessagePosted();
+	}
+
+	/** Progress events of one looper which are waiting for frame */
+	private final class Batch implements Runnable {
+		final Looper looper;
+		final Handler handler;
+		final LinkedHashMap<Object, Runnable> events = new LinkedHashMap<Object, Runnable>();
+		boolean scheduled;
+
+		Batch(Looper looper) {
+			this.looper = looper;
+			handler = new Handler(looper);
+		}
+
+		@Override
+		public void run() {
+			List<Runnable> eventsToDeliver;
+			synchronized (ProgressDispatcher.this) {
+				eventsToDeliver = new ArrayList<Runnable>(events.values());
+				events.clear();
+				scheduled = false;
+				batches.remove(looper);
+			}
+			for (Runnable event : eventsToDeliver) {
+				event.run();
+			}
+		}
+	}
+}
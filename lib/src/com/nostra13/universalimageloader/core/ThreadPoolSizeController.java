@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import com.nostra13.universalimageloader.utils.IoUtils;
+import com.nostra13.universalimageloader.utils.L;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Adjusts size of thread pool by hill climbing. Every evaluation compares throughput (completed tasks per second) with
+ * previous one: if last resize made throughput worse then resize is reverted, if pool has backlog then pool grows, if
+ * pool has idle threads and no backlog then pool shrinks. CPU-bound pool shrinks and no pool grows while CPU is
+ * saturated. Size stays within defined bounds.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+final class ThreadPoolSizeController {
+
+	/** CPU usage (share of all cores) which is considered as saturation */
+	static final double CPU_SATURATION = 0.9;
+	/** Relative throughput drop which reverts last resize */
+	private static final double THROUGHPUT_TOLERANCE = 0.05;
+	/** Value which is returned by {@link #readCpuTime()} if CPU time isn't available */
+	static final long CPU_TIME_UNKNOWN = -1;
+	/** Clock ticks per second of /proc/self/stat values (USER_HZ) */
+	private static final int CLOCK_TICKS_PER_SECOND = 100;
+
+	private static final String LOG_RESIZE = "%s pool: %d -> %d threads (%s; throughput %.1f tasks/s, queue %d, CPU %s)";
+
+	private final String name;
+	private final int minSize;
+	private final int maxSize;
+	private final boolean cpuBound;
+
+	private ThreadPoolExecutor executor;
+	private long lastCompletedCount;
+	private double lastThroughput;
+	private int lastDirection;
+
+	/**
+	 * @param name     Name of pool for logs
+	 * @param minSize  Minimum pool size
+	 * @param maxSize  Maximum pool size
+	 * @param cpuBound Whether tasks of pool are CPU-bound (pool shrinks while CPU is saturated)
+	 */
+	ThreadPoolSizeController(String name, int minSize, int maxSize, boolean cpuBound) {
+		this.name = name;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.cpuBound = cpuBound;
+	}
+
+	/**
+	 * Evaluates work of pool since previous call and resizes pool if needed
+	 *
+	 * @param executor       Executor of pool
+	 * @param intervalMillis Time since previous call
+	 * @param cpuUsage       Share of all CPU cores used by process since previous call (0..1) or negative value if
+	 *                       it's unknown
+	 */
+	synchronized void adjust(ThreadPoolExecutor executor, long intervalMillis, double cpuUsage) {
+		long completedCount = executor.getCompletedTaskCount();
+		if (this.executor != executor) { // executor was re-created, start from scratch
+			this.executor = executor;
+			lastCompletedCount = completedCount;
+			lastThroughput = 0;
+			lastDirection = 0;
+			return;
+		}
+
+		double throughput = (completedCount - lastCompletedCount) * 1000d / Math.max(intervalMillis, 1);
+		int queueSize = executor.getQueue().size();
+		int size = executor.getCorePoolSize();
+		boolean cpuSaturated = cpuUsage >= CPU_SATURATION;
+
+		int direction;
+		String reason;
+		if (queueSize == 0 && executor.getActiveCount() < size) {
+			direction = -1;
+			reason = "idle threads";
+		} else if (cpuSaturated && cpuBound) {
+			direction = -1;
+			reason = "CPU saturated";
+		} else if (lastDirection != 0 && throughput < lastThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+			direction = -lastDirection;
+			reason = "throughput dropped after last resize";
+		} else if (queueSize > 0 && !cpuSaturated) {
+			direction = 1;
+			reason = "backlog";
+		} else {
+			direction = 0;
+			reason = null;
+		}
+
+		int newSize = Math.max(minSize, Math.min(maxSize, size + direction));
+		if (newSize != size) {
+			String cpu = cpuUsage < 0 ? "n/a" : String.format("%d%%", Math.round(cpuUsage * 100));
+			L.i(LOG_RESIZE, name, size, newSize, reason, throughput, queueSize, cpu);
+			resize(executor, newSize);
+			lastDirection = direction;
+		} else {
+			lastDirection = 0;
+		}
+		lastCompletedCount = completedCount;
+		lastThroughput = throughput;
+	}
+
+	private static void resize(ThreadPoolExecutor executor, int newSize) {
+		if (newSize > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(newSize);
+			executor.setCorePoolSize(newSize);
+		} else {
+			executor.setCorePoolSize(newSize);
+			executor.setMaximumPoolSize(newSize);
+		}
+	}
+
+	/**
+	 * Returns CPU time (user + system) consumed by process in milliseconds or {@link #CPU_TIME_UNKNOWN} if it can't
+	 * be read
+	 */
+	static long readCpuTime() {
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader("/proc/self/stat"), 512);
+			String stat = reader.readLine();
+			if (stat == null) return CPU_TIME_UNKNOWN;
+			// Process name can contain spaces so fields are counted after closing bracket
+			String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+			long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]); // utime + stime
+			return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+		} catch (IOException e) {
+			return CPU_TIME_UNKNOWN;
+		} catch (RuntimeException e) {
+			return CPU_TIME_UNKNOWN;
+		} finally {
+			IoUtils.closeSilently(reader);
+		}
+	}
+}
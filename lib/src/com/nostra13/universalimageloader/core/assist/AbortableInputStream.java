@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.assist;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+/**
+ * Decorator for network {@link InputStream}. Can be {@linkplain #abort() aborted} from any thread: connection is
+ * disconnected so blocking read returns immediately. Every read after abort throws {@link IOException}.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class AbortableInputStream extends FilterInputStream {
+
+	private static final String ERROR_ABORTED = "Stream was aborted";
+
+	private final HttpURLConnection connection;
+	private volatile boolean aborted;
+
+	public AbortableInputStream(InputStream stream, HttpURLConnection connection) {
+		super(stream);
+		this.connection = connection;
+	}
+
+	/** Aborts reading: disconnects connection. Blocked reading thread gets {@link IOException}. */
+	public void abort() {
+		aborted = true;
+		connection.disconnect();
+	}
+
+	/** @return <b>true</b> - if stream was aborted; <b>false</b> - otherwise */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkNotAborted();
+		int result = super.read();
+		checkNotAborted();
+		return result;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int count) throws IOException {
+		checkNotAborted();
+		int result = super.read(buffer, offset, count);
+		checkNotAborted();
+		return result;
+	}
+
+	@Override
+	public long skip(long byteCount) throws IOException {
+		checkNotAborted();
+		return super.skip(byteCount);
+	}
+
+	private void checkNotAborted() throws IOException {
+		if (aborted) {
+			throw new IOException(ERROR_ABORTED);
+		}
+	}
+}
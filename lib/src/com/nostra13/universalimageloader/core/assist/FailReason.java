@@ -59,6 +59,16 @@ public class FailReason {
 		NETWORK_DENIED,
 		/** Not enough memory to create needed Bitmap for image */
 		OUT_OF_MEMORY,
+		/**
+		 * {@linkplain com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#taskQueueLimit(int,
+		 * QueueOverflowPolicy, com.nostra13.universalimageloader.core.listener.TaskShedListener) Task queue} is full
+		 */
+		QUEUE_FULL,
+		/**
+		 * Deadline of loading ({@linkplain com.nostra13.universalimageloader.core.DisplayImageOptions#getDeadline() from
+		 * options} or engine-wide one) expired before image was loaded
+		 */
+		DEADLINE_EXPIRED,
 		/** Unknown error was occurred while loading image */
 		UNKNOWN
 	}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.assist;
+
+/**
+ * Policy which is applied when task queue is full and new display task is submitted
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public enum QueueOverflowPolicy {
+	/** The oldest queued task is removed, its listener gets cancel event */
+	DROP_OLDEST,
+	/**
+	 * Task with the lowest {@linkplain com.nostra13.universalimageloader.core.DisplayImageOptions#getPriority()
+	 * priority} (the oldest one among equal) is shed. It can be submitted task itself if all queued tasks have higher
+	 * priority.
+	 */
+	DROP_LOWEST_PRIORITY,
+	/** Submitted task is rejected, its listener gets fail event with {@link FailReason.FailType#QUEUE_FULL} */
+	REJECT
+}
@@ -17,8 +17,16 @@ package com.nostra13.universalimageloader.core.assist;
  * 
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @since 1.6.3<br>
- *        线程队列类型,目前只有 FIFO, LIFO
+ *        线程队列类型,目前有 FIFO, LIFO, LOCK_FREE_LIFO
  */
 public enum QueueProcessingType {
-    FIFO, LIFO
+    FIFO, LIFO,
+    /**
+     * LIFO processing using lock-free queue
+     * ({@link com.nostra13.universalimageloader.core.assist.deque.LockFreeLIFOBlockingQueue}). Submitting thread and
+     * worker threads don't contend for one lock.
+     * 
+     * @since 1.9.3
+     */
+    LOCK_FREE_LIFO
 }
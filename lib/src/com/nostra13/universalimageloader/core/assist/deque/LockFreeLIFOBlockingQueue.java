@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.assist.deque;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded LIFO {@link BlockingQueue} without global lock. Elements are kept in lock-free (Treiber) stack: producers
+ * and consumers only do CAS on stack top, so submitting thread doesn't contend with workers for one lock as it does in
+ * {@link LIFOLinkedBlockingDeque}. Waiting consumers are blocked on {@link Semaphore} of available elements.<br />
+ * <br />
+ * Element removed from the middle ({@link #remove(Object)}) is marked as removed and unlinked when it reaches stack top.
+ * Iterator is weakly consistent, it iterates snapshot of elements.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class LockFreeLIFOBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	private static final class Node<E> {
+		@SuppressWarnings("rawtypes")
+		static final AtomicReferenceFieldUpdater<Node, Object> ITEM_UPDATER = AtomicReferenceFieldUpdater
+				.newUpdater(Node.class, Object.class, "item");
+
+		volatile E item;
+		final Node<E> next;
+
+		Node(E item, Node<E> next) {
+			this.item = item;
+			this.next = next;
+		}
+
+		/** Takes item from node. Only one thread can take item (either consumer or remover). */
+		boolean claim(E expected) {
+			return expected != null && ITEM_UPDATER.compareAndSet(this, expected, null);
+		}
+	}
+
+	private final AtomicReference<Node<E>> top = new AtomicReference<Node<E>>();
+	/** Number of elements in stack which aren't taken yet */
+	private final AtomicInteger count = new AtomicInteger();
+	/** Permits for consumers; there is not more permits than elements */
+	private final Semaphore available = new Semaphore(0);
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null) throw new NullPointerException();
+
+		Node<E> oldTop;
+		Node<E> newTop;
+		do {
+			oldTop = top.get();
+			newTop = new Node<E>(e, oldTop);
+		} while (!top.compareAndSet(oldTop, newTop));
+		count.incrementAndGet();
+		available.release();
+		return true;
+	}
+
+	@Override
+	public void put(E e) {
+		offer(e);
+	}
+
+	@Override
+	public boolean offer(E e, long timeout, TimeUnit unit) {
+		return offer(e);
+	}
+
+	@Override
+	public E poll() {
+		while (available.tryAcquire()) {
+			E e = popItem();
+			if (e != null) return e;
+			// element of permit was removed by remove(Object), try next permit
+		}
+		return null;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		while (true) {
+			available.acquire();
+			E e = popItem();
+			if (e != null) return e;
+		}
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			long remaining = deadline - System.nanoTime();
+			if (!available.tryAcquire(Math.max(remaining, 0), TimeUnit.NANOSECONDS)) return null;
+			E e = popItem();
+			if (e != null) return e;
+		}
+	}
+
+	/** Pops nodes from top until not removed item is taken. Returns <b>null</b> if stack is empty. */
+	private E popItem() {
+		while (true) {
+			Node<E> oldTop = top.get();
+			if (oldTop == null) return null;
+			if (top.compareAndSet(oldTop, oldTop.next)) {
+				E e = oldTop.item;
+				if (oldTop.claim(e)) {
+					count.decrementAndGet();
+					return e;
+				}
+			}
+		}
+	}
+
+	@Override
+	public E peek() {
+		for (Node<E> node = top.get(); node != null; node = node.next) {
+			E e = node.item;
+			if (e != null) return e;
+		}
+		return null;
+	}
+
+	/** Marks element as removed. Takes permit of element so consumers don't wait for it. */
+	@Override
+	public boolean remove(Object o) {
+		if (o == null) return false;
+		for (Node<E> node = top.get(); node != null; node = node.next) {
+			E e = node.item;
+			if (o.equals(e) && node.claim(e)) {
+				count.decrementAndGet();
+				// If permit was taken already then its consumer will find no element and will wait for next permit
+				available.tryAcquire();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return Math.max(count.get(), 0);
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null) throw new NullPointerException();
+		if (c == this) throw new IllegalArgumentException();
+
+		int n = 0;
+		E e;
+		while (n < maxElements && (e = poll()) != null) {
+			c.add(e);
+			n++;
+		}
+		return n;
+	}
+
+	/** Returns weakly consistent iterator over snapshot of elements, from the most recent one */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<E>();
+		for (Node<E> node = top.get(); node != null; node = node.next) {
+			E e = node.item;
+			if (e != null) {
+				snapshot.add(e);
+			}
+		}
+		final Iterator<E> it = snapshot.iterator();
+		return new Iterator<E>() {
+			private E last;
+
+			@Override
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			@Override
+			public E next() {
+				last = it.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) throw new IllegalStateException();
+				LockFreeLIFOBlockingQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+}
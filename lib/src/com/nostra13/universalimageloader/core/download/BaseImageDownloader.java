@@ -23,7 +23,9 @@ import android.os.Build;
 import android.provider.ContactsContract;
 import android.provider.MediaStore;
 import android.webkit.MimeTypeMap;
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
 import com.nostra13.universalimageloader.core.DisplayImageOptions;
+import com.nostra13.universalimageloader.core.assist.AbortableInputStream;
 import com.nostra13.universalimageloader.core.assist.ContentLengthInputStream;
 import com.nostra13.universalimageloader.utils.IoUtils;
 
@@ -41,12 +43,13 @@ import java.net.URLConnection;
 
 /**
  * Provides retrieving of {@link InputStream} of image by URI from network or file system or app resources.<br />
- * {@link URLConnection} is used to retrieve image stream from network.
+ * {@link URLConnection} is used to retrieve image stream from network. Network requests can be
+ * {@linkplain ConditionalImageDownloader conditional} (<b>If-None-Match</b>, <b>If-Modified-Since</b>).
  * 
  * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
  * @since 1.8.0
  */
-public class BaseImageDownloader implements ImageDownloader {
+public class BaseImageDownloader implements ConditionalImageDownloader {
     /** 默认HTTP连接时间 */
     public static final int DEFAULT_HTTP_CONNECT_TIMEOUT = 5 * 1000; // milliseconds
     /** {@value} */
@@ -99,6 +102,28 @@ public class BaseImageDownloader implements ImageDownloader {
         }
     }
 
+    /**
+     * {@inheritDoc} Only requests which {@linkplain ConditionalRequest#isConditional() have validators} go to
+     * {@link #getStreamFromNetwork(String, Object, ConditionalRequest)}, others are retrieved by
+     * {@link #getStream(String, Object)}.
+     */
+    @Override
+    public InputStream getStream(String imageUri, Object extra, ConditionalRequest request) throws IOException {
+        Scheme scheme = Scheme.ofUri(imageUri);
+        if ((scheme == Scheme.HTTP || scheme == Scheme.HTTPS) && request != null && request.isConditional()) {
+            return getStreamFromNetwork(imageUri, extra, request);
+        }
+        return getStream(imageUri, extra);
+    }
+
+    @Override
+    public CacheValidators getValidators(InputStream imageStream) {
+        if (imageStream instanceof ValidatedInputStream) {
+            return ((ValidatedInputStream) imageStream).validators;
+        }
+        return null;
+    }
+
     /**
      * Retrieves {@link InputStream} of image by URI (image is located in the network).
      * 
@@ -107,33 +132,108 @@ public class BaseImageDownloader implements ImageDownloader {
      * @param extra
      *            Auxiliary object which was passed to {@link DisplayImageOptions.Builder#extraForDownloader(Object)
      *            DisplayImageOptions.extraForDownloader(Object)}; can be null
-     * @return {@link InputStream} of image
+     * @return {@linkplain AbortableInputStream Abortable} {@link InputStream} of image
      * @throws IOException
      *             if some I/O error occurs during network request or if no InputStream could be created for URL.
+     *             {@link HttpStatusException} if server responded with error status code.
      */
     protected InputStream getStreamFromNetwork(String imageUri, Object extra) throws IOException {
-        HttpURLConnection conn = createConnection(imageUri, extra);
+        return openNetworkStream(imageUri, extra, null);
+    }
+
+    /**
+     * Retrieves {@link InputStream} of image by URI (image is located in the network) using conditional request.
+     * Called only for requests which {@linkplain ConditionalRequest#isConditional() have validators}. Subclasses
+     * which override {@link #getStreamFromNetwork(String, Object)} should override this method too to support
+     * conditional requests, otherwise cached images are revalidated by {@link #getStreamFromNetwork(String, Object)}
+     * as usual.
+     * 
+     * @param imageUri
+     *            Image URI
+     * @param extra
+     *            Auxiliary object which was passed to {@link DisplayImageOptions.Builder#extraForDownloader(Object)
+     *            DisplayImageOptions.extraForDownloader(Object)}; can be null
+     * @param request
+     *            Validators of cached image and receiver of response validators
+     * @return {@linkplain AbortableInputStream Abortable} {@link InputStream} of image
+     * @throws IOException
+     *             if some I/O error occurs during network request or if no InputStream could be created for URL.
+     *             {@link HttpStatusException} if server responded with error status code or if image wasn't modified.
+     */
+    protected InputStream getStreamFromNetwork(String imageUri, Object extra, ConditionalRequest request)
+            throws IOException {
+        return openNetworkStream(imageUri, extra, request);
+    }
+
+    private InputStream openNetworkStream(String imageUri, Object extra, ConditionalRequest request)
+            throws IOException {
+        HttpURLConnection conn = createConditionalConnection(imageUri, extra, request);
 
         int redirectCount = 0;
-        while (conn.getResponseCode() / 100 == 3 && redirectCount < MAX_REDIRECT_COUNT) {
-            conn = createConnection(conn.getHeaderField("Location"), extra);
+        while (isRedirect(conn.getResponseCode()) && redirectCount < MAX_REDIRECT_COUNT) {
+            conn = createConditionalConnection(conn.getHeaderField("Location"), extra, request);
             redirectCount++;
         }
 
+        CacheValidators validators = getValidators(conn);
+        if (request != null) {
+            request.setResponseValidators(validators);
+        }
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            IoUtils.readAndCloseStream(conn.getInputStream());
+            throw new HttpStatusException(HttpURLConnection.HTTP_NOT_MODIFIED);
+        }
+
         InputStream imageStream;
         try {
             imageStream = conn.getInputStream();
         } catch (IOException e) {
             // Read all data to allow reuse connection (http://bit.ly/1ad35PY)
             IoUtils.readAndCloseStream(conn.getErrorStream());
+            int responseCode = conn.getResponseCode();
+            if (responseCode >= 400) {
+                throw new HttpStatusException(responseCode);
+            }
             throw e;
         }
         if (!shouldBeProcessed(conn)) {
             IoUtils.closeSilently(imageStream);
-            throw new IOException("Image request failed with response code " + conn.getResponseCode());
+            throw new HttpStatusException(conn.getResponseCode());
+        }
+
+        InputStream stream = new ContentLengthInputStream(new BufferedInputStream(imageStream, BUFFER_SIZE),
+                conn.getContentLength());
+        return new ValidatedInputStream(stream, conn, validators); // allows to cancel blocked reading
+    }
+
+    private HttpURLConnection createConditionalConnection(String url, Object extra, ConditionalRequest request)
+            throws IOException {
+        HttpURLConnection conn = createConnection(url, extra);
+        if (request != null && request.isConditional()) {
+            CacheValidators validators = request.getCachedValidators();
+            if (validators.getETag() != null) {
+                conn.setRequestProperty("If-None-Match", validators.getETag());
+            }
+            if (validators.getLastModified() != null) {
+                conn.setRequestProperty("If-Modified-Since", validators.getLastModified());
+            }
         }
+        return conn;
+    }
+
+    private static boolean isRedirect(int responseCode) {
+        return responseCode / 100 == 3 && responseCode != HttpURLConnection.HTTP_NOT_MODIFIED;
+    }
 
-        return new ContentLengthInputStream(new BufferedInputStream(imageStream, BUFFER_SIZE), conn.getContentLength());
+    /**
+     * @param conn
+     *            Opened request connection (response code is available)
+     * @return {@linkplain CacheValidators Validators} of response or <b>null</b> if response doesn't have them
+     */
+    protected CacheValidators getValidators(HttpURLConnection conn) {
+        CacheValidators validators = new CacheValidators(conn.getHeaderField("ETag"),
+                conn.getHeaderField("Last-Modified"));
+        return validators.isEmpty() ? null : validators;
     }
 
     /**
@@ -313,4 +413,14 @@ public class BaseImageDownloader implements ImageDownloader {
         String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
         return mimeType != null && mimeType.startsWith("video/");
     }
+
+    /** Network stream which keeps validators of response */
+    private static class ValidatedInputStream extends AbortableInputStream {
+        final CacheValidators validators;
+
+        ValidatedInputStream(InputStream stream, HttpURLConnection conn, CacheValidators validators) {
+            super(stream, conn);
+            this.validators = validators;
+        }
+    }
 }
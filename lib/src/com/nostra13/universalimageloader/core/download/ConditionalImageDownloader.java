@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.download;
+
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link ImageDownloader} which can issue conditional requests: image is downloaded only if it was modified since it
+ * was cached with passed {@linkplain CacheValidators validators}.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see com.nostra13.universalimageloader.cache.disc.RevalidatingDiskCache
+ * @since 1.9.3
+ */
+public interface ConditionalImageDownloader extends ImageDownloader {
+	/**
+	 * Retrieves {@link InputStream} of image by URI. If request has {@linkplain ConditionalRequest#getCachedValidators()
+	 * cached validators} then image is requested only if it was modified. Validators of response are passed to
+	 * {@link ConditionalRequest#setResponseValidators(CacheValidators)}.
+	 *
+	 * @param imageUri Image URI
+	 * @param extra    Auxiliary object which was passed to
+	 *                 {@link com.nostra13.universalimageloader.core.DisplayImageOptions.Builder#extraForDownloader(Object)
+	 *                 DisplayImageOptions.extraForDownloader(Object)}; can be null
+	 * @param request  Validators of cached image and receiver of response validators
+	 * @return {@link InputStream} of image
+	 * @throws IOException {@link HttpStatusException} with {@linkplain HttpStatusException#isNotModified() "Not
+	 *                     Modified" status} if image wasn't modified
+	 */
+	InputStream getStream(String imageUri, Object extra, ConditionalRequest request) throws IOException;
+
+	/**
+	 * Returns validators of response which stream was retrieved by {@link #getStream(String, Object)}. So validators
+	 * of image can be cached without making request conditional.
+	 *
+	 * @param imageStream Stream of image returned by this downloader
+	 * @return {@linkplain CacheValidators Validators} of response or <b>null</b> if they are unknown
+	 */
+	CacheValidators getValidators(InputStream imageStream);
+}
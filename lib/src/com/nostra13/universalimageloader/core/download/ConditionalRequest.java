@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.download;
+
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
+
+/**
+ * Validators of cached image for {@linkplain ConditionalImageDownloader conditional request} and validators received in
+ * response.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public final class ConditionalRequest {
+
+	private final CacheValidators cachedValidators;
+	private volatile CacheValidators responseValidators;
+
+	/** @param cachedValidators Validators of cached image; null - request is unconditional */
+	public ConditionalRequest(CacheValidators cachedValidators) {
+		this.cachedValidators = cachedValidators;
+	}
+
+	/** @return Validators of cached image or <b>null</b> if request is unconditional */
+	public CacheValidators getCachedValidators() {
+		return cachedValidators;
+	}
+
+	/** @return <b>true</b> - if image should be requested only if it was modified; <b>false</b> - otherwise */
+	public boolean isConditional() {
+		return cachedValidators != null && !cachedValidators.isEmpty();
+	}
+
+	/** @return Validators of response or <b>null</b> if response didn't have them */
+	public CacheValidators getResponseValidators() {
+		return responseValidators;
+	}
+
+	public void setResponseValidators(CacheValidators responseValidators) {
+		this.responseValidators = responseValidators;
+	}
+}
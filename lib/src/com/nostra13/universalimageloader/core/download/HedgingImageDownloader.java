@@ -0,0 +1,376 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.download;
+
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
+import com.nostra13.universalimageloader.core.DefaultConfigurationFactory;
+import com.nostra13.universalimageloader.core.ImageLoaderConfiguration;
+import com.nostra13.universalimageloader.core.assist.AbortableInputStream;
+import com.nostra13.universalimageloader.utils.IoUtils;
+import com.nostra13.universalimageloader.utils.L;
+import com.nostra13.universalimageloader.utils.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator of {@link ImageDownloader} which hedges slow network requests. If response (connection and response
+ * headers) takes longer than defined percentile of response latency observed for its host then second request for the
+ * same image is issued. Live stream of request which responds first is returned, the other request is aborted. Share
+ * of hedged requests is limited.<br />
+ * Requests of hedged downloads run on small pool of threads, so caller gets stream of winner even if the other request
+ * is still connecting. {@linkplain ConditionalImageDownloader Conditional requests} are passed to wrapped downloader
+ * if it supports them; validators of winning response are reported.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#hedgeDownloads(int, float)
+ * @since 1.9.3
+ */
+public class HedgingImageDownloader implements ConditionalImageDownloader {
+
+	private static final String LOG_HEDGE_DOWNLOAD = "Response takes more than %d ms. Hedge request [%s]";
+	private static final String LOG_HEDGE_WON = "Hedged request responded first [%s]";
+
+	/** Number of latest response latencies which are kept per host */
+	private static final int LATENCY_HISTORY_SIZE = 64;
+	/** Downloads of host aren't hedged until this number of latencies is observed */
+	private static final int MIN_LATENCY_SAMPLES = 10;
+	/** Maximum number of threads which run requests of hedged downloads. If all are busy download isn't hedged. */
+	private static final int MAX_REQUEST_THREADS = 16;
+
+	private final ImageDownloader wrappedDownloader;
+	private final int latencyPercentile;
+	private final float maxHedgeRate;
+	private final int threadPriority;
+
+	private final Map<String, LatencyHistory> latencies = new HashMap<String, LatencyHistory>();
+	private final AtomicLong downloadCount = new AtomicLong();
+	private final AtomicLong hedgeCount = new AtomicLong();
+	private final AtomicLong hedgeWinCount = new AtomicLong();
+
+	/** Is created on first hedged download, idle threads exit. Guarded by this. */
+	private ExecutorService requestExecutor;
+
+	/**
+	 * @param wrappedDownloader Downloader which actually loads images
+	 * @param latencyPercentile Percentile (1..99) of observed response latency of host after which request is hedged
+	 * @param maxHedgeRate      Maximum share (0..1] of network downloads which can be hedged
+	 */
+	public HedgingImageDownloader(ImageDownloader wrappedDownloader, int latencyPercentile, float maxHedgeRate) {
+		this(wrappedDownloader, latencyPercentile, maxHedgeRate,
+				ImageLoaderConfiguration.Builder.DEFAULT_THREAD_PRIORITY);
+	}
+
+	/**
+	 * @param wrappedDownloader Downloader which actually loads images
+	 * @param latencyPercentile Percentile (1..99) of observed response latency of host after which request is hedged
+	 * @param maxHedgeRate      Maximum share (0..1] of network downloads which can be hedged
+	 * @param threadPriority    Priority of threads which run requests of hedged downloads
+	 */
+	public HedgingImageDownloader(ImageDownloader wrappedDownloader, int latencyPercentile, float maxHedgeRate,
+			int threadPriority) {
+		if (wrappedDownloader == null) {
+			throw new IllegalArgumentException("wrappedDownloader must not be null");
+		}
+		if (latencyPercentile < 1 || latencyPercentile > 99) {
+			throw new IllegalArgumentException("latencyPercentile must be in range 1..99");
+		}
+		if (maxHedgeRate <= 0 || maxHedgeRate > 1) {
+			throw new IllegalArgumentException("maxHedgeRate must be in range (0..1]");
+		}
+		this.wrappedDownloader = wrappedDownloader;
+		this.latencyPercentile = latencyPercentile;
+		this.maxHedgeRate = maxHedgeRate;
+		this.threadPriority = threadPriority;
+	}
+
+	@Override
+	public InputStream getStream(String imageUri, Object extra) throws IOException {
+		return getStream(imageUri, extra, null);
+	}
+
+	@Override
+	public InputStream getStream(String imageUri, Object extra, ConditionalRequest request) throws IOException {
+		Scheme scheme = Scheme.ofUri(imageUri);
+		if (scheme != Scheme.HTTP && scheme != Scheme.HTTPS) {
+			return openStream(imageUri, extra, request);
+		}
+
+		downloadCount.incrementAndGet();
+		String host = UriUtils.getHost(imageUri);
+		long hedgeDelay = getHedgeDelay(host);
+		if (hedgeDelay < 0) {
+			// Not enough statistics, request runs on caller thread
+			return openMeasuredStream(host, imageUri, extra, request);
+		}
+		return new HedgedDownload(imageUri, extra, request, host).run(hedgeDelay);
+	}
+
+	/** Returns number of network downloads which went through this downloader */
+	public long getDownloadCount() {
+		return downloadCount.get();
+	}
+
+	/** Returns number of downloads which were hedged */
+	public long getHedgeCount() {
+		return hedgeCount.get();
+	}
+
+	/** Returns number of hedged downloads where second request responded first */
+	public long getHedgeWinCount() {
+		return hedgeWinCount.get();
+	}
+
+	@Override
+	public CacheValidators getValidators(InputStream imageStream) {
+		if (wrappedDownloader instanceof ConditionalImageDownloader) {
+			return ((ConditionalImageDownloader) wrappedDownloader).getValidators(imageStream);
+		}
+		return null;
+	}
+
+	private InputStream openStream(String imageUri, Object extra, ConditionalRequest request) throws IOException {
+		if (request != null && wrappedDownloader instanceof ConditionalImageDownloader) {
+			return ((ConditionalImageDownloader) wrappedDownloader).getStream(imageUri, extra, request);
+		}
+		return wrappedDownloader.getStream(imageUri, extra);
+	}
+
+	/** Opens stream and records latency of response */
+	private InputStream openMeasuredStream(String host, String imageUri, Object extra, ConditionalRequest request)
+			throws IOException {
+		long start = System.currentTimeMillis();
+		InputStream stream = openStream(imageUri, extra, request);
+		recordLatency(host, System.currentTimeMillis() - start);
+		return stream;
+	}
+
+	/** Returns latency after which request to host is hedged or -1 if there is not enough statistics */
+	private long getHedgeDelay(String host) {
+		synchronized (latencies) {
+			LatencyHistory history = latencies.get(host);
+			return history == null ? -1 : history.getPercentile(latencyPercentile);
+		}
+	}
+
+	private void recordLatency(String host, long latency) {
+		synchronized (latencies) {
+			LatencyHistory history = latencies.get(host);
+			if (history == null) {
+				history = new LatencyHistory();
+				latencies.put(host, history);
+			}
+			history.add(latency);
+		}
+	}
+
+	/** Reserves hedge if hedge rate limit allows it */
+	private boolean tryAcquireHedge() {
+		long hedges;
+		do {
+			hedges = hedgeCount.get();
+			if (hedges + 1 > maxHedgeRate * downloadCount.get()) return false;
+		} while (!hedgeCount.compareAndSet(hedges, hedges + 1));
+		return true;
+	}
+
+	private synchronized ExecutorService getRequestExecutor() {
+		if (requestExecutor == null) {
+			requestExecutor = DefaultConfigurationFactory.createHedgeExecutor(MAX_REQUEST_THREADS, threadPriority);
+		}
+		return requestExecutor;
+	}
+
+	private static void abort(InputStream stream) {
+		if (stream instanceof AbortableInputStream) {
+			((AbortableInputStream) stream).abort();
+		} else {
+			IoUtils.closeSilently(stream);
+		}
+	}
+
+	/** Primary and optional hedged request for one image. Both run on request threads, caller waits for winner. */
+	private final class HedgedDownload {
+		private final String imageUri;
+		private final Object extra;
+		/** Request of caller, can be null. Every request gets its own copy so only winner reports validators. */
+		private final ConditionalRequest request;
+		private final String host;
+
+		// Guarded by this
+		private InputStream result;
+		private IOException error;
+		private int runningRequests;
+		private boolean abandoned;
+		/** Request threads which wait for response; are interrupted if caller abandons download */
+		private final Set<Thread> connectingThreads = new HashSet<Thread>();
+
+		HedgedDownload(String imageUri, Object extra, ConditionalRequest request, String host) {
+			this.imageUri = imageUri;
+			this.extra = extra;
+			this.request = request;
+			this.host = host;
+		}
+
+		InputStream run(long hedgeDelay) throws IOException {
+			if (!startRequest(true)) {
+				// All request threads are busy, download isn't hedged
+				return openMeasuredStream(host, imageUri, extra, request);
+			}
+
+			long hedgeTime = System.currentTimeMillis() + hedgeDelay;
+			boolean hedgeTried = false;
+			synchronized (this) {
+				try {
+					while (result == null && runningRequests > 0) {
+						long remaining = hedgeTime - System.currentTimeMillis();
+						if (hedgeTried) {
+							wait();
+						} else if (remaining > 0) {
+							wait(remaining);
+						} else {
+							hedgeTried = true;
+							if (tryAcquireHedge()) {
+								if (startRequest(false)) {
+									L.d(LOG_HEDGE_DOWNLOAD, hedgeDelay, imageUri);
+								} else {
+									hedgeCount.decrementAndGet();
+								}
+							}
+						}
+					}
+				} catch (InterruptedException e) {
+					abandoned = true;
+					for (Thread thread : connectingThreads) {
+						thread.interrupt(); // stops waiting of wrapped downloader
+					}
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+				if (result != null) return result;
+				throw error;
+			}
+		}
+
+		private boolean startRequest(final boolean primary) {
+			synchronized (this) {
+				runningRequests++;
+			}
+			try {
+				getRequestExecutor().execute(new Runnable() {
+					@Override
+					public void run() {
+						runRequest(primary);
+					}
+				});
+				return true;
+			} catch (RejectedExecutionException e) {
+				synchronized (this) {
+					runningRequests--;
+				}
+				return false;
+			}
+		}
+
+		private void runRequest(boolean primary) {
+			ConditionalRequest ownRequest = request == null ? null
+					: new ConditionalRequest(request.getCachedValidators());
+			InputStream stream = null;
+			IOException requestError = null;
+			synchronized (this) {
+				if (abandoned) {
+					runningRequests--;
+					return;
+				}
+				connectingThreads.add(Thread.currentThread());
+			}
+			try {
+				stream = openMeasuredStream(host, imageUri, extra, ownRequest);
+				if (stream == null) {
+					requestError = new IOException("No stream for image " + imageUri);
+				}
+			} catch (IOException e) {
+				requestError = e;
+			} catch (RuntimeException e) {
+				requestError = new IOException(e.getMessage());
+				requestError.initCause(e);
+			}
+
+			boolean won = false;
+			synchronized (this) {
+				connectingThreads.remove(Thread.currentThread());
+				Thread.interrupted(); // interruption was addressed to this request only, pool thread is reused
+				runningRequests--;
+				if (stream != null && result == null && !abandoned) {
+					won = true;
+					result = stream;
+					if (request != null) {
+						request.setResponseValidators(ownRequest.getResponseValidators());
+					}
+					if (!primary) {
+						hedgeWinCount.incrementAndGet();
+						L.d(LOG_HEDGE_WON, imageUri);
+					}
+				} else if (requestError != null && (primary || error == null)) {
+					// Error of primary request is reported if both requests fail
+					error = requestError;
+					if (request != null) {
+						request.setResponseValidators(ownRequest.getResponseValidators());
+					}
+				}
+				notifyAll();
+			}
+			if (stream != null && !won) {
+				abort(stream);
+			}
+		}
+	}
+
+	/** Ring buffer of latest response latencies of one host */
+	private static final class LatencyHistory {
+		private final long[] samples = new long[LATENCY_HISTORY_SIZE];
+		private int count;
+		private int next;
+
+		void add(long latency) {
+			samples[next] = latency;
+			next = (next + 1) % samples.length;
+			if (count < samples.length) {
+				count++;
+			}
+		}
+
+		/** @return Percentile of latencies or -1 if there are not enough samples */
+		long getPercentile(int percentile) {
+			if (count < MIN_LATENCY_SAMPLES) return -1;
+
+			long[] sorted = new long[count];
+			System.arraycopy(samples, 0, sorted, 0, count);
+			Arrays.sort(sorted);
+			int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+			return sorted[Math.max(0, index)];
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.download;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Is thrown by {@link ImageDownloader} when server responds with status code which doesn't allow to load image
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class HttpStatusException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int statusCode;
+
+	public HttpStatusException(int statusCode) {
+		super("Image request failed with response code " + statusCode);
+		this.statusCode = statusCode;
+	}
+
+	/** Returns HTTP status code of response */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/** @return <b>true</b> - if server confirmed cached image wasn't modified (304) */
+	public boolean isNotModified() {
+		return statusCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+	}
+
+	/** @return <b>true</b> - if status means temporary server problem (5xx, 408, 429) and request can be retried */
+	public boolean isTransient() {
+		return statusCode / 100 == 5 || statusCode == 408 || statusCode == 429;
+	}
+}
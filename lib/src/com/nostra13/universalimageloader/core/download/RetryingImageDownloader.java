@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.download;
+
+import com.nostra13.universalimageloader.cache.disc.CacheValidators;
+import com.nostra13.universalimageloader.utils.L;
+import com.nostra13.universalimageloader.utils.UriUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorator of {@link ImageDownloader} which retries network requests failed because of transient errors (timeouts,
+ * refused and reset connections, 5xx/408/429 responses) with exponential backoff and random jitter. Per-host circuit
+ * breaker stops requests to host after defined number of consecutive image requests failed with transient errors
+ * (every request counts once, after all its retries): requests fail fast with
+ * {@link CircuitOpenException} while circuit is open, then single trial request is allowed.<br />
+ * Only establishing of connection is retried, errors while reading image stream are passed to caller.
+ * {@linkplain ConditionalImageDownloader Conditional requests} are passed to wrapped downloader if it supports them.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#retryDownloads(int, int)
+ * @see com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#downloadCircuitBreaker(int, int)
+ * @since 1.9.3
+ */
+public class RetryingImageDownloader implements ConditionalImageDownloader {
+
+	private static final String LOG_RETRY = "Retry #%d of download in %d ms after %s [%s]";
+	private static final String LOG_CIRCUIT_OPENED = "Circuit of host %s is opened for %d ms";
+	private static final String LOG_CIRCUIT_CLOSED = "Circuit of host %s is closed";
+
+	/** Results of {@link #allowRequest(String)}; positive result is token of trial request */
+	private static final int REQUEST_DENIED = -1;
+	private static final int REQUEST_ALLOWED = 0;
+
+	/** Backoff delay doesn't grow beyond this value */
+	private static final int MAX_BACKOFF = 30 * 1000; // ms
+
+	/** State of host circuit breaker */
+	public enum CircuitState {
+		/** Requests to host are allowed */
+		CLOSED,
+		/** Host is unhealthy, requests fail fast */
+		OPEN,
+		/** Open period is over, single trial request is allowed */
+		HALF_OPEN
+	}
+
+	private final ImageDownloader wrappedDownloader;
+	private final int maxRetries;
+	private final int baseBackoff;
+	private final int failureThreshold;
+	private final int openDuration;
+
+	private final Map<String, CircuitBreaker> breakers = new HashMap<String, CircuitBreaker>();
+	private final Random random = new Random();
+	private final AtomicLong retryCount = new AtomicLong();
+	private final AtomicLong fastFailCount = new AtomicLong();
+
+	/**
+	 * @param wrappedDownloader Downloader which actually loads images
+	 * @param maxRetries        Maximum number of retries of one request; 0 - requests aren't retried
+	 * @param baseBackoffMillis Backoff before first retry; every next backoff is doubled. Actual delay is random value
+	 *                          between 0 and backoff.
+	 * @param failureThreshold  Number of consecutive image requests failed because of transient errors (after all
+	 *                          retries) after which circuit of host is opened; 0 - circuit breaker is disabled
+	 * @param openMillis        How long circuit stays open before trial request
+	 */
+	public RetryingImageDownloader(ImageDownloader wrappedDownloader, int maxRetries, int baseBackoffMillis,
+			int failureThreshold, int openMillis) {
+		if (wrappedDownloader == null) {
+			throw new IllegalArgumentException("wrappedDownloader must not be null");
+		}
+		if (maxRetries < 0 || baseBackoffMillis < 0 || failureThreshold < 0 || openMillis < 0) {
+			throw new IllegalArgumentException("Arguments must not be negative");
+		}
+		this.wrappedDownloader = wrappedDownloader;
+		this.maxRetries = maxRetries;
+		this.baseBackoff = baseBackoffMillis;
+		this.failureThreshold = failureThreshold;
+		this.openDuration = openMillis;
+	}
+
+	@Override
+	public InputStream getStream(String imageUri, Object extra) throws IOException {
+		return getStream(imageUri, extra, null);
+	}
+
+	@Override
+	public InputStream getStream(String imageUri, Object extra, ConditionalRequest request) throws IOException {
+		Scheme scheme = Scheme.ofUri(imageUri);
+		if (scheme != Scheme.HTTP && scheme != Scheme.HTTPS) {
+			return openStream(imageUri, extra, request);
+		}
+
+		String host = UriUtils.getHost(imageUri);
+		for (int attempt = 0; ; attempt++) {
+			int token = allowRequest(host);
+			if (token == REQUEST_DENIED) {
+				fastFailCount.incrementAndGet();
+				throw new CircuitOpenException(host);
+			}
+			boolean reported = false;
+			try {
+				InputStream stream = openStream(imageUri, extra, request);
+				reported = true;
+				onRequestSucceeded(host);
+				return stream;
+			} catch (IOException e) {
+				if (isInterruption(e)) throw e; // request was stopped by caller, host health is unknown
+				if (!isTransient(e)) {
+					reported = true;
+					onRequestSucceeded(host); // host responded
+					throw e;
+				}
+				if (attempt >= maxRetries || token != REQUEST_ALLOWED) {
+					// One failure per image request (not per attempt); failed trial isn't retried, circuit reopens
+					reported = true;
+					onRequestFailed(host, token);
+					throw e;
+				}
+
+				long backoff = getBackoff(attempt);
+				retryCount.incrementAndGet();
+				L.d(LOG_RETRY, attempt + 1, backoff, e.getClass().getSimpleName(), imageUri);
+				try {
+					Thread.sleep(backoff); // caller interrupts thread to stop waiting (cancel, deadline)
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				}
+			} finally {
+				if (!reported) {
+					onRequestAborted(host, token);
+				}
+			}
+		}
+	}
+
+	/** Returns number of retried requests */
+	public long getRetryCount() {
+		return retryCount.get();
+	}
+
+	/** Returns number of requests which failed fast because circuit of host was open */
+	public long getFastFailCount() {
+		return fastFailCount.get();
+	}
+
+	/** Returns current circuit states of hosts which were requested */
+	public Map<String, CircuitState> getCircuitStates() {
+		Map<String, CircuitState> states = new HashMap<String, CircuitState>();
+		long now = System.currentTimeMillis();
+		synchronized (breakers) {
+			for (Map.Entry<String, CircuitBreaker> entry : breakers.entrySet()) {
+				states.put(entry.getKey(), entry.getValue().getState(now));
+			}
+		}
+		return states;
+	}
+
+	/** @return <b>true</b> - if error is temporary and request can be retried; <b>false</b> - otherwise */
+	protected boolean isTransient(IOException e) {
+		if (e instanceof HttpStatusException) {
+			return ((HttpStatusException) e).isTransient();
+		}
+		// SocketException covers refused, reset and unreachable connections
+		return e instanceof SocketTimeoutException || e instanceof SocketException || e instanceof UnknownHostException;
+	}
+
+	private static boolean isInterruption(IOException e) {
+		return e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException);
+	}
+
+	@Override
+	public CacheValidators getValidators(InputStream imageStream) {
+		if (wrappedDownloader instanceof ConditionalImageDownloader) {
+			return ((ConditionalImageDownloader) wrappedDownloader).getValidators(imageStream);
+		}
+		return null;
+	}
+
+	private InputStream openStream(String imageUri, Object extra, ConditionalRequest request) throws IOException {
+		if (request != null && wrappedDownloader instanceof ConditionalImageDownloader) {
+			return ((ConditionalImageDownloader) wrappedDownloader).getStream(imageUri, extra, request);
+		}
+		return wrappedDownloader.getStream(imageUri, extra);
+	}
+
+	/** Returns random delay between 0 and exponential backoff of attempt ("full jitter") */
+	private long getBackoff(int attempt) {
+		long backoff = Math.min(MAX_BACKOFF, (long) baseBackoff << Math.min(attempt, 16));
+		synchronized (random) {
+			return (long) (random.nextDouble() * backoff);
+		}
+	}
+
+	/**
+	 * @return {@link #REQUEST_DENIED}, {@link #REQUEST_ALLOWED} or token of trial request (positive number) which is
+	 *         passed to methods reporting result of request
+	 */
+	private int allowRequest(String host) {
+		if (failureThreshold == 0) return REQUEST_ALLOWED;
+		synchronized (breakers) {
+			CircuitBreaker breaker = breakers.get(host);
+			return breaker == null ? REQUEST_ALLOWED : breaker.allowRequest(System.currentTimeMillis());
+		}
+	}
+
+	private void onRequestSucceeded(String host) {
+		if (failureThreshold == 0) return;
+		synchronized (breakers) {
+			CircuitBreaker breaker = breakers.get(host);
+			if (breaker != null && breaker.onSuccess()) {
+				L.d(LOG_CIRCUIT_CLOSED, host);
+			}
+		}
+	}
+
+	/** Is called when request ended without result (interrupted or unexpected error), so trial can be made again */
+	private void onRequestAborted(String host, int token) {
+		if (failureThreshold == 0) return;
+		synchronized (breakers) {
+			CircuitBreaker breaker = breakers.get(host);
+			if (breaker != null) {
+				breaker.onTrialEnded(token);
+			}
+		}
+	}
+
+	private void onRequestFailed(String host, int token) {
+		if (failureThreshold == 0) return;
+		synchronized (breakers) {
+			CircuitBreaker breaker = breakers.get(host);
+			if (breaker == null) {
+				breaker = new CircuitBreaker();
+				breakers.put(host, breaker);
+			}
+			if (breaker.onFailure(token, System.currentTimeMillis())) {
+				L.w(LOG_CIRCUIT_OPENED, host, openDuration);
+			}
+		}
+	}
+
+	/** Circuit breaker of one host. Is guarded by breakers map. */
+	private final class CircuitBreaker {
+		private int consecutiveFailures;
+		private long openUntil;
+		/** Token of running trial request or 0 if trial isn't running */
+		private int trialToken;
+		private int lastTrialToken;
+
+		CircuitState getState(long now) {
+			if (consecutiveFailures < failureThreshold) return CircuitState.CLOSED;
+			return now < openUntil || trialToken != 0 ? CircuitState.OPEN : CircuitState.HALF_OPEN;
+		}
+
+		int allowRequest(long now) {
+			switch (getState(now)) {
+				case CLOSED:
+					return REQUEST_ALLOWED;
+				case HALF_OPEN:
+					lastTrialToken = lastTrialToken == Integer.MAX_VALUE ? 1 : lastTrialToken + 1;
+					trialToken = lastTrialToken;
+					return trialToken;
+				default:
+					return REQUEST_DENIED;
+			}
+		}
+
+		/** @return <b>true</b> - if circuit was closed by this success */
+		boolean onSuccess() {
+			boolean wasOpen = consecutiveFailures >= failureThreshold;
+			consecutiveFailures = 0;
+			trialToken = 0; // circuit is closed, running trial doesn't matter anymore
+			return wasOpen;
+		}
+
+		/** Ends trial if request with passed token is running trial. Other requests don't affect trial. */
+		void onTrialEnded(int token) {
+			if (token != REQUEST_ALLOWED && token == trialToken) {
+				trialToken = 0;
+			}
+		}
+
+		/** @return <b>true</b> - if circuit was opened by this failure */
+		boolean onFailure(int token, long now) {
+			consecutiveFailures++;
+			onTrialEnded(token);
+			if (consecutiveFailures >= failureThreshold) {
+				openUntil = now + openDuration;
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Is thrown when request fails fast because host is considered unhealthy
+	 *
+	 * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+	 * @since 1.9.3
+	 */
+	public static class CircuitOpenException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public CircuitOpenException(String host) {
+			super("Circuit of host " + host + " is open, request isn't sent");
+		}
+	}
+}
@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.listener;
+
+import android.os.SystemClock;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+import android.widget.GridView;
+import android.widget.ListView;
+import com.nostra13.universalimageloader.core.ImageLoader;
+import com.nostra13.universalimageloader.core.PrefetchGroup;
+import com.nostra13.universalimageloader.core.assist.ImageSize;
+import com.nostra13.universalimageloader.core.assist.PrefetchLevel;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listener-helper for {@linkplain AbsListView list views} ({@link ListView}, {@link GridView}) which
+ * {@linkplain ImageLoader#prefetch prefetches} images of items which are about to be shown. Scroll direction and
+ * velocity define window of adapter positions ahead of visible items: the faster list scrolls the more items are
+ * prefetched (up to defined maximum). Prefetches of items which left this window (e.g. scrolled far behind after
+ * direction change) are cancelled.<br />
+ * Unlike {@link PauseOnScrollListener} it doesn't pause ImageLoader, but it can wrap it as custom listener.<br />
+ * Set it to your list view's {@link AbsListView#setOnScrollListener(OnScrollListener) setOnScrollListener(...)}.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see PreloadUriProvider
+ * @since 1.9.3
+ */
+public class PreloadOnScrollListener implements OnScrollListener {
+
+	/** Time of scrolling (at current velocity) which preload window should cover */
+	private static final int LOOKAHEAD_TIME = 1000; // ms
+	/** Velocity is measured anew if list wasn't scrolled for this time */
+	private static final int VELOCITY_RESET_TIME = 500; // ms
+	/** Weight of previous velocity in smoothed velocity */
+	private static final float VELOCITY_SMOOTHING = 0.5f;
+
+	private final ImageLoader imageLoader;
+	private final PreloadUriProvider uriProvider;
+	private final ImageSize targetSize;
+	private final PrefetchLevel level;
+	private final int maxPreloadItems;
+	private final OnScrollListener externalListener;
+
+	/** Prefetch groups of preloaded positions, is accessed on UI thread only */
+	private final Map<Integer, PrefetchGroup> preloadGroups = new HashMap<Integer, PrefetchGroup>();
+
+	private int lastFirstVisibleItem = -1;
+	private long lastScrollTime;
+	/** Scroll velocity in items per millisecond, always non-negative */
+	private float velocity;
+	private boolean scrollingForward = true;
+
+	/**
+	 * Constructor. Images are prefetched into disk cache only.
+	 *
+	 * @param imageLoader     {@linkplain ImageLoader} instance for prefetching
+	 * @param uriProvider     Provider of image URIs for adapter positions
+	 * @param maxPreloadItems Maximum number of items ahead of visible items which are preloaded
+	 */
+	public PreloadOnScrollListener(ImageLoader imageLoader, PreloadUriProvider uriProvider, int maxPreloadItems) {
+		this(imageLoader, uriProvider, null, PrefetchLevel.DISK_ONLY, maxPreloadItems, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param imageLoader     {@linkplain ImageLoader} instance for prefetching
+	 * @param uriProvider     Provider of image URIs for adapter positions
+	 * @param targetSize      Size of item images, is used if images are prefetched into memory cache. Can be
+	 *                        <b>null</b>.
+	 * @param level           Defines whether images are prefetched into disk cache only or also into memory cache
+	 * @param maxPreloadItems Maximum number of items ahead of visible items which are preloaded
+	 * @param customListener  Your custom {@link OnScrollListener} for {@linkplain AbsListView list view} which also
+	 *                        will be get scroll events
+	 */
+	public PreloadOnScrollListener(ImageLoader imageLoader, PreloadUriProvider uriProvider, ImageSize targetSize,
+			PrefetchLevel level, int maxPreloadItems, OnScrollListener customListener) {
+		if (imageLoader == null || uriProvider == null || level == null) {
+			throw new IllegalArgumentException("imageLoader, uriProvider and level must not be null");
+		}
+		if (maxPreloadItems <= 0) {
+			throw new IllegalArgumentException("maxPreloadItems must be positive");
+		}
+		this.imageLoader = imageLoader;
+		this.uriProvider = uriProvider;
+		this.targetSize = targetSize;
+		this.level = level;
+		this.maxPreloadItems = maxPreloadItems;
+		externalListener = customListener;
+	}
+
+	@Override
+	public void onScrollStateChanged(AbsListView view, int scrollState) {
+		if (scrollState == OnScrollListener.SCROLL_STATE_IDLE) {
+			velocity = 0;
+		}
+		if (externalListener != null) {
+			externalListener.onScrollStateChanged(view, scrollState);
+		}
+	}
+
+	@Override
+	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		if (visibleItemCount > 0 && firstVisibleItem != lastFirstVisibleItem) {
+			updateVelocity(firstVisibleItem);
+			preload(firstVisibleItem, visibleItemCount, totalItemCount);
+		}
+		if (externalListener != null) {
+			externalListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+		}
+	}
+
+	/** Cancels all preloads which aren't finished yet */
+	public void cancelPreloads() {
+		for (PrefetchGroup group : preloadGroups.values()) {
+			group.cancel();
+		}
+		preloadGroups.clear();
+	}
+
+	private void updateVelocity(int firstVisibleItem) {
+		long now = SystemClock.uptimeMillis();
+		if (lastFirstVisibleItem >= 0) {
+			int delta = firstVisibleItem - lastFirstVisibleItem;
+			long elapsed = now - lastScrollTime;
+			float currentVelocity = elapsed > 0 ? (float) Math.abs(delta) / elapsed : 0;
+			if (elapsed > VELOCITY_RESET_TIME || (delta > 0) != scrollingForward) {
+				velocity = currentVelocity;
+			} else {
+				velocity = velocity * VELOCITY_SMOOTHING + currentVelocity * (1 - VELOCITY_SMOOTHING);
+			}
+			scrollingForward = delta > 0;
+		}
+		lastFirstVisibleItem = firstVisibleItem;
+		lastScrollTime = now;
+	}
+
+	private void preload(int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+		int lastVisibleItem = firstVisibleItem + visibleItemCount - 1;
+		int window = Math.max(visibleItemCount, Math.round(velocity * LOOKAHEAD_TIME));
+		window = Math.min(window, maxPreloadItems);
+
+		int start;
+		int end;
+		if (scrollingForward) {
+			start = lastVisibleItem + 1;
+			end = Math.min(totalItemCount - 1, lastVisibleItem + window);
+		} else {
+			start = Math.max(0, firstVisibleItem - window);
+			end = firstVisibleItem - 1;
+		}
+
+		// Keep preloads of visible items and of preload window with one screen margin, cancel the others
+		int keepStart = Math.min(start, firstVisibleItem) - visibleItemCount;
+		int keepEnd = Math.max(end, lastVisibleItem) + visibleItemCount;
+		Iterator<Map.Entry<Integer, PrefetchGroup>> it = preloadGroups.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, PrefetchGroup> entry = it.next();
+			int position = entry.getKey();
+			PrefetchGroup group = entry.getValue();
+			if (position < keepStart || position > keepEnd) {
+				group.cancel();
+				it.remove();
+			} else if (group.isDone() && (position < start || position > end)) {
+				it.remove();
+			}
+		}
+
+		// Nearest items first, prefetch tasks are executed in order of submission
+		for (int i = 0; i <= end - start; i++) {
+			int position = scrollingForward ? start + i : end - i;
+			if (preloadGroups.containsKey(position)) continue;
+
+			List<String> uris = uriProvider.getPreloadUris(position);
+			if (uris != null && !uris.isEmpty()) {
+				preloadGroups.put(position, imageLoader.prefetch(uris, targetSize, level));
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.listener;
+
+import java.util.List;
+
+/**
+ * Supplies image URIs of adapter items for {@link PreloadOnScrollListener}. Is usually implemented by adapter.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public interface PreloadUriProvider {
+	/**
+	 * Is called on UI thread, should be fast.
+	 *
+	 * @param position Adapter position of item
+	 * @return URIs of images which item at <b>position</b> displays. Can be <b>null</b> or empty.
+	 */
+	List<String> getPreloadUris(int position);
+}
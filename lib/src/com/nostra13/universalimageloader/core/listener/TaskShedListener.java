@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.listener;
+
+import android.view.View;
+
+import com.nostra13.universalimageloader.core.assist.QueueOverflowPolicy;
+
+/**
+ * Listener for tasks which were shed because task queue was full.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @see com.nostra13.universalimageloader.core.ImageLoaderConfiguration.Builder#taskQueueLimit(int, QueueOverflowPolicy, TaskShedListener)
+ * @since 1.9.3
+ */
+public interface TaskShedListener {
+
+	/**
+	 * Is called when display task is removed from queue or isn't queued because queue is full. Is called on background
+	 * thread.
+	 *
+	 * @param imageUri Image URI of shed task
+	 * @param view     View for image. Can be <b>null</b>.
+	 * @param policy   Policy which shed the task
+	 */
+	void onTaskShed(String imageUri, View view, QueueOverflowPolicy policy);
+}
@@ -94,6 +94,9 @@ public final class IoUtils {
         if (listener != null) {
             boolean shouldContinue = listener.onBytesCopied(current, total);
             if (!shouldContinue) {
+                if (listener instanceof CancellableCopyListener && ((CancellableCopyListener) listener).isCancelled()) {
+                    return true; // explicitly cancelled, don't waste bandwidth for the rest of data
+                }
                 if (100 * current / total < CONTINUE_LOADING_PERCENTAGE) {
                     return true; // if loaded more than 75% then continue loading anyway
                 }
@@ -139,4 +142,15 @@ public final class IoUtils {
          */
         boolean onBytesCopied(int current, int total);
     }
+
+    /**
+     * Listener of copying progress which can be cancelled explicitly. Explicitly cancelled copying is stopped
+     * regardless of {@value #CONTINUE_LOADING_PERCENTAGE}% rule.
+     *
+     * @since 1.9.3
+     */
+    public static interface CancellableCopyListener extends CopyListener {
+        /** @return <b>true</b> - if copying was cancelled explicitly and should be stopped immediately */
+        boolean isCancelled();
+    }
 }
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.utils;
+
+import com.nostra13.universalimageloader.core.download.ImageDownloader.Scheme;
+
+import java.util.Locale;
+
+/**
+ * Utility for work with image URIs
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public final class UriUtils {
+
+	/** Host of non-network URIs */
+	public static final String NON_NETWORK_HOST = "";
+
+	private UriUtils() {
+	}
+
+	/** Returns host (with port) of network URI in lower case or {@link #NON_NETWORK_HOST} for other URIs */
+	public static String getHost(String uri) {
+		Scheme scheme = Scheme.ofUri(uri);
+		if (scheme != Scheme.HTTP && scheme != Scheme.HTTPS) return NON_NETWORK_HOST;
+
+		int start = uri.indexOf("://") + 3;
+		int end = start;
+		while (end < uri.length()) {
+			char c = uri.charAt(end);
+			if (c == '/' || c == '?' || c == '#') break;
+			end++;
+		}
+		return uri.substring(start, end).toLowerCase(Locale.US);
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package android.os;
+
+/**
+ * Shadows {@code SystemClock} of Android stub jar (test classes go first in classpath). Time is set by tests.
+ *
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public final class SystemClock {
+
+	private static volatile long uptimeMillis;
+
+	private SystemClock() {
+	}
+
+	public static long uptimeMillis() {
+		return uptimeMillis;
+	}
+
+	public static long elapsedRealtime() {
+		return uptimeMillis;
+	}
+
+	/** Sets current time; test method */
+	public static void setUptimeMillis(long uptimeMillis) {
+		SystemClock.uptimeMillis = uptimeMillis;
+	}
+
+	/** Moves current time forward; test method */
+	public static void advance(long millis) {
+		uptimeMillis += millis;
+	}
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.cache.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class MissRatioCurveTest {
+
+	private static final float DELTA = 1e-6f;
+
+	@Test
+	public void hitRatiosAreReturnedByMultiplier() {
+		MissRatioCurve curve = new MissRatioCurve(1024, 100, new float[]{0.1f, 0.4f, 0.7f, 0.9f});
+
+		assertEquals(1024, curve.getBudget());
+		assertEquals(100, curve.getRequestCount());
+		assertEquals(0.1f, curve.getHitRatio(0.5f), DELTA);
+		assertEquals(0.4f, curve.getHitRatio(1f), DELTA);
+		assertEquals(0.7f, curve.getHitRatio(2f), DELTA);
+		assertEquals(0.9f, curve.getHitRatio(4f), DELTA);
+		assertEquals(0.6f, curve.getMissRatio(1f), DELTA);
+	}
+
+	@Test
+	public void curveIsNotChangedByPassedArray() {
+		float[] hitRatios = {0.1f, 0.4f, 0.7f, 0.9f};
+		MissRatioCurve curve = new MissRatioCurve(1024, 100, hitRatios);
+		hitRatios[1] = 1f;
+
+		assertEquals(0.4f, curve.getHitRatio(1f), DELTA);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void hitRatioOfEveryMultiplierIsRequired() {
+		new MissRatioCurve(1024, 100, new float[]{0.1f, 0.4f});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unsupportedMultiplierIsRejected() {
+		new MissRatioCurve(1024, 100, new float[]{0.1f, 0.4f, 0.7f, 0.9f}).getHitRatio(3f);
+	}
+
+	@Test
+	public void toStringListsHitRatios() {
+		MissRatioCurve curve = new MissRatioCurve(1024, 100, new float[]{0.1f, 0.4f, 0.7f, 0.9f});
+		assertEquals("MissRatioCurve[budget=1024, requests=100, 0.5x=0.1, 1.0x=0.4, 2.0x=0.7, 4.0x=0.9]",
+				curve.toString());
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import android.os.SystemClock;
+
+import com.nostra13.universalimageloader.core.assist.FailReason;
+import com.nostra13.universalimageloader.core.assist.FailReason.FailType;
+import com.nostra13.universalimageloader.core.download.HttpStatusException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class FailedUriCacheTest {
+
+	private static final String URI = "http://a.com/1.jpg";
+
+	private FailedUriCache cache;
+
+	@Before
+	public void setUp() {
+		SystemClock.setUptimeMillis(1000);
+		Map<Integer, Long> statusTtls = new HashMap<Integer, Long>();
+		statusTtls.put(404, 60 * 1000L);
+		statusTtls.put(410, 10 * 60 * 1000L);
+		cache = new FailedUriCache(2, statusTtls, 5 * 1000L);
+	}
+
+	@Test
+	public void permanentStatusFailureIsCached() {
+		HttpStatusException cause = new HttpStatusException(404);
+		assertTrue(cache.put(URI, FailType.IO_ERROR, cause));
+
+		FailReason failReason = cache.get(URI);
+		assertNotNull(failReason);
+		assertEquals(FailType.IO_ERROR, failReason.getType());
+		assertSame(cause, failReason.getCause());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getStoredCount());
+	}
+
+	@Test
+	public void wrappedStatusFailureIsCached() {
+		IOException cause = new IOException("wrapper");
+		cause.initCause(new HttpStatusException(410));
+		assertTrue(cache.put(URI, FailType.IO_ERROR, cause));
+		assertNotNull(cache.get(URI));
+	}
+
+	@Test
+	public void transientFailuresAreNotCached() {
+		assertFalse(cache.put(URI, FailType.IO_ERROR, new HttpStatusException(503)));
+		assertFalse(cache.put(URI, FailType.IO_ERROR, new SocketTimeoutException()));
+		assertFalse(cache.put(URI, FailType.OUT_OF_MEMORY, new OutOfMemoryError()));
+		assertNull(cache.get(URI));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void entryExpiresAfterTtlOfStatus() {
+		cache.put(URI, FailType.IO_ERROR, new HttpStatusException(404));
+
+		SystemClock.advance(60 * 1000L - 1);
+		assertNotNull(cache.get(URI));
+		SystemClock.advance(1);
+		assertNull(cache.get(URI));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void decodingFailureExpiresAfterItsTtl() {
+		assertTrue(cache.put(URI, FailType.DECODING_ERROR, null));
+
+		SystemClock.advance(5 * 1000L);
+		assertNull(cache.get(URI));
+	}
+
+	@Test
+	public void decodingFailuresAreNotCachedIfTtlIsZero() {
+		FailedUriCache cache = new FailedUriCache(2, new HashMap<Integer, Long>(), 0);
+		assertFalse(cache.put(URI, FailType.DECODING_ERROR, null));
+	}
+
+	@Test
+	public void leastRecentlyUsedEntryIsEvicted() {
+		cache.put("http://a.com/1.jpg", FailType.IO_ERROR, new HttpStatusException(404));
+		cache.put("http://a.com/2.jpg", FailType.IO_ERROR, new HttpStatusException(404));
+		cache.get("http://a.com/1.jpg");
+		cache.put("http://a.com/3.jpg", FailType.IO_ERROR, new HttpStatusException(404));
+
+		assertEquals(2, cache.size());
+		assertNotNull(cache.get("http://a.com/1.jpg"));
+		assertNull(cache.get("http://a.com/2.jpg"));
+		assertNotNull(cache.get("http://a.com/3.jpg"));
+	}
+
+	@Test
+	public void invalidatedEntryIsRemoved() {
+		cache.put(URI, FailType.IO_ERROR, new HttpStatusException(404));
+
+		assertTrue(cache.invalidate(URI));
+		assertFalse(cache.invalidate(URI));
+		assertNull(cache.get(URI));
+	}
+}
@@ -0,0 +1,259 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core;
+
+import com.nostra13.universalimageloader.utils.L;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class PerHostTaskSchedulerTest {
+
+	private ManualExecutor executor;
+	private List<String> log;
+
+	@Before
+	public void setUp() {
+		L.writeLogs(false); // Android log isn't available
+		executor = new ManualExecutor();
+		log = new ArrayList<String>();
+	}
+
+	@After
+	public void tearDown() {
+		L.writeLogs(true);
+	}
+
+	@Test
+	public void runningTasksOfHostAreLimited() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 2, 10, false);
+		scheduler.submit("http://a.com/1.jpg", task("a1"));
+		scheduler.submit("http://a.com/2.jpg", task("a2"));
+		scheduler.submit("http://a.com/3.jpg", task("a3"));
+
+		assertEquals(2, executor.tasks.size());
+		assertEquals(Integer.valueOf(1), scheduler.getQueueDepthPerHost().get("a.com"));
+		assertEquals(Integer.valueOf(2), scheduler.getRunningPerHost().get("a.com"));
+
+		executor.runNext();
+		assertEquals(2, executor.tasks.size());
+		assertEquals(0, scheduler.getQueuedTaskCount());
+
+		executor.runAll();
+		assertEquals(Arrays.asList("a1", "a2", "a3"), log);
+		assertTrue(scheduler.getRunningPerHost().isEmpty());
+	}
+
+	@Test
+	public void slowHostDoesNotBlockOtherHosts() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 10, false);
+		scheduler.submit("http://slow.com/1.jpg", task("slow1"));
+		scheduler.submit("http://slow.com/2.jpg", task("slow2"));
+		scheduler.submit("http://fast.com/1.jpg", task("fast1"));
+
+		assertEquals(2, executor.tasks.size());
+		executor.runLast(); // fast1 finishes while slow1 is still running
+		assertEquals(Arrays.asList("fast1"), log);
+		assertEquals(1, executor.tasks.size());
+		assertEquals(1, scheduler.getQueuedTaskCount());
+	}
+
+	@Test
+	public void hostsAreServedInRoundRobinOrder() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 10, 1, false);
+		scheduler.submit("http://c.com/1.jpg", task("c1")); // occupies the only slot while other tasks are queued
+		scheduler.submit("http://a.com/1.jpg", task("a1"));
+		scheduler.submit("http://a.com/2.jpg", task("a2"));
+		scheduler.submit("http://a.com/3.jpg", task("a3"));
+		scheduler.submit("http://b.com/1.jpg", task("b1"));
+		scheduler.submit("http://b.com/2.jpg", task("b2"));
+
+		executor.runAll();
+		assertEquals(Arrays.asList("c1", "a1", "b1", "a2", "b2", "a3"), log);
+	}
+
+	@Test
+	public void lastSubmittedTaskOfHostIsDispatchedFirstInLifoMode() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 1, true);
+		scheduler.submit("http://a.com/1.jpg", task("a1"));
+		scheduler.submit("http://a.com/2.jpg", task("a2"));
+		scheduler.submit("http://a.com/3.jpg", task("a3"));
+
+		executor.runAll();
+		assertEquals(Arrays.asList("a1", "a3", "a2"), log);
+	}
+
+	@Test
+	public void nonNetworkTasksAreLimitedByTotalLimitOnly() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 3, false);
+		scheduler.submit("file:///sdcard/1.jpg", task("f1"));
+		scheduler.submit("assets://2.jpg", task("f2"));
+		scheduler.submit("drawable://3", task("f3"));
+		scheduler.submit("file:///sdcard/4.jpg", task("f4"));
+
+		assertEquals(3, executor.tasks.size());
+		assertEquals(1, scheduler.getQueuedTaskCount());
+	}
+
+	@Test
+	public void hostIncludesPortAndIgnoresCase() {
+		assertEquals("a.com:8080", PerHostTaskScheduler.getHost("http://A.com:8080/1.jpg"));
+		assertEquals("a.com", PerHostTaskScheduler.getHost("https://a.com?size=1"));
+		assertEquals("", PerHostTaskScheduler.getHost("file:///sdcard/1.jpg"));
+	}
+
+	@Test
+	public void removedQueuedTaskIsNotRun() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 10, false);
+		scheduler.submit("http://a.com/1.jpg", task("a1"));
+		Runnable a2 = task("a2");
+		scheduler.submit("http://a.com/2.jpg", a2);
+
+		assertTrue(scheduler.remove(a2));
+		assertFalse(scheduler.remove(a2));
+		executor.runAll();
+		assertEquals(Arrays.asList("a1"), log);
+	}
+
+	@Test
+	public void removedDispatchedTaskIsNotRunAndFreesSlot() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 10, false);
+		Runnable a1 = task("a1");
+		scheduler.submit("http://a.com/1.jpg", a1);
+		scheduler.submit("http://a.com/2.jpg", task("a2"));
+		assertEquals(1, executor.tasks.size());
+
+		assertTrue(scheduler.remove(a1)); // a1 waits in executor queue
+		assertEquals(2, executor.tasks.size()); // slot is given to a2
+		executor.runAll();
+		assertEquals(Arrays.asList("a2"), log);
+		assertTrue(scheduler.getRunningPerHost().isEmpty());
+	}
+
+	@Test
+	public void queuedTasksContainDispatchedTasksUnwrapped() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 10, false);
+		Runnable a1 = task("a1");
+		Runnable a2 = task("a2");
+		scheduler.submit("http://a.com/1.jpg", a1);
+		scheduler.submit("http://a.com/2.jpg", a2);
+
+		assertEquals(new HashSet<Runnable>(Arrays.asList(a1, a2)), new HashSet<Runnable>(scheduler.getQueuedTasks()));
+		executor.runNext();
+		assertEquals(Arrays.asList(a2), scheduler.getQueuedTasks());
+	}
+
+	@Test
+	public void rejectedTaskFreesSlot() {
+		executor.reject = true;
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 1, false);
+		scheduler.submit("http://a.com/1.jpg", task("a1"));
+		scheduler.submit("http://b.com/1.jpg", task("b1"));
+
+		assertTrue(scheduler.getRunningPerHost().isEmpty());
+		assertEquals(0, scheduler.getQueuedTaskCount());
+		assertTrue(log.isEmpty());
+	}
+
+	@Test
+	public void clearedTaskWaitingInExecutorIsNotRun() {
+		PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 1, false);
+		scheduler.submit("http://a.com/1.jpg", task("a1"));
+		scheduler.clear();
+		scheduler.submit("http://a.com/2.jpg", task("a2"));
+
+		executor.runAll();
+		assertEquals(Arrays.asList("a2"), log);
+	}
+
+	@Test
+	public void taskFinishedAfterClearDoesNotFreeSlotOfNewGeneration() {
+		final PerHostTaskScheduler scheduler = new PerHostTaskScheduler(executor, 1, 1, false);
+		scheduler.submit("http://a.com/1.jpg", new Runnable() {
+			@Override
+			public void run() {
+				log.add("a1");
+				scheduler.clear();
+				scheduler.submit("http://a.com/2.jpg", task("a2"));
+				scheduler.submit("http://a.com/3.jpg", task("a3"));
+			}
+		});
+
+		executor.runNext();
+		assertEquals(1, executor.tasks.size()); // a2 only, a3 waits for slot of a2
+		assertEquals(1, scheduler.getQueuedTaskCount());
+
+		executor.runAll();
+		assertEquals(Arrays.asList("a1", "a2", "a3"), log);
+	}
+
+	private Runnable task(final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				log.add(name);
+			}
+
+			@Override
+			public String toString() {
+				return name;
+			}
+		};
+	}
+
+	/** Executor which runs tasks only when test asks it */
+	private static final class ManualExecutor implements Executor {
+		final LinkedList<Runnable> tasks = new LinkedList<Runnable>();
+		boolean reject;
+
+		@Override
+		public void execute(Runnable command) {
+			if (reject) throw new RejectedExecutionException();
+			tasks.add(command);
+		}
+
+		void runNext() {
+			tasks.removeFirst().run();
+		}
+
+		void runLast() {
+			tasks.removeLast().run();
+		}
+
+		void runAll() {
+			while (!tasks.isEmpty()) {
+				runNext();
+			}
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.assist.deque;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class LockFreeLIFOBlockingQueueTest {
+
+	@Test
+	public void pollReturnsLastOfferedFirst() {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+
+		assertEquals(3, queue.size());
+		assertEquals("c", queue.peek());
+		assertEquals("c", queue.poll());
+		assertEquals("b", queue.poll());
+		assertEquals("a", queue.poll());
+		assertNull(queue.poll());
+		assertEquals(0, queue.size());
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void offerRejectsNull() {
+		new LockFreeLIFOBlockingQueue<String>().offer(null);
+	}
+
+	@Test
+	public void removedElementIsSkipped() {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+
+		assertTrue(queue.remove("b"));
+		assertFalse(queue.remove("b"));
+		assertEquals(2, queue.size());
+		assertEquals("c", queue.poll());
+		assertEquals("a", queue.poll());
+		assertNull(queue.poll());
+	}
+
+	@Test
+	public void removedTopIsSkippedByPeek() {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+
+		assertTrue(queue.remove("b"));
+		assertEquals("a", queue.peek());
+	}
+
+	@Test
+	public void pollWithTimeoutReturnsNullIfEmpty() throws InterruptedException {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		long start = System.nanoTime();
+		assertNull(queue.poll(50, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40));
+	}
+
+	@Test
+	public void pollWithTimeoutDoesNotWaitForRemovedElement() throws InterruptedException {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		queue.offer("a");
+		queue.remove("a");
+
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void takeWaitsForElement() throws Exception {
+		final LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		final AtomicReference<String> taken = new AtomicReference<String>();
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread consumer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					taken.set(queue.take());
+				} catch (InterruptedException e) {
+					// test fails on assertion below
+				}
+				done.countDown();
+			}
+		});
+		consumer.start();
+
+		assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+		queue.offer("a");
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals("a", taken.get());
+	}
+
+	@Test
+	public void drainToTakesElementsInLIFOOrder() {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+
+		List<String> drained = new ArrayList<String>();
+		assertEquals(2, queue.drainTo(drained, 2));
+		assertEquals(Arrays.asList("c", "b"), drained);
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void iteratorRemovesElement() {
+		LockFreeLIFOBlockingQueue<String> queue = new LockFreeLIFOBlockingQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+
+		List<String> iterated = new ArrayList<String>();
+		for (Iterator<String> it = queue.iterator(); it.hasNext(); ) {
+			String e = it.next();
+			iterated.add(e);
+			if (e.equals("b")) {
+				it.remove();
+			}
+		}
+		assertEquals(Arrays.asList("c", "b", "a"), iterated);
+		assertEquals(Arrays.asList("c", "a"), new ArrayList<String>(queue));
+	}
+
+	@Test
+	public void concurrentProducersAndConsumersDoNotLoseOrDuplicateElements() throws Exception {
+		final int producers = 4;
+		final int consumers = 4;
+		final int perProducer = 20000;
+		final LockFreeLIFOBlockingQueue<Integer> queue = new LockFreeLIFOBlockingQueue<Integer>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch produced = new CountDownLatch(producers);
+		final List<List<Integer>> consumed = new ArrayList<List<Integer>>();
+		final List<List<Integer>> removed = new ArrayList<List<Integer>>();
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int p = 0; p < producers; p++) {
+			final int base = p * perProducer;
+			final List<Integer> removedByProducer = new ArrayList<Integer>();
+			removed.add(removedByProducer);
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					awaitQuietly(start);
+					for (int i = 0; i < perProducer; i++) {
+						queue.offer(base + i);
+						if (i % 10 == 0 && queue.remove(base + i)) { // element could be consumed already
+							removedByProducer.add(base + i);
+						}
+					}
+					produced.countDown();
+				}
+			}));
+		}
+		for (int c = 0; c < consumers; c++) {
+			final List<Integer> taken = new ArrayList<Integer>();
+			consumed.add(taken);
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					awaitQuietly(start);
+					try {
+						while (true) {
+							Integer e = queue.poll(10, TimeUnit.MILLISECONDS);
+							if (e != null) {
+								taken.add(e);
+							} else if (produced.getCount() == 0) {
+								break; // producers finished and queue is drained
+							}
+						}
+					} catch (InterruptedException ignored) {
+						// test fails on assertion below
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join(30 * 1000);
+		}
+
+		Set<Integer> all = new HashSet<Integer>();
+		int total = 0;
+		for (List<Integer> taken : consumed) {
+			all.addAll(taken);
+			total += taken.size();
+		}
+		for (List<Integer> removedByProducer : removed) {
+			for (Integer e : removedByProducer) {
+				assertTrue("Removed element was consumed", all.add(e));
+				total++;
+			}
+		}
+		assertEquals(producers * perProducer, total);
+		assertEquals(producers * perProducer, all.size());
+		assertEquals(0, queue.size());
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
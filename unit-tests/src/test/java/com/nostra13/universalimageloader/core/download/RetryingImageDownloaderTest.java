@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright 2014 Sergey Tarasevich
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.nostra13.universalimageloader.core.download;
+
+import com.nostra13.universalimageloader.core.download.RetryingImageDownloader.CircuitOpenException;
+import com.nostra13.universalimageloader.core.download.RetryingImageDownloader.CircuitState;
+import com.nostra13.universalimageloader.utils.L;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Sergey Tarasevich (nostra13[at]gmail[dot]com)
+ * @since 1.9.3
+ */
+public class RetryingImageDownloaderTest {
+
+	private static final String HOST = "a.com";
+	private static final String URI = "http://" + HOST + "/1.jpg";
+	private static final int OPEN_MILLIS = 200;
+
+	private ScriptedDownloader wrapped;
+
+	@Before
+	public void setUp() {
+		L.writeLogs(false); // Android log isn't available
+		wrapped = new ScriptedDownloader();
+	}
+
+	@After
+	public void tearDown() {
+		L.writeLogs(true);
+	}
+
+	@Test
+	public void transientFailuresAreRetried() throws IOException {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 2, 0, 0, 0);
+		wrapped.fail(new HttpStatusException(503)).fail(new SocketTimeoutException()).succeed();
+
+		assertNotNull(downloader.getStream(URI, null));
+		assertEquals(3, wrapped.calls);
+		assertEquals(2, downloader.getRetryCount());
+	}
+
+	@Test
+	public void lastErrorIsThrownWhenRetriesAreExhausted() {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 1, 0, 0, 0);
+		HttpStatusException lastError = new HttpStatusException(502);
+		wrapped.fail(new HttpStatusException(503)).fail(lastError);
+
+		assertSame(lastError, getStreamError(downloader, URI));
+		assertEquals(2, wrapped.calls);
+	}
+
+	@Test
+	public void permanentFailureIsNotRetried() {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 3, 0, 0, 0);
+		wrapped.fail(new HttpStatusException(404));
+
+		assertTrue(getStreamError(downloader, URI) instanceof HttpStatusException);
+		assertEquals(1, wrapped.calls);
+		assertEquals(0, downloader.getRetryCount());
+	}
+
+	@Test
+	public void circuitCountsImageRequestsNotAttempts() {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 2, 0, 2, 60 * 1000);
+		wrapped.fail(new HttpStatusException(503)).fail(new HttpStatusException(503)).fail(new HttpStatusException(503));
+
+		getStreamError(downloader, URI);
+		assertEquals(3, wrapped.calls);
+		assertEquals(CircuitState.CLOSED, downloader.getCircuitStates().get(HOST));
+
+		wrapped.fail(new HttpStatusException(503)).fail(new HttpStatusException(503)).fail(new HttpStatusException(503));
+		getStreamError(downloader, URI);
+		assertEquals(CircuitState.OPEN, downloader.getCircuitStates().get(HOST));
+	}
+
+	@Test
+	public void requestsFailFastWhileCircuitIsOpen() {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 0, 0, 1, 60 * 1000);
+		wrapped.fail(new SocketTimeoutException());
+		getStreamError(downloader, URI);
+
+		assertTrue(getStreamError(downloader, URI) instanceof CircuitOpenException);
+		assertEquals(1, wrapped.calls);
+		assertEquals(1, downloader.getFastFailCount());
+	}
+
+	@Test
+	public void circuitsOfOtherHostsAndLocalUrisAreNotAffected() throws IOException {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 0, 0, 1, 60 * 1000);
+		wrapped.fail(new SocketTimeoutException());
+		getStreamError(downloader, URI);
+
+		wrapped.succeed().succeed();
+		assertNotNull(downloader.getStream("http://b.com/1.jpg", null));
+		assertNotNull(downloader.getStream("file:///sdcard/1.jpg", null));
+	}
+
+	@Test
+	public void successResetsConsecutiveFailures() throws IOException {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 0, 0, 2, 60 * 1000);
+		wrapped.fail(new SocketTimeoutException()).succeed().fail(new SocketTimeoutException());
+
+		getStreamError(downloader, URI);
+		downloader.getStream(URI, null);
+		getStreamError(downloader, URI);
+		assertEquals(CircuitState.CLOSED, downloader.getCircuitStates().get(HOST));
+	}
+
+	@Test
+	public void permanentFailureClosesCircuit() throws Exception {
+		RetryingImageDownloader downloader = openedCircuit();
+		waitOpenPeriod();
+		wrapped.fail(new HttpStatusException(404)); // host responded
+
+		getStreamError(downloader, URI);
+		assertEquals(CircuitState.CLOSED, downloader.getCircuitStates().get(HOST));
+	}
+
+	@Test
+	public void singleTrialRequestIsAllowedAfterOpenPeriod() throws Exception {
+		final RetryingImageDownloader downloader = openedCircuit();
+		waitOpenPeriod();
+		assertEquals(CircuitState.HALF_OPEN, downloader.getCircuitStates().get(HOST));
+
+		CountDownLatch trialStarted = new CountDownLatch(1);
+		CountDownLatch trialFinish = new CountDownLatch(1);
+		wrapped.block(trialStarted, trialFinish, null);
+		Thread trial = startRequest(downloader, new AtomicReference<IOException>());
+		assertTrue(trialStarted.await(5, TimeUnit.SECONDS));
+
+		assertTrue(getStreamError(downloader, URI) instanceof CircuitOpenException);
+
+		trialFinish.countDown();
+		trial.join(5 * 1000);
+		assertEquals(CircuitState.CLOSED, downloader.getCircuitStates().get(HOST));
+	}
+
+	@Test
+	public void failedTrialIsNotRetriedAndReopensCircuit() throws Exception {
+		RetryingImageDownloader downloader = openedCircuit();
+		waitOpenPeriod();
+		wrapped.fail(new HttpStatusException(503)).succeed();
+		int calls = wrapped.calls;
+
+		assertTrue(getStreamError(downloader, URI) instanceof HttpStatusException);
+		assertEquals(calls + 1, wrapped.calls);
+		assertEquals(CircuitState.OPEN, downloader.getCircuitStates().get(HOST));
+	}
+
+	@Test
+	public void interruptedTrialAllowsNextTrial() throws Exception {
+		RetryingImageDownloader downloader = openedCircuit();
+		waitOpenPeriod();
+		wrapped.fail(new InterruptedIOException());
+
+		assertTrue(getStreamError(downloader, URI) instanceof InterruptedIOException);
+		assertEquals(CircuitState.HALF_OPEN, downloader.getCircuitStates().get(HOST));
+	}
+
+	@Test
+	public void abortedRequestStartedBeforeTrialDoesNotEndTrial() throws Exception {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 0, 0, 1, OPEN_MILLIS);
+
+		CountDownLatch oldStarted = new CountDownLatch(1);
+		CountDownLatch oldFinish = new CountDownLatch(1);
+		wrapped.block(oldStarted, oldFinish, new InterruptedIOException());
+		Thread oldRequest = startRequest(downloader, new AtomicReference<IOException>());
+		assertTrue(oldStarted.await(5, TimeUnit.SECONDS));
+
+		wrapped.fail(new SocketTimeoutException());
+		getStreamError(downloader, URI); // opens circuit
+		waitOpenPeriod();
+
+		CountDownLatch trialStarted = new CountDownLatch(1);
+		CountDownLatch trialFinish = new CountDownLatch(1);
+		wrapped.block(trialStarted, trialFinish, null);
+		Thread trial = startRequest(downloader, new AtomicReference<IOException>());
+		assertTrue(trialStarted.await(5, TimeUnit.SECONDS));
+
+		oldFinish.countDown(); // request which started before circuit was opened is aborted
+		oldRequest.join(5 * 1000);
+		assertEquals(CircuitState.OPEN, downloader.getCircuitStates().get(HOST)); // trial is still running
+		assertTrue(getStreamError(downloader, URI) instanceof CircuitOpenException);
+
+		trialFinish.countDown();
+		trial.join(5 * 1000);
+		assertEquals(CircuitState.CLOSED, downloader.getCircuitStates().get(HOST));
+	}
+
+	/** Returns downloader which circuit of {@link #HOST} is open for {@link #OPEN_MILLIS} */
+	private RetryingImageDownloader openedCircuit() {
+		RetryingImageDownloader downloader = new RetryingImageDownloader(wrapped, 3, 0, 1, OPEN_MILLIS);
+		wrapped.fail(new HttpStatusException(503)).fail(new HttpStatusException(503)).fail(new HttpStatusException(503))
+				.fail(new HttpStatusException(503));
+		getStreamError(downloader, URI);
+		assertEquals(CircuitState.OPEN, downloader.getCircuitStates().get(HOST));
+		return downloader;
+	}
+
+	private static void waitOpenPeriod() throws InterruptedException {
+		Thread.sleep(OPEN_MILLIS + 50);
+	}
+
+	private static Thread startRequest(final RetryingImageDownloader downloader, final AtomicReference<IOException> error) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					downloader.getStream(URI, null);
+				} catch (IOException e) {
+					error.set(e);
+				}
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	private static IOException getStreamError(RetryingImageDownloader downloader, String uri) {
+		try {
+			downloader.getStream(uri, null);
+		} catch (IOException e) {
+			return e;
+		}
+		fail("Request must fail");
+		return null;
+	}
+
+	/** Downloader which answers requests by script: in order of calls */
+	private static final class ScriptedDownloader implements ImageDownloader {
+
+		private interface Step {
+			InputStream run() throws IOException;
+		}
+
+		private final LinkedList<Step> steps = new LinkedList<Step>();
+		volatile int calls;
+
+		ScriptedDownloader fail(final IOException e) {
+			return add(new Step() {
+				@Override
+				public InputStream run() throws IOException {
+					throw e;
+				}
+			});
+		}
+
+		ScriptedDownloader succeed() {
+			return add(new Step() {
+				@Override
+				public InputStream run() {
+					return new ByteArrayInputStream(new byte[1]);
+				}
+			});
+		}
+
+		/** Next request signals <b>started</b> and waits for <b>finish</b>, then fails with <b>e</b> or succeeds */
+		ScriptedDownloader block(final CountDownLatch started, final CountDownLatch finish, final IOException e) {
+			return add(new Step() {
+				@Override
+				public InputStream run() throws IOException {
+					started.countDown();
+					try {
+						finish.await();
+					} catch (InterruptedException ie) {
+						throw new InterruptedIOException();
+					}
+					if (e != null) throw e;
+					return new ByteArrayInputStream(new byte[1]);
+				}
+			});
+		}
+
+		@Override
+		public InputStream getStream(String imageUri, Object extra) throws IOException {
+			Step step;
+			synchronized (steps) {
+				calls++;
+				step = steps.removeFirst();
+			}
+			return step.run();
+		}
+
+		private ScriptedDownloader add(Step step) {
+			synchronized (steps) {
+				steps.add(step);
+			}
+			return this;
+		}
+	}
+}